@@ -3,11 +3,14 @@ import com.apisecurity.shared.ModuleResult;
 import com.apisecurity.shared.EndpointAnalysis;
 import com.apisecurity.shared.ContainerApi;
 import com.apisecurity.shared.Configuration;
+import com.apisecurity.shared.EndpointIndex;
 import com.apisecurity.shared.OpenAIConfig;
+import com.apisecurity.shared.http.RateLimitInterceptor;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.*;
+import okio.BufferedSource;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -19,12 +22,22 @@ import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 
 public class AIModule {
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final OkHttpClient httpClient;
+    private final SpecChunker specChunker = new SpecChunker(objectMapper);
+    // Планировщик текущего анализа: получает сигналы 429 от сетевого перехватчика
+    private volatile ModelScheduler scheduler;
     
+    // Меняется вместе с PROMPT_TEMPLATE: входит в ключ кэша ответов
+    private static final String PROMPT_VERSION = "3";
+    private static final double TEMPERATURE = 0.1;
+    private static final int MAX_TOKENS = 4000;
+
     private static final String PROMPT_TEMPLATE = """
         Анализируй OpenAPI спецификацию на уязвимости безопасности API.
         
@@ -44,7 +57,7 @@ public class AIModule {
         
         Критерии: аутентификация, авторизация, инъекции, валидация данных, чувствительные данные.
         
-        Спецификация:
+        Спецификация (фрагмент, анализируй только операции из него):
         %s
         
         Ответь ТОЛЬКО в указанном JSON формате.
@@ -68,6 +81,16 @@ public class AIModule {
             .connectTimeout(30, TimeUnit.SECONDS)
             .readTimeout(60, TimeUnit.SECONDS)
             .writeTimeout(30, TimeUnit.SECONDS)
+            .addInterceptor(new RateLimitInterceptor())
+            // Сетевой перехватчик видит и те 429, которые RateLimitInterceptor повторяет сам
+            .addNetworkInterceptor(chain -> {
+                Response response = chain.proceed(chain.request());
+                ModelScheduler current = scheduler;
+                if (response.code() == 429 && current != null) {
+                    current.onThrottled();
+                }
+                return response;
+            })
             .build();
     }
     
@@ -81,58 +104,271 @@ public class AIModule {
         System.out.println("🤖 Starting AI security analysis...");
     
         JsonNode spec = container.getFullSpecification();
-        String apiSpec = spec.toString();
-        
-        // СИЛЬНО ограничим размер спецификации
-        if (apiSpec.length() > 25000) {
-            apiSpec = apiSpec.substring(0, 25000) + "... [truncated]";
-            System.out.println("📏 API spec truncated to 12000 chars");
+        EndpointIndex endpointIndex = container.getEndpointIndex();
+        if (spec == null || endpointIndex.isEmpty()) {
+            System.out.println("⚠️ No operations to analyze, AI analysis skipped");
+            return;
         }
     
         final OpenAIConfig aiConfigFinal = getAIConfig(container);
-        final String apiSpecFinal = apiSpec;
+        final AIResponseCache cache = aiConfigFinal.isResponseCacheEnabled()
+            ? AIResponseCache.open(Paths.get(aiConfigFinal.getResponseCachePath()), aiConfigFinal.getResponseCacheMaxBytes())
+            : null;
 
         List<String> modelsToUse = WORKING_MODELS;
         System.out.println("🎯 Using models: " + modelsToUse);
-        
-        List<AIResponse> successfulResponses = new ArrayList<>();
-        
-        ExecutorService executor = Executors.newFixedThreadPool(2);
-        List<Future<AIResponse>> futures = new ArrayList<>();
 
+        // Вместо обрезки спецификации — фрагменты по бюджету модели; одинаковый бюджет делит фрагменты
+        Map<Integer, List<SpecChunker.Chunk>> chunksByBudget = new HashMap<>();
+        Map<String, List<SpecChunker.Chunk>> chunksByModel = new LinkedHashMap<>();
         for (String model : modelsToUse) {
-            futures.add(executor.submit(() -> {
+            int budget = aiConfigFinal.getTokenBudget(model);
+            List<SpecChunker.Chunk> chunks = chunksByBudget.get(budget);
+            if (chunks == null) {
                 try {
-                    Thread.sleep(1000); // Задержка 1 секунда между запросами
-                    return analyzeWithModel(model, apiSpecFinal, aiConfigFinal);
+                    chunks = specChunker.split(spec, endpointIndex, budget);
                 } catch (Exception e) {
-                    System.err.println("❌ " + model + " failed: " + e.getMessage());
-                    return new AIResponse(model, Collections.emptyList(), Collections.emptyList());
+                    System.err.println("❌ Failed to split specification: " + e.getMessage());
+                    return;
                 }
-            }));
+                chunksByBudget.put(budget, chunks);
+                int truncated = chunks.stream().mapToInt(SpecChunker.Chunk::getTruncatedOperations).sum();
+                System.out.println("🧩 " + endpointIndex.size() + " operations split into " + chunks.size()
+                    + " chunks of <= " + budget + " tokens" + (truncated > 0 ? " (" + truncated + " oversized operations truncated)" : ""));
+            }
+            chunksByModel.put(model, chunks);
+        }
+
+        // Находки из потока попадают в контейнер сразу, до сведения ответов модели
+        Map<String, ModuleResult> liveResults = new ConcurrentHashMap<>();
+        Set<String> liveKeys = ConcurrentHashMap.newKeySet();
+        AtomicLong firstFindingAt = new AtomicLong();
+
+        // map: каждый (модель, фрагмент) — отдельный запрос через планировщик
+        ModelScheduler modelScheduler = new ModelScheduler(new ArrayList<>(chunksByModel.keySet()),
+            aiConfigFinal.getMaxConcurrentRequests(), aiConfigFinal.getHedgePercentile(),
+            TimeUnit.SECONDS.toMillis(2L * aiConfigFinal.getTimeoutSeconds()));
+        this.scheduler = modelScheduler;
+        Map<String, List<CompletableFuture<AIResponse>>> futuresByModel = new LinkedHashMap<>();
+        BlockingQueue<String> finishedModels = new LinkedBlockingQueue<>();
+        for (Map.Entry<String, List<SpecChunker.Chunk>> entry : chunksByModel.entrySet()) {
+            String model = entry.getKey();
+            List<CompletableFuture<AIResponse>> futures = new ArrayList<>();
+            for (SpecChunker.Chunk chunk : entry.getValue()) {
+                // Ответ резервной модели закрывает тот же фрагмент, поэтому находки идут в результат основной
+                futures.add(modelScheduler.submit(model, (candidate, attempt) -> analyzeWithModel(candidate, attempt, chunk, aiConfigFinal, cache, vuln -> {
+                    firstFindingAt.compareAndSet(0, System.currentTimeMillis());
+                    publishFinding(container, model, vuln, liveResults, liveKeys);
+                })));
+            }
+            futuresByModel.put(model, futures);
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenRun(() -> finishedModels.add(model));
         }
 
-        for (Future<AIResponse> future : futures) {
+        // reduce: модели сводятся в порядке завершения — до конца всех, общего срока
+        // или firstGoodAnswers хороших ответов
+        long deadline = startTime + TimeUnit.SECONDS.toMillis(aiConfigFinal.getAnalysisTimeoutSeconds());
+        int firstGoodAnswers = aiConfigFinal.getFirstGoodAnswers();
+        List<AIResponse> successfulResponses = new ArrayList<>();
+        // Голоса для сведения находок: под моделью, которая дала ответ (дубль — под резервной)
+        List<AIResponse> votingResponses = new ArrayList<>();
+        Set<String> reduced = new HashSet<>();
+        String stopReason = "completed";
+        while (reduced.size() < futuresByModel.size()) {
+            if (firstGoodAnswers > 0 && successfulResponses.size() >= firstGoodAnswers) {
+                stopReason = "first_good_answers";
+                break;
+            }
+            String model = null;
             try {
-                AIResponse response = future.get(2, TimeUnit.MINUTES);
-                if (!response.getVulnerabilities().isEmpty() || !response.getOverallRecommendations().isEmpty()) {
+                model = finishedModels.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (model == null) {
+                stopReason = "deadline";
+                break;
+            }
+            reduced.add(model);
+            List<AIResponse> chunkResponses = new ArrayList<>();
+            futuresByModel.get(model).forEach(future -> chunkResponses.add(future.join()));
+            AIResponse response = reduceModel(model, chunkResponses, chunksByModel.get(model), container);
+            if (response != null) {
+                successfulResponses.add(response);
+                votingResponses.addAll(mergeByProducer(chunkResponses));
+                liveResults.remove(model);
+            }
+        }
+
+        // Остановились раньше: запросы в полёте отменяются; по сроку модели сводятся по готовым фрагментам
+        modelScheduler.shutdownNow();
+        httpClient.dispatcher().cancelAll();
+        this.scheduler = null;
+        for (Map.Entry<String, List<CompletableFuture<AIResponse>>> entry : futuresByModel.entrySet()) {
+            String model = entry.getKey();
+            if (reduced.contains(model)) continue;
+            List<AIResponse> chunkResponses = new ArrayList<>();
+            for (CompletableFuture<AIResponse> future : entry.getValue()) {
+                if (future.isDone()) {
+                    chunkResponses.add(future.join());
+                }
+            }
+            System.err.println("⏱️ " + model + ": " + (entry.getValue().size() - chunkResponses.size()) + "/"
+                + entry.getValue().size() + " chunks not analyzed (" + stopReason + ")");
+            if ("deadline".equals(stopReason)) {
+                AIResponse response = reduceModel(model, chunkResponses, chunksByModel.get(model), container);
+                if (response != null) {
                     successfulResponses.add(response);
-                    
-                    // Сохраняем ответ модели в отдельный файл
-                    saveModelResponseToFile(response, apiSpecFinal.substring(0, Math.min(apiSpecFinal.length(), 2000)));
-                    
-                    processSingleAIResponse(response, container);
+                    votingResponses.addAll(mergeByProducer(chunkResponses));
+                    liveResults.remove(model);
                 }
-            } catch (Exception e) {
-                System.err.println("❌ Error: " + e.getMessage());
             }
         }
-        
-        executor.shutdown();
+        // Модели без сведённого ответа оставляют только то, что успело прийти потоком
+        liveResults.values().forEach(result -> result.setStatus("PARTIAL"));
+        reportScheduler(modelScheduler, chunksByModel.keySet(), stopReason, container);
+        applyConsensus(successfulResponses, votingResponses, endpointIndex, container);
     
         long endTime = System.currentTimeMillis();
         System.out.println("✅ AI analysis completed in " + (endTime - startTime) + "ms");
-        System.out.println("📊 Successful: " + successfulResponses.size() + "/" + modelsToUse.size());
+        if (firstFindingAt.get() > 0) {
+            System.out.println("⚡ First AI finding after " + (firstFindingAt.get() - startTime) + "ms");
+        }
+        System.out.println("📊 Successful: " + successfulResponses.size() + "/" + chunksByModel.size());
+        if (cache != null) {
+            System.out.println("💾 AI response cache: " + cache);
+            ModuleResult cacheResult = new ModuleResult("COMPLETED");
+            cacheResult.addDetail("hits", cache.getHits());
+            cacheResult.addDetail("misses", cache.getMisses());
+            cacheResult.addDetail("stored", cache.getStores());
+            cacheResult.addDetail("entries", cache.size());
+            container.addAiResult("ai_cache", cacheResult);
+        }
+    }
+
+    // Сведённый ответ модели попадает в файл и в контейнер; null, если модель ничего не нашла
+    private AIResponse reduceModel(String model, List<AIResponse> chunkResponses, List<SpecChunker.Chunk> chunks,
+                                   ContainerApi container) {
+        AIResponse response = mergeChunkResponses(model, chunkResponses);
+        if (response.getVulnerabilities().isEmpty() && response.getOverallRecommendations().isEmpty()) {
+            return null;
+        }
+        // Сохраняем ответ модели в отдельный файл
+        saveModelResponseToFile(response, describeChunks(chunks));
+        processSingleAIResponse(response, container);
+        return response;
+    }
+
+    private void reportScheduler(ModelScheduler modelScheduler, Collection<String> models, String stopReason,
+                                 ContainerApi container) {
+        ModuleResult schedulerResult = new ModuleResult("COMPLETED");
+        for (String model : models) {
+            ModelScheduler.ModelStats stats = modelScheduler.getStats(model);
+            System.out.println("  📈 " + model + ": " + stats.getSuccesses() + " ok, " + stats.getFailures() + " failed, p50 "
+                + stats.percentile(0.5) + "ms, p90 " + stats.percentile(0.9) + "ms, " + stats.getHedgesWon() + " hedges won");
+            schedulerResult.addDetail("model_" + model, stats.getSuccesses() + " ok, " + stats.getFailures()
+                + " failed, p90 " + stats.percentile(0.9) + "ms");
+        }
+        System.out.println("🚦 AI scheduler: stop=" + stopReason + ", " + modelScheduler.getHedges() + " hedged, "
+            + modelScheduler.getThrottled() + " throttled (429), concurrency " + modelScheduler.getLimit());
+        schedulerResult.addDetail("stop_reason", stopReason);
+        schedulerResult.addDetail("hedged", modelScheduler.getHedges());
+        schedulerResult.addDetail("throttled", modelScheduler.getThrottled());
+        schedulerResult.addDetail("final_concurrency", modelScheduler.getLimit());
+        container.addAiResult("ai_scheduler", schedulerResult);
+    }
+
+    /**
+     * Сводит ответы модели по фрагментам: одна уязвимость на (тип, эндпоинт),
+     * рекомендации без повторов. Из дублей остаётся самая высокая серьёзность.
+     */
+    static AIResponse mergeChunkResponses(String model, List<AIResponse> chunkResponses) {
+        Map<String, AIVulnerability> vulnerabilities = new LinkedHashMap<>();
+        Map<String, String> recommendations = new LinkedHashMap<>();
+        for (AIResponse chunkResponse : chunkResponses) {
+            for (AIVulnerability vuln : chunkResponse.getVulnerabilities()) {
+                String key = vulnerabilityKey(vuln);
+                AIVulnerability existing = vulnerabilities.get(key);
+                if (existing == null || severityRank(vuln.getSeverity()) > severityRank(existing.getSeverity())) {
+                    vulnerabilities.put(key, vuln);
+                }
+            }
+            for (String recommendation : chunkResponse.getOverallRecommendations()) {
+                recommendations.putIfAbsent(normalize(recommendation), recommendation);
+            }
+        }
+        return new AIResponse(model, new ArrayList<>(vulnerabilities.values()), new ArrayList<>(recommendations.values()));
+    }
+
+    /**
+     * Ответы по фрагментам, сведённые отдельно для каждой модели, которая их дала:
+     * фрагмент, закрытый дублем, засчитывается резервной модели, а не основной.
+     */
+    static List<AIResponse> mergeByProducer(List<AIResponse> chunkResponses) {
+        Map<String, List<AIResponse>> byModel = new LinkedHashMap<>();
+        for (AIResponse chunkResponse : chunkResponses) {
+            byModel.computeIfAbsent(chunkResponse.getModel(), m -> new ArrayList<>()).add(chunkResponse);
+        }
+        List<AIResponse> merged = new ArrayList<>();
+        byModel.forEach((model, responses) -> {
+            AIResponse response = mergeChunkResponses(model, responses);
+            if (!response.getVulnerabilities().isEmpty() || !response.getOverallRecommendations().isEmpty()) {
+                merged.add(response);
+            }
+        });
+        return merged;
+    }
+
+    static String vulnerabilityKey(AIVulnerability vuln) {
+        return normalize(vuln.getType()) + "|" + normalize(vuln.getEndpoint());
+    }
+
+    /**
+     * Находка, разобранная из потока, сразу становится видна в контейнере под
+     * ai_analysis_&lt;модель&gt;; итоговый сведённый результат модели потом её заменяет.
+     */
+    private void publishFinding(ContainerApi container, String model, AIVulnerability vuln,
+                                Map<String, ModuleResult> liveResults, Set<String> liveKeys) {
+        if (!liveKeys.add(model + "|" + vulnerabilityKey(vuln))) {
+            return;
+        }
+        ModuleResult result = liveResults.computeIfAbsent(model, m -> {
+            ModuleResult live = new ModuleResult("RUNNING");
+            live.setFindings(new CopyOnWriteArrayList<>());
+            live.setDetails(new ConcurrentHashMap<>());
+            live.addDetail("model", m);
+            container.addAiResult("ai_analysis_" + m, live);
+            return live;
+        });
+        result.addFinding(formatFinding(vuln));
+    }
+
+    private static String formatFinding(AIVulnerability vuln) {
+        return String.format("[%s] %s: %s (Severity: %s)", 
+            vuln.getType(), vuln.getEndpoint(), vuln.getDescription(), vuln.getSeverity());
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase().replaceAll("\\s+", " ");
+    }
+
+    static int severityRank(String severity) {
+        String s = normalize(severity);
+        if (s.startsWith("крит") || s.startsWith("crit")) return 4;
+        if (s.startsWith("выс") || s.startsWith("high")) return 3;
+        if (s.startsWith("сред") || s.startsWith("med")) return 2;
+        if (s.startsWith("низ") || s.startsWith("low")) return 1;
+        return 0;
+    }
+
+    private static String describeChunks(List<SpecChunker.Chunk> chunks) {
+        StringBuilder description = new StringBuilder();
+        for (SpecChunker.Chunk chunk : chunks) {
+            description.append("Chunk ").append(chunk.getNumber()).append("/").append(chunk.getTotal())
+                .append(" (~").append(chunk.getEstimatedTokens()).append(" tokens): ")
+                .append(String.join(", ", chunk.getEndpoints())).append("\n");
+        }
+        return description.toString();
     }
     
     private OpenAIConfig getAIConfig(ContainerApi container) {
@@ -157,34 +393,43 @@ public class AIModule {
         return aiConfig;
     }
     
-    private AIResponse analyzeWithModel(String model, String apiSpec, OpenAIConfig config) throws Exception {
-        System.out.println("  🤖 Analyzing with: " + model);
+    private AIResponse analyzeWithModel(String model, ModelScheduler.Attempt attempt, SpecChunker.Chunk chunk, OpenAIConfig config,
+                                        AIResponseCache cache, Consumer<AIVulnerability> onFinding) throws Exception {
+        System.out.println("  🤖 Analyzing with: " + model + " (chunk " + chunk.getNumber() + "/" + chunk.getTotal()
+            + ", " + chunk.getEndpoints().size() + " operations)");
         
-        String prompt = String.format(PROMPT_TEMPLATE, apiSpec);
+        // Номер фрагмента в промпт не входит: иначе новая операция меняла бы ключ кэша всех фрагментов
+        String prompt = String.format(PROMPT_TEMPLATE, chunk.getJson());
         System.out.println("  📝 Prompt length: " + prompt.length() + " chars");
         
-        try {
-            String response = callOpenRouterAPI(model, prompt, config);
-            saveRawResponseToFile(model, response, prompt);
-            return parseAIResponse(response, model);
-        } catch (Exception e) {
-            System.err.println("  ❌ Model " + model + " failed: " + e.getMessage());
-            // Попробуем с сокращенным промптом
-            if (prompt.length() > 30000) {
-                System.out.println("  🔄 Retrying with shorter prompt...");
-                String shortPrompt = prompt.substring(0, 30000) + "... [truncated]";
-                try {
-                    String response = callOpenRouterAPI(model, shortPrompt, config);
-                    return parseAIResponse(response, model);
-                } catch (Exception ex) {
-                    System.err.println("  ❌ Retry also failed: " + ex.getMessage());
-                }
-            }
-            throw e;
+        String cacheKey = cache != null ? AIResponseCache.key(model, PROMPT_VERSION, TEMPERATURE, MAX_TOKENS, prompt) : null;
+        String cached = cache != null ? cache.get(cacheKey) : null;
+        if (cached != null) {
+            System.out.println("  💾 Cache hit: " + model + " chunk " + chunk.getNumber() + "/" + chunk.getTotal());
+            attempt.markCached();
+            return parseAIResponse(cached, model);
+        }
+
+        String response = callOpenRouterAPI(model, prompt, config, onFinding, attempt);
+        saveRawResponseToFile(model + "_chunk" + chunk.getNumber(), response, prompt);
+        // Ответ без разбираемого JSON — отказ модели: он не кэшируется, а планировщик переходит на резервную
+        if (!isJsonAnswer(response)) {
+            throw new IllegalStateException("No JSON object in response");
+        }
+        if (cache != null) {
+            cache.put(cacheKey, model, response);
         }
+        return parseAIResponse(response, model);
     }
     
-    private String callOpenRouterAPI(String model, String prompt, OpenAIConfig config) throws Exception {
+    /**
+     * Запрос с потоковым ответом (SSE). Текст ответа разбирается по мере прихода:
+     * каждая закрывшаяся уязвимость сразу уходит в onFinding, а поток прерывается,
+     * как только корневой JSON-объект закрыт или исчерпан streamTokenBudget.
+     * Отмена попытки (проигравший дубль) закрывает соединение и прерывает чтение.
+     */
+    private String callOpenRouterAPI(String model, String prompt, OpenAIConfig config,
+                                     Consumer<AIVulnerability> onFinding, ModelScheduler.Attempt attempt) throws Exception {
         String apiKey = config.getApiKey().trim();
         String fullUrl = "https://openrouter.ai/api/v1/chat/completions";
 
@@ -199,8 +444,9 @@ public class AIModule {
         messages.add(message);
         
         requestMap.put("messages", messages);
-        requestMap.put("max_tokens", 4000);
-        requestMap.put("temperature", 0.1);
+        requestMap.put("max_tokens", MAX_TOKENS);
+        requestMap.put("temperature", TEMPERATURE);
+        requestMap.put("stream", true);
         
         // Инициализируем requestBody
         String requestBody = objectMapper.writeValueAsString(requestMap);
@@ -221,7 +467,21 @@ public class AIModule {
             .post(body)
             .build();
         
-        try (Response response = httpClient.newCall(request).execute()) {
+        StreamingJsonParser parser = new StreamingJsonParser(objectMapper, vulnNode -> {
+            AIVulnerability vuln = toVulnerability(vulnNode);
+            if (!vuln.getType().isEmpty()) {
+                onFinding.accept(vuln);
+            }
+        });
+        StringBuilder content = new StringBuilder();
+        long started = System.currentTimeMillis();
+        long streamedChars = 0;
+        long charBudget = (long) config.getStreamTokenBudget() * SpecChunker.CHARS_PER_TOKEN;
+        String stopReason = "end of stream";
+
+        Call call = httpClient.newCall(request);
+        attempt.onCancel(call::cancel);
+        try (Response response = call.execute()) {
             if (!response.isSuccessful()) {
                 String errorBody = response.body().string();
                 System.err.println("    ❌ API Error: " + errorBody);
@@ -233,19 +493,45 @@ public class AIModule {
                 throw new RuntimeException("Empty response body");
             }
             
-            String responseText = responseBody.string();
-            System.out.println("    📥 Raw response length: " + responseText.length());
-            System.out.println("    📥 Response preview: " + 
-                responseText.substring(0, Math.min(responseText.length(), 300)));
-            
-            JsonNode jsonResponse = objectMapper.readTree(responseText);
-            
-            String content = jsonResponse.path("choices").get(0).path("message").path("content").asText();
-            System.out.println("    ✅ Extracted content length: " + content.length());
-            System.out.println("    ✅ Content preview: " + content.substring(0, Math.min(content.length(), 200)));
-            
-            return content;
+            BufferedSource source = responseBody.source();
+            String line;
+            while ((line = source.readUtf8Line()) != null) {
+                // Пустые строки разделяют события, ": ..." — комментарии keep-alive
+                if (!line.startsWith("data:")) continue;
+                String data = line.substring(5).trim();
+                if ("[DONE]".equals(data)) break;
+
+                JsonNode event = objectMapper.readTree(data);
+                if (event.has("error")) {
+                    throw new RuntimeException("Stream error: " + event.path("error").path("message").asText(event.get("error").toString()));
+                }
+                JsonNode delta = event.path("choices").path(0).path("delta");
+                String text = delta.path("content").asText("");
+                // Рассуждения reasoning-моделей тоже расходуют бюджет
+                streamedChars += text.length() + delta.path("reasoning").asText("").length();
+                if (!text.isEmpty()) {
+                    content.append(text);
+                    parser.feed(text);
+                }
+
+                if (parser.isComplete()) {
+                    stopReason = "JSON complete";
+                    break;
+                }
+                if (streamedChars > charBudget) {
+                    stopReason = "token budget";
+                    break;
+                }
+            }
+        } finally {
+            // Остаток генерации не нужен: закрываем соединение, не дочитывая поток
+            call.cancel();
         }
+
+        System.out.println("    📥 Streamed " + content.length() + " chars in " + (System.currentTimeMillis() - started)
+            + "ms (" + stopReason + ", " + parser.getEmitted() + " findings on the fly)");
+        System.out.println("    ✅ Content preview: " + content.substring(0, Math.min(content.length(), 200)));
+        return parser.isComplete() ? parser.getJson() : content.toString();
     }
     
     private AIResponse parseAIResponse(String response, String model) {
@@ -254,21 +540,7 @@ public class AIModule {
         System.out.println("    📄 Response preview: " + response.substring(0, Math.min(response.length(), 300)));
         
         try {
-            // Очистка ответа от возможных не-JSON частей
-            String cleanResponse = response.trim();
-            
-            // Удаляем BOM маркер если есть
-            if (cleanResponse.startsWith("\uFEFF")) {
-                cleanResponse = cleanResponse.substring(1);
-            }
-            
-            // Ищем JSON в ответе
-            int jsonStart = cleanResponse.indexOf('{');
-            int jsonEnd = cleanResponse.lastIndexOf('}') + 1;
-            
-            if (jsonStart >= 0 && jsonEnd > jsonStart) {
-                cleanResponse = cleanResponse.substring(jsonStart, jsonEnd);
-            }
+            String cleanResponse = extractJson(response);
             
             System.out.println("    🔧 Cleaned response: " + cleanResponse.substring(0, Math.min(cleanResponse.length(), 300)));
             
@@ -279,12 +551,7 @@ public class AIModule {
             
             if (jsonNode.has("vulnerabilities")) {
                 for (JsonNode vulnNode : jsonNode.get("vulnerabilities")) {
-                    AIVulnerability vuln = new AIVulnerability();
-                    vuln.setType(vulnNode.path("type").asText(""));
-                    vuln.setEndpoint(vulnNode.path("endpoint").asText(""));
-                    vuln.setSeverity(vulnNode.path("severity").asText(""));
-                    vuln.setDescription(vulnNode.path("description").asText(""));
-                    vuln.setRecommendation(vulnNode.path("recommendation").asText(""));
+                    AIVulnerability vuln = toVulnerability(vulnNode);
                     
                     // Логируем найденные уязвимости для отладки
                     if (!vuln.getType().isEmpty()) {
@@ -314,6 +581,44 @@ public class AIModule {
             return new AIResponse(model, Collections.emptyList(), Collections.emptyList());
         }
     }
+
+    private static AIVulnerability toVulnerability(JsonNode vulnNode) {
+        AIVulnerability vuln = new AIVulnerability();
+        vuln.setType(vulnNode.path("type").asText(""));
+        vuln.setEndpoint(vulnNode.path("endpoint").asText(""));
+        vuln.setSeverity(vulnNode.path("severity").asText(""));
+        vuln.setDescription(vulnNode.path("description").asText(""));
+        vuln.setRecommendation(vulnNode.path("recommendation").asText(""));
+        return vuln;
+    }
+
+    // Очистка ответа от возможных не-JSON частей
+    private static String extractJson(String response) {
+        String cleanResponse = response.trim();
+        
+        // Удаляем BOM маркер если есть
+        if (cleanResponse.startsWith("\uFEFF")) {
+            cleanResponse = cleanResponse.substring(1);
+        }
+        
+        // Ищем JSON в ответе
+        int jsonStart = cleanResponse.indexOf('{');
+        int jsonEnd = cleanResponse.lastIndexOf('}') + 1;
+        
+        if (jsonStart >= 0 && jsonEnd > jsonStart) {
+            cleanResponse = cleanResponse.substring(jsonStart, jsonEnd);
+        }
+        return cleanResponse;
+    }
+
+    private boolean isJsonAnswer(String response) {
+        try {
+            return objectMapper.readTree(extractJson(response)).isObject();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     private void saveModelResponseToFile(AIResponse response, String apiSpecPreview) {
         try {
             String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
@@ -409,65 +714,79 @@ public class AIModule {
         result.addDetail("model", response.getModel());
         
         for (AIVulnerability vuln : response.getVulnerabilities()) {
-            String finding = String.format("[%s] %s: %s (Severity: %s)", 
-                vuln.getType(), vuln.getEndpoint(), vuln.getDescription(), vuln.getSeverity());
-            result.addFinding(finding);
-            
-            if (vuln.getEndpoint() != null && !vuln.getEndpoint().isEmpty()) {
-                container.addRecommendation(vuln.getEndpoint(), vuln.getRecommendation());
-            }
-        }
-        
-        for (String recommendation : response.getOverallRecommendations()) {
-            result.addDetail("recommendation", recommendation);
+            result.addFinding(formatFinding(vuln));
         }
+        result.addDetail("recommendations", response.getOverallRecommendations());
         
         container.addAiResult("ai_analysis_" + response.getModel(), result);
-        
-        for (EndpointAnalysis analysis : container.getAnalysisTable()) {
-            if (!response.getVulnerabilities().isEmpty()) {
-                analysis.setAi("Found " + response.getVulnerabilities().size() + " vulnerabilities");
-                analysis.setRecommendation("Review AI security findings");
+    }
+
+    /**
+     * Сводит находки всех моделей в ai_consensus: одна находка на кластер с оценкой
+     * согласия моделей. Рекомендации по эндпоинтам и колонка ai таблицы заполняются
+     * отсюда, один раз на кластер; в результатах моделей остаются только счётчики.
+     * Голосуют votes — ответы под моделями, которые их дали.
+     */
+    private void applyConsensus(List<AIResponse> responses, List<AIResponse> votes, EndpointIndex endpointIndex,
+                                ContainerApi container) {
+        if (responses.isEmpty()) {
+            return;
+        }
+        FindingConsensus consensus = new FindingConsensus(endpointIndex);
+        votes.forEach(consensus::add);
+        List<FindingConsensus.Cluster> clusters = consensus.merge();
+        int modelCount = consensus.getModelCount();
+
+        ModuleResult result = new ModuleResult("COMPLETED");
+        List<Map<String, Object>> agreement = new ArrayList<>();
+        Map<String, List<FindingConsensus.Cluster>> byEndpoint = new LinkedHashMap<>();
+        for (FindingConsensus.Cluster cluster : clusters) {
+            AIVulnerability vuln = cluster.getVulnerability();
+            String endpoint = cluster.getEndpointKey().isEmpty() ? vuln.getEndpoint() : cluster.getEndpointKey();
+            int agreeing = cluster.getModels().size();
+            result.addFinding(String.format("[%s] %s: %s (Severity: %s, agreement: %d/%d)",
+                vuln.getType(), endpoint, vuln.getDescription(), vuln.getSeverity(), agreeing, modelCount));
+
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("endpoint", endpoint);
+            entry.put("type", vuln.getType());
+            entry.put("severity", vuln.getSeverity());
+            entry.put("agreement", Math.round(100.0 * agreeing / modelCount) / 100.0);
+            entry.put("models", cluster.getModels());
+            agreement.add(entry);
+
+            if (!cluster.getEndpointKey().isEmpty()) {
+                if (vuln.getRecommendation() != null && !vuln.getRecommendation().isBlank()) {
+                    container.addRecommendation(cluster.getEndpointKey(), vuln.getRecommendation());
+                }
+                byEndpoint.computeIfAbsent(cluster.getEndpointKey(), k -> new ArrayList<>()).add(cluster);
             }
         }
-    }
-}
+        result.addDetail("models", modelCount);
+        result.addDetail("raw_findings", consensus.getVoteCount());
+        result.addDetail("merged_findings", clusters.size());
+        result.addDetail("agreement", agreement);
+        result.addDetail("recommendations", consensus.mergeRecommendations());
+        container.addAiResult("ai_consensus", result);
 
-class AIResponse {
-    private String model;
-    private List<AIVulnerability> vulnerabilities;
-    private List<String> overallRecommendations;
-    
-    public AIResponse(String model, List<AIVulnerability> vulnerabilities, List<String> overallRecommendations) {
-        this.model = model;
-        this.vulnerabilities = vulnerabilities;
-        this.overallRecommendations = overallRecommendations;
+        for (AIResponse response : responses) {
+            ModuleResult modelResult = container.getAiResults().get("ai_analysis_" + response.getModel());
+            if (modelResult != null) {
+                modelResult.addDetail("findings", modelResult.getFindings().size());
+                modelResult.setFindings(new ArrayList<>());
+            }
+        }
+
+        byEndpoint.forEach((key, endpointClusters) -> {
+            EndpointAnalysis analysis = container.findEndpointAnalysis(key);
+            if (analysis != null) {
+                int best = endpointClusters.stream().mapToInt(c -> c.getModels().size()).max().orElse(0);
+                analysis.setAi("Found " + endpointClusters.size() + " vulnerabilities (agreement up to "
+                    + best + "/" + modelCount + ")");
+                analysis.setRecommendation("Review AI security findings");
+            }
+        });
+        System.out.println("🤝 AI consensus: " + consensus.getVoteCount() + " findings from " + modelCount
+            + " models merged into " + clusters.size());
     }
-    
-    public String getModel() { return model; }
-    public List<AIVulnerability> getVulnerabilities() { return vulnerabilities; }
-    public List<String> getOverallRecommendations() { return overallRecommendations; }
 }
-
-class AIVulnerability {
-    private String type;
-    private String endpoint;
-    private String severity;
-    private String description;
-    private String recommendation;
-    
-    public String getType() { return type; }
-    public void setType(String type) { this.type = type; }
-    
-    public String getEndpoint() { return endpoint; }
-    public void setEndpoint(String endpoint) { this.endpoint = endpoint; }
-    
-    public String getSeverity() { return severity; }
-    public void setSeverity(String severity) { this.severity = severity; }
-    
-    public String getDescription() { return description; }
-    public void setDescription(String description) { this.description = description; }
-    
-    public String getRecommendation() { return recommendation; }
-    public void setRecommendation(String recommendation) { this.recommendation = recommendation; }
-}
\ No newline at end of file
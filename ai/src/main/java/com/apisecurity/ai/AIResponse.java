@@ -0,0 +1,19 @@
+package com.apisecurity.ai;
+
+import java.util.List;
+
+class AIResponse {
+    private String model;
+    private List<AIVulnerability> vulnerabilities;
+    private List<String> overallRecommendations;
+    
+    public AIResponse(String model, List<AIVulnerability> vulnerabilities, List<String> overallRecommendations) {
+        this.model = model;
+        this.vulnerabilities = vulnerabilities;
+        this.overallRecommendations = overallRecommendations;
+    }
+    
+    public String getModel() { return model; }
+    public List<AIVulnerability> getVulnerabilities() { return vulnerabilities; }
+    public List<String> getOverallRecommendations() { return overallRecommendations; }
+}
@@ -0,0 +1,259 @@
+package com.apisecurity.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Дисковый кэш ответов LLM, адресуемый содержимым запроса.
+ *
+ * Ключ — SHA-256 от модели, версии шаблона промпта, параметров генерации и самого
+ * промпта (в него входит фрагмент спецификации), поэтому неизменившиеся фрагменты
+ * отвечаются локально, а в сеть уходят только изменившиеся. Как и в Cassette, ответы
+ * лежат в responses.jsonl, а index.tsv хранит ключ, смещение и длину записи; оба файла
+ * только дописываются. Попадание дописывает ключ в индекс ещё раз, так что порядок
+ * строк индекса — порядок последнего использования. При открытии кэш, превысивший
+ * maxBytes, уплотняется: остаются недавно использованные записи в пределах лимита.
+ */
+class AIResponseCache {
+    private static final Map<Path, AIResponseCache> OPEN = new HashMap<>();
+
+    private static final class Entry {
+        final long offset;
+        final int length;
+
+        Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final Path directory;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    // Прочитанные в этом запуске ответы: повторное попадание не трогает диск
+    private final Map<String, String> loaded = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong hitNanos = new AtomicLong();
+    private long evicted;
+
+    private AIResponseCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        loadIndex(maxBytes);
+    }
+
+    /**
+     * Кэш для каталога; повторные вызовы с тем же каталогом получают один экземпляр.
+     * Возвращает null, если каталог недоступен — тогда модуль работает без кэша.
+     */
+    static AIResponseCache open(Path directory, long maxBytes) {
+        synchronized (OPEN) {
+            Path dir = directory.toAbsolutePath().normalize();
+            AIResponseCache cache = OPEN.get(dir);
+            if (cache == null) {
+                try {
+                    cache = new AIResponseCache(dir, maxBytes);
+                    OPEN.put(dir, cache);
+                    System.out.println("💾 AI response cache: " + dir + " (" + cache.size() + " responses"
+                        + (cache.evicted > 0 ? ", " + cache.evicted + " evicted" : "") + ")");
+                } catch (IOException e) {
+                    System.err.println("⚠️ AI response cache disabled: " + e.getMessage());
+                }
+            }
+            return cache;
+        }
+    }
+
+    static String key(String model, String promptVersion, double temperature, int maxTokens, String prompt) {
+        String material = model + "\n" + promptVersion + "\n" + temperature + "\n" + maxTokens + "\n" + prompt;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(material.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Сохранённый ответ или null.
+     */
+    String get(String key) {
+        long start = System.nanoTime();
+        String content = loaded.get(key);
+        if (content == null) {
+            Entry entry = index.get(key);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            content = read(key, entry);
+            if (content == null) {
+                index.remove(key);
+                misses.incrementAndGet();
+                return null;
+            }
+            loaded.put(key, content);
+            touch(key, entry);
+        }
+        hits.incrementAndGet();
+        hitNanos.addAndGet(System.nanoTime() - start);
+        return content;
+    }
+
+    void put(String key, String model, String content) {
+        ObjectNode line = objectMapper.createObjectNode();
+        line.put("key", key);
+        line.put("model", model);
+        line.put("stored", System.currentTimeMillis());
+        line.put("content", content);
+        try {
+            byte[] bytes = (objectMapper.writeValueAsString(line) + "\n").getBytes(StandardCharsets.UTF_8);
+            synchronized (writeLock) {
+                Path data = directory.resolve("responses.jsonl");
+                long offset = Files.exists(data) ? Files.size(data) : 0;
+                Files.write(data, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                Entry entry = new Entry(offset, bytes.length);
+                appendIndex(key, entry);
+                index.put(key, entry);
+            }
+            loaded.put(key, content);
+            stores.incrementAndGet();
+        } catch (IOException e) {
+            System.err.println("❌ Failed to cache AI response " + key + ": " + e.getMessage());
+        }
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    long getHits() { return hits.get(); }
+    long getMisses() { return misses.get(); }
+    long getStores() { return stores.get(); }
+
+    @Override
+    public String toString() {
+        long hitCount = hits.get();
+        return String.format("%d hits (avg %.1f µs), %d misses, %d stored, %d entries",
+            hitCount, hitCount == 0 ? 0.0 : hitNanos.get() / 1e3 / hitCount, misses.get(), stores.get(), size());
+    }
+
+    private String read(String key, Entry entry) {
+        try (RandomAccessFile data = new RandomAccessFile(directory.resolve("responses.jsonl").toFile(), "r")) {
+            byte[] bytes = new byte[entry.length];
+            data.seek(entry.offset);
+            data.readFully(bytes);
+            JsonNode node = objectMapper.readTree(new String(bytes, StandardCharsets.UTF_8));
+            // Индекс от другого состояния данных (например, после прерванного уплотнения) не подменяет ответ
+            if (!key.equals(node.path("key").asText()) || !node.path("content").isTextual()) {
+                return null;
+            }
+            return node.get("content").asText();
+        } catch (IOException e) {
+            System.err.println("❌ Failed to read cached AI response: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void touch(String key, Entry entry) {
+        synchronized (writeLock) {
+            try {
+                appendIndex(key, entry);
+            } catch (IOException e) {
+                // Порядок использования — только подсказка для вытеснения
+            }
+        }
+    }
+
+    private void appendIndex(String key, Entry entry) throws IOException {
+        Files.write(directory.resolve("index.tsv"),
+            (key + "\t" + entry.offset + "\t" + entry.length + "\n").getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void loadIndex(long maxBytes) throws IOException {
+        Path indexFile = directory.resolve("index.tsv");
+        Path data = directory.resolve("responses.jsonl");
+        if (!Files.exists(indexFile) || !Files.exists(data)) {
+            return;
+        }
+        long dataSize = Files.size(data);
+        // LinkedHashMap с перемещением при повторной вставке: в конце — последние использованные
+        LinkedHashMap<String, Entry> byRecency = new LinkedHashMap<>();
+        int lines = 0;
+        for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+            lines++;
+            String[] parts = line.split("\t");
+            if (parts.length != 3) continue;
+            Entry entry = new Entry(Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+            // Запись, дописанная не до конца, в индекс не попадает
+            if (entry.offset + entry.length > dataSize) continue;
+            byRecency.remove(parts[0]);
+            byRecency.put(parts[0], entry);
+        }
+
+        long liveBytes = byRecency.values().stream().mapToLong(e -> e.length).sum();
+        if (dataSize > maxBytes || lines > 2 * byRecency.size() + 1024) {
+            compact(byRecency, maxBytes, liveBytes);
+        } else {
+            index.putAll(byRecency);
+        }
+    }
+
+    private void compact(LinkedHashMap<String, Entry> byRecency, long maxBytes, long liveBytes) throws IOException {
+        List<Map.Entry<String, Entry>> entries = new ArrayList<>(byRecency.entrySet());
+        // С конца — от недавно использованных к давним, пока помещаются в лимит
+        int first = entries.size();
+        long kept = 0;
+        while (first > 0 && kept + entries.get(first - 1).getValue().length <= maxBytes) {
+            first--;
+            kept += entries.get(first).getValue().length;
+        }
+        evicted = first;
+
+        Path data = directory.resolve("responses.jsonl");
+        Path newData = directory.resolve("responses.jsonl.tmp");
+        Path newIndex = directory.resolve("index.tsv.tmp");
+        StringBuilder indexLines = new StringBuilder();
+        try (RandomAccessFile source = new RandomAccessFile(data.toFile(), "r");
+             var target = Files.newOutputStream(newData)) {
+            long offset = 0;
+            for (Map.Entry<String, Entry> e : entries.subList(first, entries.size())) {
+                byte[] bytes = new byte[e.getValue().length];
+                source.seek(e.getValue().offset);
+                source.readFully(bytes);
+                target.write(bytes);
+                Entry moved = new Entry(offset, bytes.length);
+                index.put(e.getKey(), moved);
+                indexLines.append(e.getKey()).append('\t').append(offset).append('\t').append(bytes.length).append('\n');
+                offset += bytes.length;
+            }
+        }
+        Files.write(newIndex, indexLines.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(newData, data, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(newIndex, directory.resolve("index.tsv"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("🧹 AI response cache compacted: " + liveBytes / 1024 + " KB -> " + kept / 1024 + " KB");
+    }
+}
@@ -0,0 +1,25 @@
+package com.apisecurity.ai;
+
+
+class AIVulnerability {
+    private String type;
+    private String endpoint;
+    private String severity;
+    private String description;
+    private String recommendation;
+    
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+    
+    public String getEndpoint() { return endpoint; }
+    public void setEndpoint(String endpoint) { this.endpoint = endpoint; }
+    
+    public String getSeverity() { return severity; }
+    public void setSeverity(String severity) { this.severity = severity; }
+    
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+    
+    public String getRecommendation() { return recommendation; }
+    public void setRecommendation(String recommendation) { this.recommendation = recommendation; }
+}
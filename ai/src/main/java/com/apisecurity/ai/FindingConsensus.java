@@ -0,0 +1,326 @@
+package com.apisecurity.ai;
+
+import com.apisecurity.shared.EndpointIndex;
+import com.apisecurity.shared.EndpointOperation;
+
+import java.util.*;
+
+/**
+ * Сведение находок разных моделей в одну находку на кластер.
+ *
+ * Эндпоинт находки приводится к ключу EndpointIndex ("GET /accounts/{account_id}"):
+ * модели пишут пути по-разному — с хостом и базовым путём, с другими именами
+ * параметров или конкретными значениями вместо них. Находки одного эндпоинта
+ * объединяются в кластер, если похожи по словесным шинглам (униграммы и биграммы
+ * типа и описания, мера Жаккара). Категория OWASP API Top 10 служит фильтром:
+ * находки разных категорий не объединяются, а одной категории — только если похожи
+ * (в одной категории бывают разные проблемы: CORS и HTTP без TLS — обе API8).
+ * Одной категории достаточно, лишь когда текст слишком короткий для сравнения. От кластера остаётся находка с наибольшей
+ * серьёзностью и оценка согласия — доля моделей, нашедших проблему.
+ */
+class FindingConsensus {
+    private static final double FINDING_SIMILARITY = 0.35;
+    private static final double RECOMMENDATION_SIMILARITY = 0.5;
+    // Меньше шинглов — текст не с чем сравнивать, решает одна категория
+    private static final int MIN_COMPARABLE_SHINGLES = 4;
+    private static final Set<String> HTTP_METHODS = Set.of("GET", "POST", "PUT", "DELETE", "PATCH", "HEAD", "OPTIONS", "TRACE");
+
+    // Категория по ключевым словам типа находки; порядок важен — первое совпадение побеждает
+    private static final String[][] CATEGORIES = {
+        // API3 раньше API1: «…на уровне свойств объекта» содержит и «объект»
+        {"API3", "property", "mass assignment", "excessive data", "свойств", "избыточн"},
+        {"API1", "bola", "idor", "object level", "object-level", "объект"},
+        {"API5", "bfla", "function level", "function-level", "функци", "privilege", "привилег", "admin"},
+        {"API4", "resource consumption", "rate limit", "rate-limit", "dos", "ресурс", "лимит", "ограничени частоты"},
+        {"API2", "authentication", "аутентификац", "session", "сесси", "jwt"},
+        {"API6", "business flow", "бизнес"},
+        {"API7", "ssrf", "server side request", "server-side request"},
+        {"API8", "misconfiguration", "cors", "header", "заголов", "конфигурац", "https", "tls"},
+        {"API9", "inventory", "версии", "version", "deprecated", "инвентар"},
+        {"API10", "unsafe consumption", "third-party", "third party", "сторонн"},
+        {"INJECTION", "injection", "инъекц", "sqli", "xss"},
+        {"VALIDATION", "validation", "валидац", "input"},
+        {"DATA_EXPOSURE", "sensitive", "exposure", "чувствительн", "утечк", "pii"},
+        {"AUTHORIZATION", "authorization", "авторизац", "access control", "доступ"}
+    };
+
+    /** Находка одной модели */
+    static class Vote {
+        final String model;
+        final AIVulnerability vulnerability;
+        final String endpointKey;
+        // Группа для кластеризации: ключ операции, а для несопоставленных — сама запись модели
+        final String group;
+        final String category;
+        final Set<String> shingles;
+
+        Vote(String model, AIVulnerability vulnerability, String endpointKey) {
+            this.model = model;
+            this.vulnerability = vulnerability;
+            this.endpointKey = endpointKey;
+            this.group = !endpointKey.isEmpty() ? endpointKey
+                : "? " + (vulnerability.getEndpoint() == null ? "" : vulnerability.getEndpoint().trim().toLowerCase());
+            this.category = categoryOf(vulnerability.getType());
+            this.shingles = shingles(vulnerability.getType() + " " + vulnerability.getDescription());
+        }
+    }
+
+    /** Кластер согласованных находок */
+    static class Cluster {
+        private final String endpointKey;
+        private final List<Vote> votes = new ArrayList<>();
+        private Vote representative;
+
+        Cluster(String endpointKey) {
+            this.endpointKey = endpointKey;
+        }
+
+        void add(Vote vote) {
+            votes.add(vote);
+            if (representative == null || isBetter(vote, representative)) {
+                representative = vote;
+            }
+        }
+
+        boolean accepts(Vote vote) {
+            for (Vote member : votes) {
+                if (member.category != null && vote.category != null) {
+                    if (!member.category.equals(vote.category)) continue;
+                    if (member.shingles.size() < MIN_COMPARABLE_SHINGLES || vote.shingles.size() < MIN_COMPARABLE_SHINGLES) {
+                        return true;
+                    }
+                }
+                if (jaccard(member.shingles, vote.shingles) >= FINDING_SIMILARITY) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        String getEndpointKey() { return endpointKey; }
+        AIVulnerability getVulnerability() { return representative.vulnerability; }
+
+        Set<String> getModels() {
+            Set<String> models = new TreeSet<>();
+            votes.forEach(vote -> models.add(vote.model));
+            return models;
+        }
+
+        private static boolean isBetter(Vote candidate, Vote current) {
+            int bySeverity = Integer.compare(AIModule.severityRank(candidate.vulnerability.getSeverity()),
+                AIModule.severityRank(current.vulnerability.getSeverity()));
+            if (bySeverity != 0) return bySeverity > 0;
+            return candidate.vulnerability.getDescription().length() > current.vulnerability.getDescription().length();
+        }
+    }
+
+    private final EndpointIndex endpointIndex;
+    private final List<Vote> votes = new ArrayList<>();
+    private final Map<String, List<String>> recommendationsByText = new LinkedHashMap<>();
+    private final Set<String> models = new LinkedHashSet<>();
+
+    FindingConsensus(EndpointIndex endpointIndex) {
+        this.endpointIndex = endpointIndex;
+    }
+
+    void add(AIResponse response) {
+        models.add(response.getModel());
+        for (AIVulnerability vuln : response.getVulnerabilities()) {
+            votes.add(new Vote(response.getModel(), vuln, normalizeEndpoint(vuln.getEndpoint())));
+        }
+        for (String recommendation : response.getOverallRecommendations()) {
+            recommendationsByText.computeIfAbsent(recommendation, r -> new ArrayList<>()).add(response.getModel());
+        }
+    }
+
+    int getModelCount() { return models.size(); }
+    int getVoteCount() { return votes.size(); }
+
+    /**
+     * Кластеры находок: сначала с большим согласием моделей, затем по серьёзности.
+     */
+    List<Cluster> merge() {
+        Map<String, List<Cluster>> byEndpoint = new LinkedHashMap<>();
+        for (Vote vote : votes) {
+            List<Cluster> clusters = byEndpoint.computeIfAbsent(vote.group, k -> new ArrayList<>());
+            Cluster target = null;
+            for (Cluster cluster : clusters) {
+                if (cluster.accepts(vote)) {
+                    target = cluster;
+                    break;
+                }
+            }
+            if (target == null) {
+                target = new Cluster(vote.endpointKey);
+                clusters.add(target);
+            }
+            target.add(vote);
+        }
+
+        List<Cluster> merged = new ArrayList<>();
+        byEndpoint.values().forEach(merged::addAll);
+        merged.sort(Comparator.comparingInt((Cluster c) -> c.getModels().size()).reversed()
+            .thenComparing(c -> -AIModule.severityRank(c.getVulnerability().getSeverity())));
+        return merged;
+    }
+
+    /**
+     * Общие рекомендации без перефразированных повторов, с числом предложивших их моделей.
+     */
+    Map<String, Integer> mergeRecommendations() {
+        List<Set<String>> shingleSets = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        List<Set<String>> supporters = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : recommendationsByText.entrySet()) {
+            Set<String> shingles = shingles(entry.getKey());
+            int match = -1;
+            for (int i = 0; i < shingleSets.size() && match < 0; i++) {
+                if (jaccard(shingleSets.get(i), shingles) >= RECOMMENDATION_SIMILARITY) {
+                    match = i;
+                }
+            }
+            if (match < 0) {
+                shingleSets.add(shingles);
+                texts.add(entry.getKey());
+                supporters.add(new HashSet<>(entry.getValue()));
+            } else {
+                supporters.get(match).addAll(entry.getValue());
+            }
+        }
+        Map<String, Integer> merged = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            merged.put(texts.get(i), supporters.get(i).size());
+        }
+        return merged;
+    }
+
+    /**
+     * Ключ операции из EndpointIndex для эндпоинта в записи модели; если операция не
+     * найдена — нормализованная запись "METHOD /path"; "" — если записи нет или путь
+     * без метода, а на нём несколько операций (находка не сопоставлена).
+     */
+    String normalizeEndpoint(String raw) {
+        if (raw == null || raw.isBlank()) {
+            return "";
+        }
+        String text = raw.trim();
+        String method = null;
+        int space = text.indexOf(' ');
+        if (space > 0 && HTTP_METHODS.contains(text.substring(0, space).toUpperCase())) {
+            method = text.substring(0, space).toLowerCase();
+            text = text.substring(space + 1).trim();
+        }
+        String path = normalizePath(text);
+
+        EndpointOperation best = null;
+        int bestScore = -1;
+        for (EndpointOperation endpoint : endpointIndex.getOperations()) {
+            if (method != null && !method.equals(endpoint.getMethod())) continue;
+            int score = matchScore(endpoint.getPath(), path);
+            if (score > bestScore) {
+                best = endpoint;
+                bestScore = score;
+            }
+        }
+        if (best != null) {
+            // Без метода путь однозначен, только если на нём одна операция
+            if (method != null || endpointIndex.getByPath(best.getPath()).size() == 1) {
+                return best.getKey();
+            }
+            return "";
+        }
+        return method != null ? method.toUpperCase() + " " + path : path;
+    }
+
+    private static String normalizePath(String text) {
+        String path = text;
+        int scheme = path.indexOf("://");
+        if (scheme >= 0) {
+            int slash = path.indexOf('/', scheme + 3);
+            path = slash >= 0 ? path.substring(slash) : "/";
+        }
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        path = path.trim();
+        if (!path.startsWith("/")) {
+            path = "/" + path;
+        }
+        while (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    /**
+     * Совпадение шаблона пути спецификации с путём из ответа модели: число совпавших
+     * литеральных сегментов или -1. Параметр шаблона совпадает с любым сегментом;
+     * лишние ведущие сегменты пути (базовый путь сервера) отбрасываются.
+     */
+    static int matchScore(String template, String path) {
+        String[] expected = template.split("/");
+        String[] actual = path.split("/");
+        for (int skip = 0; skip <= 3 && actual.length - skip >= expected.length; skip++) {
+            if (actual.length - skip != expected.length) continue;
+            int score = 0;
+            boolean matches = true;
+            for (int i = 1; i < expected.length && matches; i++) {
+                String segment = expected[i];
+                String candidate = actual[i + skip];
+                if (segment.startsWith("{") && segment.endsWith("}")) {
+                    continue;
+                }
+                if (segment.equalsIgnoreCase(candidate)) {
+                    score++;
+                } else {
+                    matches = false;
+                }
+            }
+            if (matches) {
+                return score;
+            }
+        }
+        return -1;
+    }
+
+    static String categoryOf(String type) {
+        String lower = type == null ? "" : type.toLowerCase();
+        for (String[] category : CATEGORIES) {
+            for (int i = 1; i < category.length; i++) {
+                if (lower.contains(category[i])) {
+                    return category[0];
+                }
+            }
+        }
+        return null;
+    }
+
+    // Словесные шинглы: слова длиннее двух букв и пары соседних слов
+    static Set<String> shingles(String text) {
+        List<String> words = new ArrayList<>();
+        for (String word : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() > 2) {
+                words.add(word);
+            }
+        }
+        Set<String> shingles = new HashSet<>(words);
+        for (int i = 0; i + 1 < words.size(); i++) {
+            shingles.add(words.get(i) + " " + words.get(i + 1));
+        }
+        return shingles;
+    }
+
+    static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1.0;
+        }
+        int common = 0;
+        for (String shingle : a.size() <= b.size() ? a : b) {
+            if ((a.size() <= b.size() ? b : a).contains(shingle)) {
+                common++;
+            }
+        }
+        return (double) common / (a.size() + b.size() - common);
+    }
+}
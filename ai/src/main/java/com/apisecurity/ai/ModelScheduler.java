@@ -0,0 +1,339 @@
+package com.apisecurity.ai;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Планировщик запросов к моделям.
+ *
+ * Одновременно выполняется не больше limit запросов; limit подстраивается по AIMD,
+ * как скорость в HostRateLimiter: 429 уменьшает его вдвое, быстрый успешный ответ
+ * понемногу повышает, ответ намного медленнее обычного — понижает на единицу.
+ * Для каждой модели копится статистика задержек и отказов. Запрос, не ответивший
+ * к перцентилю задержек своей модели (hedgePercentile), или завершившийся ошибкой,
+ * дублируется на резервную модель — самую надёжную и быструю из остальных; первый
+ * хороший ответ побеждает, второй запрос отменяется. Ответ из кэша в статистику
+ * задержек и в подстройку limit не попадает: он ничего не говорит о модели.
+ */
+class ModelScheduler {
+    private static final int LATENCY_WINDOW = 32;
+    private static final int MIN_SAMPLES = 4;
+    private static final long THROTTLE_COOLDOWN_MS = 2000;
+
+    /**
+     * Вызов модели для фрагмента; исключение — плохой ответ. Ответ должен быть
+     * помечен моделью model: дубль на резервной модели — её ответ, а не основной.
+     */
+    interface ChunkCall {
+        AIResponse call(String model, Attempt attempt) throws Exception;
+    }
+
+    /**
+     * Попытка запроса к модели. Прерывание потока не останавливает блокирующее
+     * чтение OkHttp, поэтому вызов регистрирует здесь, как отменить свой запрос.
+     */
+    static class Attempt {
+        private volatile Future<?> task;
+        private volatile Runnable cancelHook;
+        private volatile boolean cancelled;
+        private volatile boolean cached;
+
+        /** Действие при отмене попытки; если она уже отменена — выполняется сразу */
+        void onCancel(Runnable hook) {
+            cancelHook = hook;
+            if (cancelled) {
+                hook.run();
+            }
+        }
+
+        /** Ответ взят из кэша, а не получен от модели */
+        void markCached() {
+            cached = true;
+        }
+
+        boolean isCached() {
+            return cached;
+        }
+
+        void cancel() {
+            cancelled = true;
+            Future<?> current = task;
+            if (current != null) {
+                current.cancel(true);
+            }
+            Runnable hook = cancelHook;
+            if (hook != null) {
+                hook.run();
+            }
+        }
+    }
+
+    /** Статистика модели за запуск */
+    static class ModelStats {
+        private final long[] latencies = new long[LATENCY_WINDOW];
+        private int samples;
+        private int successes;
+        private int failures;
+        private int hedgesWon;
+
+        synchronized void onSuccess(long latencyMs) {
+            latencies[samples++ % LATENCY_WINDOW] = latencyMs;
+            successes++;
+        }
+
+        synchronized void onFailure() {
+            failures++;
+        }
+
+        synchronized void onHedgeWon() {
+            hedgesWon++;
+        }
+
+        // Перцентиль задержки по последним ответам; -1, если ответов мало
+        synchronized long percentile(double p) {
+            int n = Math.min(samples, LATENCY_WINDOW);
+            if (n < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(latencies, n);
+            Arrays.sort(sorted);
+            return sorted[Math.min(n - 1, (int) Math.ceil(p * n) - 1)];
+        }
+
+        // Сглаженная доля успешных ответов: новая модель считается надёжной наполовину
+        synchronized double successRate() {
+            return (successes + 1.0) / (successes + failures + 2.0);
+        }
+
+        synchronized int getSuccesses() { return successes; }
+        synchronized int getFailures() { return failures; }
+        synchronized int getHedgesWon() { return hedgesWon; }
+    }
+
+    private final ExecutorService workers;
+    private final ScheduledExecutorService timers;
+    private final List<String> models;
+    private final int maxConcurrency;
+    private final double hedgePercentile;
+    private final long defaultHedgeDelayMs;
+    private final Map<String, ModelStats> stats = new ConcurrentHashMap<>();
+
+    private final Object limitLock = new Object();
+    private double limit;
+    private int inFlight;
+    private long lastThrottleAt;
+    private final AtomicInteger throttled = new AtomicInteger();
+    private final AtomicInteger hedges = new AtomicInteger();
+
+    /**
+     * @param hedgePercentile перцентиль задержки, после которого запрос дублируется; 0 — без дублирования
+     * @param defaultHedgeDelayMs задержка дублирования, пока у модели мало ответов
+     */
+    ModelScheduler(List<String> models, int maxConcurrency, double hedgePercentile, long defaultHedgeDelayMs) {
+        this.models = new ArrayList<>(new LinkedHashSet<>(models));
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.hedgePercentile = hedgePercentile;
+        this.defaultHedgeDelayMs = defaultHedgeDelayMs;
+        this.limit = this.maxConcurrency;
+        // Потоков вдвое больше лимита: дубли не ждут, пока освободится поток основного запроса
+        this.workers = Executors.newFixedThreadPool(this.maxConcurrency * 2, daemonThreads("ai-worker"));
+        this.timers = Executors.newSingleThreadScheduledExecutor(daemonThreads("ai-hedge"));
+        for (String model : this.models) {
+            stats.put(model, new ModelStats());
+        }
+    }
+
+    /**
+     * Запускает фрагмент на модели. Future завершается первым хорошим ответом основной
+     * или резервной модели; если оба не удались — пустым ответом основной модели.
+     */
+    CompletableFuture<AIResponse> submit(String model, ChunkCall call) {
+        CompletableFuture<AIResponse> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        Object hedgeLock = new Object();
+        boolean[] hedged = {false};
+        List<Attempt> attempts = new CopyOnWriteArrayList<>();
+
+        Runnable hedge = () -> {
+            synchronized (hedgeLock) {
+                if (hedged[0] || result.isDone()) return;
+                String backup = pickBackup(model);
+                if (backup == null) return;
+                hedged[0] = true;
+                pending.incrementAndGet();
+                hedges.incrementAndGet();
+                System.out.println("  🔀 Hedging " + model + " with " + backup);
+                Attempt attempt = start(backup, call, result, pending, null, null, true);
+                attempts.add(attempt);
+                if (result.isDone()) {
+                    attempt.cancel();
+                }
+            }
+        };
+        // Срок дублирования отсчитывается от отправки запроса, а не от постановки в очередь
+        // По таймеру дубль запускается, только если есть свободное место: при перегрузке он лишь встал бы в очередь
+        Runnable hedgeIfIdle = () -> {
+            if (hasFreeSlot()) {
+                hedge.run();
+            }
+        };
+        Runnable armHedge = hedgePercentile <= 0 ? null : () -> {
+            ScheduledFuture<?> timer = timers.schedule(hedgeIfIdle, hedgeDelayMs(model), TimeUnit.MILLISECONDS);
+            result.whenComplete((r, e) -> timer.cancel(false));
+        };
+        attempts.add(start(model, call, result, pending, hedge, armHedge, false));
+        // Победивший ответ отменяет оставшиеся попытки
+        result.whenComplete((r, e) -> attempts.forEach(Attempt::cancel));
+        return result;
+    }
+
+    private Attempt start(String model, ChunkCall call, CompletableFuture<AIResponse> result,
+                          AtomicInteger pending, Runnable onFailure, Runnable onStarted, boolean isHedge) {
+        Attempt attempt = new Attempt();
+        attempt.task = workers.submit(() -> {
+            try {
+                acquire();
+                if (onStarted != null) {
+                    try {
+                        onStarted.run();
+                    } catch (RejectedExecutionException e) {
+                        // Планировщик уже остановлен
+                    }
+                }
+                long started = System.currentTimeMillis();
+                try {
+                    AIResponse response = call.call(model, attempt);
+                    if (!attempt.isCached()) {
+                        long latency = System.currentTimeMillis() - started;
+                        stats.get(model).onSuccess(latency);
+                        onLatency(model, latency);
+                    }
+                    if (result.complete(response) && isHedge) {
+                        stats.get(model).onHedgeWon();
+                    }
+                    return;
+                } finally {
+                    release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                if (!result.isDone()) {
+                    stats.get(model).onFailure();
+                    System.err.println("  ❌ " + model + " failed: " + e.getMessage());
+                    if (onFailure != null) {
+                        // Ошибка основной модели — сразу на резервную, не дожидаясь таймера
+                        onFailure.run();
+                    }
+                }
+            }
+            if (pending.decrementAndGet() == 0) {
+                result.complete(new AIResponse(model, Collections.emptyList(), Collections.emptyList()));
+            }
+        });
+        return attempt;
+    }
+
+    /** Сигнал 429 от любого запроса к провайдеру */
+    void onThrottled() {
+        throttled.incrementAndGet();
+        synchronized (limitLock) {
+            long now = System.currentTimeMillis();
+            // Пачка 429 от одновременных запросов — одно снижение
+            if (now - lastThrottleAt < THROTTLE_COOLDOWN_MS) return;
+            lastThrottleAt = now;
+            limit = Math.max(1, limit / 2);
+        }
+    }
+
+    private void onLatency(String model, long latencyMs) {
+        long median = stats.get(model).percentile(0.5);
+        synchronized (limitLock) {
+            if (median > 0 && latencyMs > 2 * median) {
+                limit = Math.max(1, limit - 1);
+            } else {
+                limit = Math.min(maxConcurrency, limit + 1.0 / limit);
+            }
+            limitLock.notifyAll();
+        }
+    }
+
+    private void acquire() throws InterruptedException {
+        synchronized (limitLock) {
+            while (inFlight >= (int) limit) {
+                limitLock.wait();
+            }
+            inFlight++;
+        }
+    }
+
+    private boolean hasFreeSlot() {
+        synchronized (limitLock) {
+            return inFlight < (int) limit;
+        }
+    }
+
+    private void release() {
+        synchronized (limitLock) {
+            inFlight--;
+            limitLock.notifyAll();
+        }
+    }
+
+    private long hedgeDelayMs(String model) {
+        long own = stats.get(model).percentile(hedgePercentile);
+        if (own > 0) return own;
+        // Своих ответов мало — ориентируемся на самую медленную из известных моделей
+        long others = -1;
+        for (ModelStats s : stats.values()) {
+            others = Math.max(others, s.percentile(hedgePercentile));
+        }
+        return others > 0 ? others : defaultHedgeDelayMs;
+    }
+
+    // Резервная модель: лучшая доля успехов, при равенстве — меньшая медиана задержки
+    private String pickBackup(String model) {
+        String best = null;
+        double bestScore = -1;
+        for (String candidate : models) {
+            if (candidate.equals(model)) continue;
+            ModelStats s = stats.get(candidate);
+            long median = s.percentile(0.5);
+            double score = s.successRate() - (median > 0 ? median / 1e7 : 0);
+            if (score > bestScore) {
+                best = candidate;
+                bestScore = score;
+            }
+        }
+        return best != null && stats.get(best).successRate() >= 0.34 ? best : null;
+    }
+
+    ModelStats getStats(String model) {
+        return stats.get(model);
+    }
+
+    int getHedges() { return hedges.get(); }
+    int getThrottled() { return throttled.get(); }
+
+    int getLimit() {
+        synchronized (limitLock) {
+            return (int) limit;
+        }
+    }
+
+    /** Прерывает всё, что ещё выполняется или ждёт своей очереди */
+    void shutdownNow() {
+        workers.shutdownNow();
+        timers.shutdownNow();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,209 @@
+package com.apisecurity.ai;
+
+import com.apisecurity.shared.EndpointIndex;
+import com.apisecurity.shared.EndpointOperation;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.*;
+
+/**
+ * Делит спецификацию на фрагменты для LLM вместо обрезки по фиксированной длине.
+ *
+ * Единица деления — операция из EndpointIndex. Операции группируются по ресурсу
+ * (первый статический сегмент пути), чтобы создание объекта и операции над его
+ * идентификатором (POST /accounts, GET /accounts/{id}, /accounts/{id}/balances)
+ * попали в один фрагмент: модели нужен этот поток идентификаторов, чтобы увидеть
+ * BOLA и подобные проблемы. Каждая группа — отдельный фрагмент, а группа, не
+ * влезающая в бюджет целиком, делится по операциям. Границы фрагментов не зависят
+ * от соседних ресурсов: правка одного ресурса меняет только его фрагменты, и
+ * кэш ответов моделей (AIResponseCache) для остальных продолжает попадать.
+ * Каждый фрагмент — валидный мини-OpenAPI с общим заголовком (info, servers,
+ * security, securitySchemes).
+ */
+class SpecChunker {
+    // Грубая оценка: ~4 символа JSON на токен
+    static final int CHARS_PER_TOKEN = 4;
+
+    private final ObjectMapper objectMapper;
+
+    SpecChunker(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    static int estimateTokens(String text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Фрагменты спецификации, каждый не больше tokenBudget токенов (по оценке).
+     * Операция, которая не помещается даже одна, отдаётся без примеров, а в крайнем
+     * случае — обрезанной; это единственное место, где текст режется.
+     */
+    List<Chunk> split(JsonNode spec, EndpointIndex endpointIndex, int tokenBudget) throws Exception {
+        ObjectNode header = header(spec);
+        int headerTokens = estimateTokens(objectMapper.writeValueAsString(header));
+        int operationBudget = Math.max(tokenBudget - headerTokens, tokenBudget / 4);
+
+        Map<String, List<EndpointOperation>> groups = new LinkedHashMap<>();
+        for (EndpointOperation endpoint : endpointIndex.getOperations()) {
+            groups.computeIfAbsent(resourceOf(endpoint.getPath()), r -> new ArrayList<>()).add(endpoint);
+        }
+
+        List<List<Piece>> packed = new ArrayList<>();
+        for (List<EndpointOperation> group : groups.values()) {
+            // Фрагмент начинается с каждого ресурса; большой ресурс делится только внутри себя
+            List<Piece> current = new ArrayList<>();
+            int currentTokens = 0;
+            for (EndpointOperation endpoint : group) {
+                Piece piece = piece(spec, endpoint, operationBudget);
+                if (currentTokens + piece.tokens > operationBudget && !current.isEmpty()) {
+                    packed.add(current);
+                    current = new ArrayList<>();
+                    currentTokens = 0;
+                }
+                current.add(piece);
+                currentTokens += piece.tokens;
+            }
+            packed.add(current);
+        }
+        packed.removeIf(List::isEmpty);
+
+        List<Chunk> chunks = new ArrayList<>(packed.size());
+        for (List<Piece> pieces : packed) {
+            chunks.add(toChunk(header, pieces, chunks.size() + 1, packed.size()));
+        }
+        return chunks;
+    }
+
+    // Первый сегмент пути, не являющийся параметром: /v1/accounts/{id} -> v1/accounts
+    static String resourceOf(String path) {
+        StringBuilder resource = new StringBuilder();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty()) continue;
+            if (segment.startsWith("{")) break;
+            if (resource.length() > 0) resource.append('/');
+            resource.append(segment);
+            // Префикс версии сам по себе ресурсом не считается
+            if (!segment.matches("v\\d+(\\.\\d+)?|api")) break;
+        }
+        return resource.toString();
+    }
+
+    private ObjectNode header(JsonNode spec) {
+        ObjectNode header = objectMapper.createObjectNode();
+        for (String field : new String[]{"openapi", "swagger", "info", "servers", "security"}) {
+            if (spec.has(field)) {
+                header.set(field, spec.get(field));
+            }
+        }
+        JsonNode schemes = spec.path("components").path("securitySchemes");
+        if (schemes.isObject()) {
+            header.putObject("components").set("securitySchemes", schemes);
+        }
+        return header;
+    }
+
+    private Piece piece(JsonNode spec, EndpointOperation endpoint, int operationBudget) throws Exception {
+        JsonNode operation = endpoint.getOperation();
+        // Параметры уровня пути относятся ко всем операциям пути
+        JsonNode pathParameters = spec.path("paths").path(endpoint.getPath()).get("parameters");
+
+        int parameterTokens = pathParameters != null ? estimateTokens(pathParameters.toString()) : 0;
+
+        String json = objectMapper.writeValueAsString(operation);
+        int tokens = estimateTokens(json) + parameterTokens;
+        if (tokens > operationBudget) {
+            JsonNode compact = operation.deepCopy();
+            stripExamples(compact);
+            operation = compact;
+            json = objectMapper.writeValueAsString(operation);
+            tokens = estimateTokens(json) + parameterTokens;
+        }
+        if (tokens <= operationBudget) {
+            return new Piece(endpoint, operation, pathParameters, null, tokens);
+        }
+        int keepChars = Math.max(operationBudget - parameterTokens, operationBudget / 2) * CHARS_PER_TOKEN;
+        String truncatedJson = json.substring(0, Math.min(json.length(), keepChars));
+        return new Piece(endpoint, operation, pathParameters, truncatedJson, estimateTokens(truncatedJson) + parameterTokens);
+    }
+
+    private void stripExamples(JsonNode node) {
+        if (node.isObject()) {
+            ((ObjectNode) node).remove(Arrays.asList("example", "examples"));
+        }
+        for (JsonNode child : node) {
+            stripExamples(child);
+        }
+    }
+
+    private Chunk toChunk(ObjectNode header, List<Piece> pieces, int number, int total) throws Exception {
+        ObjectNode chunk = header.deepCopy();
+        ObjectNode paths = chunk.putObject("paths");
+        List<String> endpoints = new ArrayList<>(pieces.size());
+        int truncated = 0;
+        for (Piece piece : pieces) {
+            EndpointOperation endpoint = piece.endpoint;
+            ObjectNode pathItem = paths.has(endpoint.getPath())
+                ? (ObjectNode) paths.get(endpoint.getPath())
+                : paths.putObject(endpoint.getPath());
+            if (piece.pathParameters != null && !pathItem.has("parameters")) {
+                pathItem.set("parameters", piece.pathParameters);
+            }
+            if (piece.truncatedJson != null) {
+                pathItem.put(endpoint.getMethod(), piece.truncatedJson + "... [truncated]");
+                truncated++;
+            } else {
+                pathItem.set(endpoint.getMethod(), piece.operation);
+            }
+            endpoints.add(endpoint.getKey());
+        }
+        String json = objectMapper.writeValueAsString(chunk);
+        return new Chunk(number, total, json, endpoints, estimateTokens(json), truncated);
+    }
+
+    private static class Piece {
+        final EndpointOperation endpoint;
+        final JsonNode operation;
+        final JsonNode pathParameters;
+        final String truncatedJson;
+        final int tokens;
+
+        Piece(EndpointOperation endpoint, JsonNode operation, JsonNode pathParameters, String truncatedJson, int tokens) {
+            this.endpoint = endpoint;
+            this.operation = operation;
+            this.pathParameters = pathParameters;
+            this.truncatedJson = truncatedJson;
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * Фрагмент спецификации для одного запроса к модели.
+     */
+    static class Chunk {
+        private final int number;
+        private final int total;
+        private final String json;
+        private final List<String> endpoints;
+        private final int estimatedTokens;
+        private final int truncatedOperations;
+
+        Chunk(int number, int total, String json, List<String> endpoints, int estimatedTokens, int truncatedOperations) {
+            this.number = number;
+            this.total = total;
+            this.json = json;
+            this.endpoints = Collections.unmodifiableList(endpoints);
+            this.estimatedTokens = estimatedTokens;
+            this.truncatedOperations = truncatedOperations;
+        }
+
+        public int getNumber() { return number; }
+        public int getTotal() { return total; }
+        public String getJson() { return json; }
+        public List<String> getEndpoints() { return endpoints; }
+        public int getEstimatedTokens() { return estimatedTokens; }
+        public int getTruncatedOperations() { return truncatedOperations; }
+    }
+}
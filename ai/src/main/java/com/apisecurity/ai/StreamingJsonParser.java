@@ -0,0 +1,164 @@
+package com.apisecurity.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.function.Consumer;
+
+/**
+ * Инкрементальный разбор JSON-ответа модели по мере прихода потока.
+ *
+ * Принимает куски текста в том виде, в каком их присылает SSE, и следит только за
+ * структурой: глубиной скобок, строками и экранированием. Каждый элемент массива
+ * верхнего уровня "vulnerabilities" отдаётся слушателю, как только закрывается его
+ * объект, а после закрытия корневого объекта разбор завершён и поток можно прервать.
+ * Текст до корневого объекта (пояснения, ```json, блок &lt;think&gt; у reasoning-моделей)
+ * пропускается.
+ */
+class StreamingJsonParser {
+    private static final String THINK_OPEN = "<think>";
+    private static final String THINK_CLOSE = "</think>";
+
+    private final ObjectMapper objectMapper;
+    private final Consumer<JsonNode> onVulnerability;
+
+    // Текст корневого объекта с его открывающей скобки
+    private final StringBuilder json = new StringBuilder();
+    private final StringBuilder preamble = new StringBuilder();
+    private boolean thinking;
+    private boolean started;
+    private boolean complete;
+
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+    // Строка на глубине 1 (кандидат в ключ) и последний ключ корневого объекта
+    private StringBuilder rootString;
+    private String lastString;
+    private String rootKey;
+
+    private int vulnerabilitiesDepth = -1;
+    private int elementStart = -1;
+    private int emitted;
+
+    StreamingJsonParser(ObjectMapper objectMapper, Consumer<JsonNode> onVulnerability) {
+        this.objectMapper = objectMapper;
+        this.onVulnerability = onVulnerability;
+    }
+
+    void feed(CharSequence text) {
+        for (int i = 0; i < text.length() && !complete; i++) {
+            char c = text.charAt(i);
+            if (!started) {
+                skipPreamble(c);
+            } else {
+                json.append(c);
+                consume(c);
+            }
+        }
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    int getEmitted() {
+        return emitted;
+    }
+
+    // Корневой объект целиком; до завершения — null
+    String getJson() {
+        return complete ? json.toString() : null;
+    }
+
+    private void skipPreamble(char c) {
+        preamble.append(c);
+        if (endsWith(preamble, THINK_OPEN)) {
+            thinking = true;
+        } else if (endsWith(preamble, THINK_CLOSE)) {
+            thinking = false;
+        }
+        if (preamble.length() > 64) {
+            preamble.delete(0, preamble.length() - THINK_CLOSE.length());
+        }
+        if (c == '{' && !thinking) {
+            started = true;
+            json.append(c);
+            depth = 1;
+        }
+    }
+
+    private void consume(char c) {
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                inString = false;
+                if (rootString != null) {
+                    lastString = rootString.toString();
+                    rootString = null;
+                }
+                return;
+            }
+            if (rootString != null) {
+                rootString.append(c);
+            }
+            return;
+        }
+
+        switch (c) {
+            case '"':
+                inString = true;
+                rootString = depth == 1 ? new StringBuilder() : null;
+                break;
+            case ':':
+                if (depth == 1) {
+                    rootKey = lastString;
+                }
+                break;
+            case '[':
+                if (depth == 1 && "vulnerabilities".equals(rootKey)) {
+                    vulnerabilitiesDepth = depth + 1;
+                }
+                depth++;
+                break;
+            case '{':
+                if (depth == vulnerabilitiesDepth) {
+                    elementStart = json.length() - 1;
+                }
+                depth++;
+                break;
+            case '}':
+            case ']':
+                depth--;
+                if (c == '}' && depth == vulnerabilitiesDepth && elementStart >= 0) {
+                    emit(json.substring(elementStart));
+                    elementStart = -1;
+                } else if (c == ']' && depth == 1 && vulnerabilitiesDepth == 2) {
+                    vulnerabilitiesDepth = -1;
+                }
+                if (depth == 0) {
+                    complete = true;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void emit(String element) {
+        try {
+            onVulnerability.accept(objectMapper.readTree(element));
+            emitted++;
+        } catch (Exception e) {
+            // Элемент, который не разобрался, останется для разбора полного ответа
+        }
+    }
+
+    private static boolean endsWith(StringBuilder text, String suffix) {
+        int offset = text.length() - suffix.length();
+        return offset >= 0 && text.indexOf(suffix, offset) == offset;
+    }
+}
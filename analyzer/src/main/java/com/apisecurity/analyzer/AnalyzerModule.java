@@ -7,14 +7,25 @@ import com.apisecurity.analyzer.discovery.*;
 import com.apisecurity.analyzer.context.*;
 import com.apisecurity.analyzer.executor.*;
 import com.apisecurity.analyzer.graph.*;
+import com.apisecurity.analyzer.rules.RuleEngine;
+import com.apisecurity.analyzer.rules.RuleMatches;
+import com.apisecurity.shared.Configuration;
 import com.apisecurity.shared.ContainerApi;
+import com.apisecurity.shared.ModuleResult;
+import com.apisecurity.shared.http.Cassette;
+import com.apisecurity.shared.http.ResponseCache;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AnalyzerModule {
 
@@ -48,10 +59,14 @@ public class AnalyzerModule {
             return;
         }
 
-        saveSpecificationToFile(spec);
+        // Ленивое представление при сериализации развернулось бы целиком;
+        // полная спецификация и так лежит в reports/full-specification.json
+        if (!container.getConfiguration().isLazyReferenceResolution()) {
+            saveSpecificationToFile(spec);
+        }
 
         SpecAnalyzer specAnalyzer = new SpecAnalyzer(spec);
-        Map<String, EndpointSignature> signatures = specAnalyzer.buildEndpointSignatures(spec);
+        Map<String, EndpointSignature> signatures = specAnalyzer.buildEndpointSignatures(container.getEndpointIndex());
 
         System.out.println("Built " + signatures.size() + " endpoint signatures:");
         for (EndpointSignature sig : signatures.values()) {
@@ -74,46 +89,186 @@ public class AnalyzerModule {
         System.out.println("Using base URL: " + baseUrl);
 
         // ✅ УБРАНО дублирование: только одно объявление executor
-        ApiExecutor executor = new ApiExecutor(baseUrl);
+        RequestJournal journal = new RequestJournal(Paths.get("reports"), "dynamic-requests",
+            container.getConfiguration().isRequestJournalCompressed());
+        Configuration config = container.getConfiguration();
+        Cassette cassette = Cassette.open(Paths.get(config.getCassettePath()),
+            Cassette.parseMode(config.getCassetteMode()));
+        // Кассета и кэш несовместимы: объединение запросов зависит от времени, и записи кассеты разъехались бы
+        ResponseCache responseCache = config.isResponseCacheEnabled() && cassette == null ? ResponseCache.shared() : null;
+        ApiExecutor executor = new ApiExecutor(baseUrl, ApiExecutor.DEFAULT_MAX_IN_FLIGHT_PER_HOST,
+            ApiExecutor.DEFAULT_REQUEST_TIMEOUT, journal, cassette, responseCache);
+        executor.registerEndpoints(signatures.values());
 
-        if (executor.obtainToken(spec, ctx)) {
+        if (executor.obtainToken(container.getEndpointIndex(), ctx)) {
+            container.setAnalyzerAccessToken(executor.getAccessToken());
             System.out.println("Token ready for dynamic analysis.");
         } else {
             System.out.println("Token acquisition failed — dynamic checks may be limited.");
         }
 
+        if (executor.getAccessToken() != null && config.getCrawlMaxValuesPerParameter() > 0) {
+            DependencyCrawler crawler = new DependencyCrawler(executor, graph, signatures,
+                config.getCrawlMaxValuesPerParameter(), config.getCrawlParameterLimits());
+            for (String param : crawler.crawl(ctx).keySet()) {
+                container.getDiscoveredParameterValues().put(param, ctx.getCandidates(param));
+            }
+        }
+
         System.out.println("ExecutionContext initialized with: " + ctx.getKeys());
 
+        int threads = Math.max(1, Math.min(container.getConfiguration().getAnalyzerThreads(), checks.size()));
+        ExecutorService checkPool = Executors.newFixedThreadPool(threads, daemonThreads("analyzer-check"));
+        ExecutorService endpointPool = Executors.newFixedThreadPool(threads, daemonThreads("analyzer-endpoint"));
+
         DynamicContext dynamicContext = null;
         if (executor.getAccessToken() != null) {
-            dynamicContext = new DynamicContext(executor, ctx);
+            dynamicContext = new DynamicContext(executor, ctx, endpointPool);
             System.out.println("Dynamic analysis enabled.");
         } else {
             System.out.println("Dynamic analysis disabled: token not available.");
         }
 
-        if (spec.has("paths")) {
-            for (SecurityCheck check : checks) {
+        try {
+            if (spec.has("paths")) {
+                evaluateStaticRules(container);
+                runChecks(spec, container, dynamicContext, checkPool, threads);
+            } else {
+                System.out.println("Spec has no 'paths' — skipping security checks.");
+            }
+        } finally {
+            checkPool.shutdownNow();
+            endpointPool.shutdownNow();
+        }
+
+        long endTime = System.currentTimeMillis();
+        System.out.println("Security analysis completed in " + (endTime - startTime) + "ms");
+        
+        if (responseCache != null) {
+            reportResponseCache(responseCache, container);
+        }
+
+        executor.saveRequestLog();
+        executor.shutdown();
+    }
+
+    // Проверки независимы: каждая пишет в свою копию контейнера, копии сливаются
+    // в порядке объявления проверок, чтобы отчёт не зависел от порядка завершения
+    private void runChecks(JsonNode spec, ContainerApi container, DynamicContext dynamicContext,
+                           ExecutorService checkPool, int threads) {
+        System.out.println("Running " + checks.size() + " checks on " + threads + " threads...");
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        boolean cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+
+        List<ContainerApi> forks = new ArrayList<>();
+        List<Future<long[]>> timings = new ArrayList<>();
+        for (SecurityCheck check : checks) {
+            ContainerApi fork = container.fork();
+            forks.add(fork);
+            DynamicContext checkContext = dynamicContext != null ? dynamicContext.forCheck() : null;
+            timings.add(checkPool.submit(() -> {
                 System.out.println("Running " + check.getName() + " check...");
+                long cpuStart = cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : 0;
+                long wallStart = System.nanoTime();
                 try {
-                    check.run(spec, container, dynamicContext);
+                    check.run(spec, fork, checkContext);
                 } catch (Exception e) {
                     System.err.println("Error running " + check.getName() + ": " + e.getMessage());
                     e.printStackTrace();
                 }
+                long wallMs = (System.nanoTime() - wallStart) / 1_000_000;
+                // CPU проверки — её поток плюс тесты эндпоинтов, которые она отправила в пул
+                long cpuMs = cpuTimeSupported
+                    ? (threadBean.getCurrentThreadCpuTime() - cpuStart
+                        + (checkContext != null ? checkContext.getPoolCpuNanos() : 0)) / 1_000_000
+                    : -1;
+                return new long[] { wallMs, cpuMs };
+            }));
+        }
+
+        StringBuilder summary = new StringBuilder("Check timings (wall/cpu ms):");
+        // После прерывания сливаются только завершившиеся проверки: их результаты не теряются
+        boolean interrupted = false;
+        for (int i = 0; i < checks.size(); i++) {
+            SecurityCheck check = checks.get(i);
+            ContainerApi fork = forks.get(i);
+            Future<long[]> timingFuture = timings.get(i);
+            if (interrupted && !timingFuture.isDone()) {
+                System.err.println("Skipping unfinished " + check.getName() + " check");
+                continue;
             }
-        } else {
-            System.out.println("Spec has no 'paths' — skipping security checks.");
+            long[] timing;
+            try {
+                timing = timingFuture.get();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                System.err.println("Interrupted while waiting for " + check.getName() + " — merging finished checks only");
+                continue;
+            } catch (ExecutionException e) {
+                System.err.println("Error running " + check.getName() + ": " + e.getCause().getMessage());
+                timing = new long[] { 0, -1 };
+            }
+
+            for (ModuleResult result : fork.getAnalyzerResults().values()) {
+                result.setExecutionTime(timing[0]);
+            }
+            container.mergeAnalyzerResults(fork);
+
+            ModuleResult timingResult = new ModuleResult("COMPLETED");
+            timingResult.setExecutionTime(timing[0]);
+            timingResult.addDetail("wall_time_ms", timing[0]);
+            timingResult.addDetail("cpu_time_ms", timing[1]);
+            container.addAnalyzerResult(check.getName() + "_timing", timingResult);
+
+            summary.append("\n  - ").append(check.getName()).append(": ")
+                .append(timing[0]).append("/").append(timing[1] >= 0 ? timing[1] : "n/a");
         }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println(summary);
+    }
 
-        long endTime = System.currentTimeMillis();
-        System.out.println("Security analysis completed in " + (endTime - startTime) + "ms");
-        
-        if (executor != null) {
-            executor.saveRequestLog();
+    // Статические правила вычисляются одним проходом до запуска проверок;
+    // проверки берут готовый результат из кэша движка
+    private void evaluateStaticRules(ContainerApi container) {
+        try {
+            RuleMatches matches = RuleEngine.forConfiguration(container.getConfiguration())
+                .matches(container.getEndpointIndex());
+            System.out.println("Static rules: " + matches);
+            ModuleResult rulesResult = new ModuleResult("COMPLETED");
+            rulesResult.addDetail("rules", matches.getRuleCount());
+            rulesResult.addDetail("operations", matches.getOperationCount());
+            rulesResult.addDetail("matches", matches.getMatchCount());
+            rulesResult.addDetail("predicate_evaluations", matches.getLeafEvaluations());
+            rulesResult.addDetail("shared_predicate_hits", matches.getMemoHits());
+            rulesResult.addDetail("elapsed_ms", matches.getElapsedNanos() / 1_000_000.0);
+            rulesResult.addDetail("rule_evaluations_per_second", Math.round(matches.getThroughput()));
+            container.addAnalyzerResult("static_rules", rulesResult);
+        } catch (RuntimeException e) {
+            System.err.println("Static rules failed: " + e.getMessage());
         }
     }
 
+    // Счётчики общего кэша: тестирование, идущее параллельно, тоже в них попадает
+    private void reportResponseCache(ResponseCache responseCache, ContainerApi container) {
+        Map<String, Object> stats = responseCache.getStats();
+        System.out.println("Response cache: " + stats.get("hits") + " hits, " + stats.get("coalesced")
+            + " coalesced, " + stats.get("misses") + " misses, " + stats.get("evictions") + " evictions");
+        ModuleResult cacheResult = new ModuleResult("COMPLETED");
+        stats.forEach(cacheResult::addDetail);
+        container.addAnalyzerResult("http_cache", cacheResult);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
     private void saveSpecificationToFile(JsonNode spec) {
         try {
             File outputFile = new File("spec.json");
@@ -3,16 +3,41 @@ package com.apisecurity.analyzer.checks;
 
 import com.apisecurity.shared.*;
 import com.apisecurity.analyzer.context.DynamicContext;
-import com.apisecurity.analyzer.executor.ApiCallResult;
+import com.apisecurity.analyzer.context.ExecutionContext;
+import com.apisecurity.analyzer.executor.ProbeRace;
+import com.apisecurity.analyzer.executor.TokenManager;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import java.util.*;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class BOLACheck implements SecurityCheck {
-    private static final int MIN_DELAY_MS = 50;
-    private static final int MAX_DELAY_MS = 200;
+    // Сколько реальных ID из корпуса ExecutionContext пробовать на эндпоинт
+    private static final int MAX_CORPUS_PROBES = 5;
+
+    /**
+     * Исход динамического теста. CONFIRMED — объект известного владельца отдан
+     * другой личности; UNVERIFIED — 2xx на ID, владелец которого неизвестен
+     * (это может быть объект самой пробующей личности).
+     */
+    private static class DynamicOutcome {
+        static final DynamicOutcome NOT_CONFIRMED = new DynamicOutcome("NOT_CONFIRMED", null, null, null);
+        static final DynamicOutcome NOT_TESTED = new DynamicOutcome("NOT_TESTED", null, null, null);
+
+        final String status;
+        final String request;
+        final String owner;
+        final String prober;
+
+        DynamicOutcome(String status, String request, String owner, String prober) {
+            this.status = status;
+            this.request = request;
+            this.owner = owner;
+            this.prober = prober;
+        }
+    }
 
     @Override
     public String getName() {
@@ -23,8 +48,8 @@ public class BOLACheck implements SecurityCheck {
     public void run(JsonNode spec, ContainerApi container, DynamicContext dynamicContext) {
         System.out.println("Checking Broken Object Level Authorization (BOLA)...");
 
-        JsonNode paths = spec.get("paths");
-        if (paths == null || !paths.isObject()) {
+        EndpointIndex endpointIndex = container.getEndpointIndex();
+        if (endpointIndex.isEmpty()) {
             System.out.println("No paths defined in spec.");
             return;
         }
@@ -32,67 +57,84 @@ public class BOLACheck implements SecurityCheck {
         boolean foundAnyBOLA = false;
         String baseUrl = getBaseUrl(spec, container.getConfiguration());
 
-        Iterator<Map.Entry<String, JsonNode>> pathIt = paths.fields();
-        while (pathIt.hasNext()) {
-            Map.Entry<String, JsonNode> pathEntry = pathIt.next();
-            String path = pathEntry.getKey();
-            JsonNode pathItem = pathEntry.getValue();
-
-            Iterator<String> methodIt = pathItem.fieldNames();
-            while (methodIt.hasNext()) {
-                String method = methodIt.next().toLowerCase();
-                if (!"get".equals(method) && !"post".equals(method) && !"put".equals(method) &&
-                    !"patch".equals(method) && !"delete".equals(method)) {
-                    continue;
-                }
+        List<EndpointOperation> targets = new ArrayList<>();
+        for (EndpointOperation endpoint : endpointIndex.getOperations()) {
+            String method = endpoint.getMethod();
+            String path = endpoint.getPath();
+            if (!"get".equals(method) && !"post".equals(method) && !"put".equals(method) &&
+                !"patch".equals(method) && !"delete".equals(method)) {
+                continue;
+            }
+
+            // Пропускаем служебные эндпоинты
+            if (isAuthenticationEndpoint(path) || path.contains("/health") || path.contains("/jwks")) {
+                continue;
+            }
+            targets.add(endpoint);
+        }
 
-                // Пропускаем служебные эндпоинты
-                if (isAuthenticationEndpoint(path) || path.contains("/health") || path.contains("/jwks")) {
-                    continue;
+        // Динамические тесты эндпоинтов запускаем сразу все, результаты забираем по порядку
+        Map<EndpointOperation, Future<DynamicOutcome>> dynamicTests = new HashMap<>();
+        if (dynamicContext != null && dynamicContext.isAvailable()) {
+            for (EndpointOperation endpoint : targets) {
+                if (hasObjectIdParameter(endpoint.getPath(), OperationFeatures.of(endpointIndex, endpoint))) {
+                    String readMethod = readMethodFor(endpoint, endpointIndex);
+                    dynamicTests.put(endpoint, dynamicContext.submit(() -> readMethod == null
+                        ? DynamicOutcome.NOT_TESTED
+                        : performDynamicBOLATest(readMethod, endpoint.getPath(), baseUrl, dynamicContext)));
                 }
+            }
+        }
 
-                JsonNode operation = pathItem.get(method);
-                String endpointName = method.toUpperCase() + " " + path;
-
-                EndpointAnalysis analysis = findOrCreateAnalysis(container, endpointName);
-                ModuleResult result = new ModuleResult("COMPLETED");
-
-                if (hasObjectIdParameter(path, operation)) {
-                    result.addFinding("Potential BOLA: endpoint accesses object by ID — dynamic check required");
-                    result.addDetail("risk_level", "HIGH");
-                    result.addDetail("owasp_category", "API1:2023 - Broken Object Level Authorization");
-                    result.addDetail("cwe_id", "639");
-                    result.addDetail("cwe_name", "Authorization Bypass Through User-Controlled Key");
-                    result.addDetail("remediation", "Validate that the authenticated user owns the requested resource. Do not trust client-provided IDs.");
-
-                    if (dynamicContext != null && dynamicContext.isAvailable()) {
-                        String poc = performDynamicBOLATest(method, path, baseUrl, dynamicContext);
-                        if (poc != null) {
-                            result.addDetail("dynamic_status", "CONFIRMED");
-                            result.addDetail("proof_of_concept", poc);
-                        } else {
-                            result.addDetail("dynamic_status", "NOT_CONFIRMED");
-                        }
-                    } else {
-                        result.addDetail("dynamic_status", "NOT_TESTED");
+        for (EndpointOperation endpoint : targets) {
+            String method = endpoint.getMethod();
+            String path = endpoint.getPath();
+            String endpointName = endpoint.getKey();
+
+            EndpointAnalysis analysis = container.findOrCreateAnalysis(endpointName);
+            ModuleResult result = new ModuleResult("COMPLETED");
+
+            if (hasObjectIdParameter(path, OperationFeatures.of(endpointIndex, endpoint))) {
+                result.addFinding("Potential BOLA: endpoint accesses object by ID — dynamic check required");
+                result.addDetail("risk_level", "HIGH");
+                result.addDetail("owasp_category", "API1:2023 - Broken Object Level Authorization");
+                result.addDetail("cwe_id", "639");
+                result.addDetail("cwe_name", "Authorization Bypass Through User-Controlled Key");
+                result.addDetail("remediation", "Validate that the authenticated user owns the requested resource. Do not trust client-provided IDs.");
+
+                if (dynamicContext != null && dynamicContext.isAvailable()) {
+                    DynamicOutcome outcome = dynamicContext.await(dynamicTests.get(endpoint));
+                    if (outcome == null) {
+                        outcome = DynamicOutcome.NOT_CONFIRMED;
                     }
-
-                    foundAnyBOLA = true;
+                    result.addDetail("dynamic_status", outcome.status);
+                    if ("CONFIRMED".equals(outcome.status)) {
+                        result.addDetail("proof_of_concept", outcome.request);
+                        result.addDetail("object_owner", outcome.owner);
+                        result.addDetail("probe_identity", outcome.prober);
+                    } else if ("UNVERIFIED".equals(outcome.status)) {
+                        // Доступ есть, но чужой ли это объект — неизвестно: PoC не выдаём
+                        result.addDetail("unverified_request", outcome.request);
+                    }
+                } else {
+                    result.addDetail("dynamic_status", "NOT_TESTED");
                 }
 
-                container.addAnalyzerResult(endpointName + "_bola", result);
+                foundAnyBOLA = true;
+            }
 
-                if (analysis != null) {
-                    String status = "No BOLA issues";
-                    if (result.getFindings().isEmpty()) {
-                        status = "No BOLA issues";
-                    } else if ("CONFIRMED".equals(result.getDetails().get("dynamic_status"))) {
-                        status = "BOLA CONFIRMED";
-                    } else {
-                        status = "BOLA suspected (dynamic test: " + result.getDetails().get("dynamic_status") + ")";
-                    }
-                    analysis.setAnalyzer(status);
+            container.addAnalyzerResult(endpointName + "_bola", result);
+
+            if (analysis != null) {
+                String status = "No BOLA issues";
+                if (result.getFindings().isEmpty()) {
+                    status = "No BOLA issues";
+                } else if ("CONFIRMED".equals(result.getDetails().get("dynamic_status"))) {
+                    status = "BOLA CONFIRMED";
+                } else {
+                    status = "BOLA suspected (dynamic test: " + result.getDetails().get("dynamic_status") + ")";
                 }
+                analysis.setAnalyzer(status);
             }
         }
 
@@ -105,70 +147,138 @@ public class BOLACheck implements SecurityCheck {
         System.out.println("BOLA check completed.");
     }
 
-    private String performDynamicBOLATest(String method, String path, String baseUrl, DynamicContext ctx) {
+    /**
+     * Метод пробы: пробы идут по реальным ID от имени реальных личностей, поэтому
+     * только чтение. Изменяющая операция проверяется через GET того же ресурса;
+     * если его нет — динамический тест не выполняется (null).
+     */
+    private String readMethodFor(EndpointOperation endpoint, EndpointIndex endpointIndex) {
+        String method = endpoint.getMethod();
+        if ("get".equals(method) || "head".equals(method)) {
+            return method;
+        }
+        return endpointIndex.get("get", endpoint.getPath()) != null ? "get" : null;
+    }
+
+    // method — метод чтения (GET/HEAD), см. readMethodFor
+    private DynamicOutcome performDynamicBOLATest(String method, String path, String baseUrl, DynamicContext ctx) {
         String paramName = extractIdParameterName(path);
-        if (paramName == null) return null;
+        if (paramName == null) return DynamicOutcome.NOT_CONFIRMED;
 
-        if (!ctx.getExecutionContext().has(paramName)) {
+        ExecutionContext execCtx = ctx.getExecutionContext();
+        if (!execCtx.has(paramName)) {
             System.out.println("No " + paramName + " in params.json — skipping dynamic test for " + path);
-            return null;
+            return DynamicOutcome.NOT_CONFIRMED;
         }
 
-        String originalId = ctx.getExecutionContext().get(paramName).toString();
+        String originalId = execCtx.get(paramName).toString();
+        TokenManager tokenManager = ctx.getExecutor().getTokenManager();
 
         Set<String> triedIds = new HashSet<>();
         triedIds.add(originalId);
 
-        // 🔁 Максимум 5 уникальных попыток
+        // Реальные ID из ответов API (обход графа зависимостей): объект с известным владельцем
+        // пробуем от имени другой личности — только такой 2xx доказывает BOLA
+        ProbeRace<String> crossTenant = new ProbeRace<>();
+        Map<String, String> owners = new HashMap<>();
+        Map<String, TokenManager.Identity> probers = new HashMap<>();
+        List<String> unownedIds = new ArrayList<>();
+        int corpusProbes = 0;
+        for (String candidate : execCtx.getCandidates(paramName)) {
+            if (corpusProbes >= MAX_CORPUS_PROBES) break;
+            if (!triedIds.add(candidate)) continue;
+            String owner = execCtx.getCandidateOwner(paramName, candidate);
+            if (owner == null) {
+                unownedIds.add(candidate);
+                continue;
+            }
+            TokenManager.Identity prober = tokenManager != null ? tokenManager.other(owner) : null;
+            String testPath = path.replace("{" + paramName + "}", candidate);
+            if (prober == null || testPath.contains("{")) continue; // нет чужой личности — проба ничего не докажет
+
+            owners.put(testPath, owner);
+            probers.put(testPath, prober);
+            crossTenant.add(testPath, () -> ctx.getExecutor().callEndpointAsync(method.toUpperCase(), testPath, execCtx, prober));
+            corpusProbes++;
+        }
+
+        // Первый 2xx или 429 решает исход, остальные пробы отменяются
+        ProbeRace.Winner<String> winner;
+        try {
+            winner = crossTenant.awaitFirst(res -> res.isSuccess() || res.statusCode == 429);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return DynamicOutcome.NOT_CONFIRMED;
+        }
+        if (winner != null) {
+            if (isRateLimited(winner)) return DynamicOutcome.NOT_CONFIRMED;
+            // ✅ Объект владельца отдан чужой личности → BOLA подтверждена
+            return new DynamicOutcome("CONFIRMED", buildProbeRequest(method, baseUrl, winner, execCtx),
+                owners.get(winner.key), probers.get(winner.key).clientId);
+        }
+
+        // Владелец неизвестен: ID без владельца и мутации основного значения. 2xx здесь
+        // не отличить от доступа к собственному объекту, поэтому исход — UNVERIFIED
+        List<String> probeIds = new ArrayList<>(unownedIds);
+        // 🔁 Максимум 5 уникальных мутаций; темп запросов задаёт ограничитель частоты ApiExecutor
         for (int attempt = 0; attempt < 5; attempt++) {
             String mutatedId = mutateId(originalId, triedIds);
             if (mutatedId == null || mutatedId.isEmpty() || triedIds.contains(mutatedId)) {
                 continue;
             }
             triedIds.add(mutatedId);
+            probeIds.add(mutatedId);
+        }
 
-            String testPath = path.replace("{" + paramName + "}", mutatedId);
+        ProbeRace<String> race = new ProbeRace<>();
+        for (String probeId : probeIds) {
+            String testPath = path.replace("{" + paramName + "}", probeId);
             if (testPath.contains("{")) continue; // безопасность: пропускаем неполные пути
 
+            race.add(testPath, () -> ctx.getExecutor().callEndpointAsync(method.toUpperCase(), testPath, execCtx));
+        }
 
-            ApiCallResult res = ctx.getExecutor().callEndpoint(method.toUpperCase(), testPath, ctx.getExecutionContext());
-
-            // ⚠️ Если 429 — прерываем тест для этого эндпоинта (сервер нас блокирует)
-            if (res.statusCode == 429) {
-                System.out.println("429 Too Many Requests — stopping BOLA test for this endpoint to avoid ban");
-                break;
-            }
+        try {
+            winner = race.awaitFirst(res -> res.isSuccess() || res.statusCode == 429);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return DynamicOutcome.NOT_CONFIRMED;
+        }
+        if (winner == null || isRateLimited(winner)) {
+            return DynamicOutcome.NOT_CONFIRMED;
+        }
+        return new DynamicOutcome("UNVERIFIED", buildProbeRequest(method, baseUrl, winner, execCtx), null, null);
+    }
 
-            // ✅ Успех: 2xx → BOLA подтверждена
-            if (res.isSuccess()) {
-                String url = baseUrl + testPath;
-                Map<String, String> headers = new HashMap<>();
-                if (ctx.getExecutor().getAccessToken() != null) {
-                    headers.put("Authorization", "Bearer " + ctx.getExecutor().getAccessToken());
-                }
-                for (String key : ctx.getExecutionContext().getKeys()) {
-                    if (key.startsWith("x-")) {
-                        headers.put(key, ctx.getExecutionContext().get(key).toString());
-                    }
-                }
-                return buildCurlCommand(method, url, headers);
-            }
+    private boolean isRateLimited(ProbeRace.Winner<String> winner) {
+        // ⚠️ 429 после повторов ApiExecutor — прерываем тест для этого эндпоинта (сервер нас блокирует)
+        if (winner.result.statusCode == 429) {
+            System.out.println("429 Too Many Requests — stopping BOLA test for this endpoint to avoid ban");
+            return true;
+        }
+        return false;
+    }
 
-            // ⏱️ Задержка между запросами
-            try {
-                int delay = MIN_DELAY_MS + new Random().nextInt(MAX_DELAY_MS - MIN_DELAY_MS + 1);
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
+    private String buildProbeRequest(String method, String baseUrl, ProbeRace.Winner<String> winner, ExecutionContext execCtx) {
+        String url = baseUrl + winner.key;
+        Map<String, String> headers = new HashMap<>();
+        // Токен той личности, с которой проба прошла
+        String token = winner.result.getBearerToken();
+        if (token != null) {
+            headers.put("Authorization", "Bearer " + token);
+        }
+        for (String key : execCtx.getKeys()) {
+            if (key.startsWith("x-")) {
+                headers.put(key, execCtx.get(key).toString());
             }
         }
-        return null;
+        return buildCurlCommand(method, url, headers);
     }
 
     private String mutateId(String id, Set<String> triedIds) {
         if (id == null || id.isEmpty()) return null;
-        Random rand = new Random();
+        // Мутации детерминированы: повторный запуск шлёт те же запросы, и запись кассеты воспроизводится
+        Random rand = new Random(id.hashCode() * 31L + triedIds.size());
 
         // 🔢 Сначала пробуем числовую мутацию
         Pattern numPattern = Pattern.compile("\\d+");
@@ -251,33 +361,12 @@ public class BOLACheck implements SecurityCheck {
         return p.contains("/auth") || p.contains("/token") || p.contains("/login") || p.contains("/oauth");
     }
 
-    private EndpointAnalysis findOrCreateAnalysis(ContainerApi container, String endpointName) {
-        for (EndpointAnalysis ea : container.getAnalysisTable()) {
-            if (endpointName.equals(ea.getEndpointName())) {
-                return ea;
-            }
-        }
-        EndpointAnalysis ea = new EndpointAnalysis();
-        ea.setEndpointName(endpointName);
-        container.addEndpointAnalysis(ea);
-        return ea;
-    }
-
-    private boolean hasObjectIdParameter(String path, JsonNode operation) {
+    private boolean hasObjectIdParameter(String path, OperationFeatures features) {
         if (path.matches(".*/\\{[^}]*[iI][dD][^}]*\\}.*")) {
             return true;
         }
-        JsonNode params = operation.get("parameters");
-        if (params != null && params.isArray()) {
-            for (JsonNode p : params) {
-                String name = p.has("name") ? p.get("name").asText() : "";
-                String in = p.has("in") ? p.get("in").asText() : "";
-                if (("query".equals(in) || "header".equals(in)) && isIdLikeParameter(name)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return features.getParameterNames("query").stream().anyMatch(this::isIdLikeParameter) ||
+               features.getParameterNames("header").stream().anyMatch(this::isIdLikeParameter);
     }
 
     private boolean isIdLikeParameter(String name) {
@@ -0,0 +1,130 @@
+// com.apisecurity.analyzer.checks/Concept.java
+package com.apisecurity.analyzer.checks;
+
+import java.util.List;
+
+/**
+ * Словарь эвристических проверок: понятие и ключевые слова, по вхождению любого
+ * из которых (подстрока, без учёта регистра) понятие считается найденным в тексте.
+ * Все понятия компилируются в один автомат {@link KeywordMatcher}.
+ */
+public enum Concept {
+    // === BrokenAuthentication ===
+    AUTH_PATH("login", "auth", "signin", "sign-in", "token", "oauth",
+        "password", "forgot", "reset", "recovery", "credential"),
+    SENSITIVE_PATH("account", "balance", "transaction", "payment", "profile",
+        "user", "settings", "email", "phone", "2fa", "mfa", "admin"),
+    SENSITIVE_OPERATION("email", "phone", "password", "2fa", "mfa", "security", "delete", "settings", "profile"),
+    BRUTE_FORCE_PROTECTION("rate", "limit", "lock", "captcha", "throttle", "retry", "max attempt", "brute", "block"),
+    JWT_MENTION("jwt", "bearer"),
+    EXPIRATION_MENTION("exp", "expiration"),
+    PASSWORD_CONFIRMATION("currentpassword", "oldpassword", "confirmpassword", "password confirmation"),
+
+    // === BrokenFunctionLevelAuthorization ===
+    // Ключевые слова, указывающие на административные/чувствительные функции
+    ADMIN_FUNCTION("admin", "manage", "delete", "remove", "drop", "export", "import",
+        "create", "update", "modify", "disable", "enable", "activate", "deactivate",
+        "grant", "revoke", "permission", "role", "group", "user", "invite",
+        "all", "bulk", "batch", "internal", "system", "setting", "config",
+        "override", "force", "impersonate", "audit", "log", "debug"),
+    ADMIN("admin"),
+    MANAGEMENT("export", "import", "role", "permission"),
+    USER("user"),
+    ALL("all"),
+    AUTHORIZATION_MENTION("auth", "authorization", "role", "admin", "permission", "allowed",
+        "restricted", "privileged"),
+
+    // === BrokenObjectPropertyLevelAuthorization ===
+    // Поля, которые обычно НЕ должны возвращаться обычным пользователям (Excessive Data Exposure)
+    SENSITIVE_RESPONSE_FIELD("password", "pass", "secret", "token", "api_key", "apikey", "jwt",
+        "email", "phone", "ssn", "tax_id", "dob", "date_of_birth",
+        "address", "zip", "postal_code", "full_name", "first_name", "last_name",
+        "internal_id", "user_id", "owner_id", "created_by", "updated_by",
+        "ip_address", "device_id", "session_id", "balance", "account_number",
+        "credit_card", "cvv", "expiry", "pan", "iban", "bic",
+        "is_admin", "is_verified", "role", "permissions", "scopes",
+        "recent_location", "location", "coordinates", "geolocation",
+        "blocked", "suspended", "approved", "status", "internal_status",
+        "total_stay_price", "price", "cost", "revenue"),
+    // Поля, которые обычно НЕ должны приниматься от клиента (Mass Assignment)
+    SENSITIVE_REQUEST_FIELD("password", "pass", "secret", "token", "api_key", "apikey",
+        "email", "phone", "role", "permissions", "scopes", "is_admin",
+        "user_id", "owner_id", "created_by", "updated_by",
+        "balance", "account_number", "credit_card", "cvv",
+        "blocked", "suspended", "approved", "status", "internal_status",
+        "total_stay_price", "price", "cost", "revenue",
+        "id", "uuid", "internal_id"),
+
+    // === ServerSideRequestForgery ===
+    // Контекстные ключевые слова в пути или описании
+    SSRF_CONTEXT("webhook", "fetch", "import", "download", "preview", "proxy", "avatar",
+        "picture", "image", "file", "callback", "redirect", "integration"),
+    // Слова, указывающие на защиту от SSRF
+    SSRF_PROTECTION("whitelist", "allowlist", "blocklist", "denylist",
+        "validate", "sanitize", "filter", "restrict", "internal", "localhost",
+        "metadata", "169.254.169.254", "cloud", "ssrf", "firewall"),
+
+    // === UnrestrictedBusinessFlowAccess ===
+    // Чувствительные бизнес-операции (требуют защиты от автоматизации)
+    BUSINESS_ACTION(
+        // Покупки и оплата
+        "purchase", "buy", "order", "checkout", "payment", "pay", "transaction",
+        // Бронирование
+        "reserve", "reservation", "booking", "appointment", "slot", "ticket", "seat", "flight",
+        // Рефералы и кредиты
+        "invite", "referral", "referral_code", "credit", "reward", "bonus", "gift",
+        // Контент (риск спама)
+        "comment", "post", "review", "rating", "submit", "create",
+        // Регистрация (массовая)
+        "register", "signup", "sign-up", "join", "enroll", "account",
+        // Управление запасами/ценами
+        "stock", "inventory", "auction", "bid", "offer", "deal", "promo", "discount", "price"),
+    // Слова, исключающие эндпоинт из проверки (не бизнес-поток)
+    NON_BUSINESS_CONTEXT("auth", "login", "logout", "token", "oauth", "health", "jwks", "well-known",
+        "validate", "verify", "confirm", "status", "info", "metadata", "version"),
+    // Защитные механизмы (если упомянуты — уязвимость не срабатывает)
+    AUTOMATION_PROTECTION("captcha", "bot", "automation", "fingerprint", "human", "headless",
+        "rate limit", "throttle", "queue", "waiting", "delay", "slow",
+        "tor", "proxy", "suspicious", "fraud", "abuse", "monitoring",
+        "behavior", "pattern", "verification", "challenge", "recaptcha"),
+
+    // === UnrestrictedResourceConsumption ===
+    // Ключевые слова, указывающие на рискованные операции
+    RISKY_OPERATION("upload", "download", "file", "sms", "email", "otp", "reset_password",
+        "forgot", "recovery", "batch", "graphql", "export", "import", "report",
+        "thumbnail", "resize", "process", "validate", "third_party"),
+    HIGH_RISK("login", "auth", "token", "forgot", "reset", "password",
+        "sms", "email", "otp", "graphql", "batch", "upload"),
+    RATE_LIMIT_MENTION("rate", "limit", "throttle", "quota", "max request", "per minute",
+        "per second", "rps", "rpm"),
+    FILE_UPLOAD("upload", "file", "multipart"),
+    FILE_SIZE_LIMIT("max size", "file size", "limit", "mb", "kb", "byte"),
+    THIRD_PARTY_CHANNEL("sms", "email", "phone", "otp", "third party", "external"),
+    SPENDING_LIMIT("spending limit", "cost limit", "budget", "alert", "billing", "charge"),
+    GRAPHQL("graphql"),
+    BATCH("batch"),
+    LIMIT("limit"),
+    LIMIT_OR_MAX("limit", "max"),
+    LIMIT_CAP("max limit", "restricted", "capped"),
+    LIMIT_VALUE("100", "500", "1000"),
+
+    // === UnsafeConsumptionOfApis ===
+    // Ключевые слова, указывающие на интеграцию с внешними API
+    INTEGRATION("third-party", "thirdparty", "external", "integration", "webhook",
+        "import", "fetch", "pull", "sync", "provider", "service", "api",
+        "forward", "proxy", "callback", "enrich", "partner"),
+    // Ключевые слова, указывающие на защиту
+    INTEGRATION_PROTECTION("validate", "sanitize", "filter", "escape", "encoding",
+        "https", "tls", "ssl", "redirect", "follow", "timeout",
+        "allowlist", "whitelist", "limit", "size", "max");
+
+    private final List<String> keywords;
+
+    Concept(String... keywords) {
+        this.keywords = List.of(keywords);
+    }
+
+    public List<String> getKeywords() {
+        return keywords;
+    }
+}
@@ -0,0 +1,121 @@
+// com.apisecurity.analyzer.checks/KeywordMatcher.java
+package com.apisecurity.analyzer.checks;
+
+import java.util.*;
+
+/**
+ * Автомат Ахо–Корасик над ключевыми словами всех {@link Concept}.
+ *
+ * Строится один раз: бор ключевых слов достраивается до полной таблицы переходов,
+ * поэтому поиск — один проход по тексту без возвратов, по одному обращению к таблице
+ * на символ. Каждое состояние хранит маску понятий, чьи слова заканчиваются в нём
+ * (с учётом суффиксных ссылок). Регистр приводится на лету, копия текста не создаётся.
+ */
+public final class KeywordMatcher {
+    private static final KeywordMatcher SHARED = new KeywordMatcher();
+
+    // Символ → номер в алфавите ключевых слов; 0 — символа нет ни в одном слове
+    private final char[] alphabetIndex = new char[Character.MAX_VALUE + 1];
+    private final int alphabetSize;
+    // transitions[state * alphabetSize + symbol] → следующее состояние
+    private final int[] transitions;
+    private final long[] outputs;
+
+    public static KeywordMatcher shared() {
+        return SHARED;
+    }
+
+    private KeywordMatcher() {
+        Concept[] concepts = Concept.values();
+        if (concepts.length > Long.SIZE) {
+            throw new IllegalStateException("Too many concepts for a 64-bit mask: " + concepts.length);
+        }
+
+        int symbols = 1;
+        for (Concept concept : concepts) {
+            for (String keyword : concept.getKeywords()) {
+                for (char c : keyword.toCharArray()) {
+                    if (alphabetIndex[c] == 0) {
+                        alphabetIndex[c] = (char) symbols++;
+                    }
+                }
+            }
+        }
+        this.alphabetSize = symbols;
+
+        // 1. Бор
+        List<int[]> trie = new ArrayList<>();
+        List<Long> output = new ArrayList<>();
+        trie.add(new int[alphabetSize]);
+        output.add(0L);
+        for (Concept concept : concepts) {
+            for (String keyword : concept.getKeywords()) {
+                int state = 0;
+                for (char c : keyword.toCharArray()) {
+                    int symbol = alphabetIndex[c];
+                    if (trie.get(state)[symbol] == 0) {
+                        trie.get(state)[symbol] = trie.size();
+                        trie.add(new int[alphabetSize]);
+                        output.add(0L);
+                    }
+                    state = trie.get(state)[symbol];
+                }
+                output.set(state, output.get(state) | (1L << concept.ordinal()));
+            }
+        }
+
+        // 2. Суффиксные ссылки обходом в ширину; отсутствующие переходы берутся у ссылки
+        int states = trie.size();
+        this.transitions = new int[states * alphabetSize];
+        this.outputs = new long[states];
+        int[] fail = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 1; symbol < alphabetSize; symbol++) {
+            int next = trie.get(0)[symbol];
+            transitions[symbol] = next;
+            if (next != 0) {
+                queue.add(next);
+            }
+        }
+        outputs[0] = output.get(0);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = output.get(state) | outputs[fail[state]];
+            for (int symbol = 1; symbol < alphabetSize; symbol++) {
+                int next = trie.get(state)[symbol];
+                int fallback = transitions[fail[state] * alphabetSize + symbol];
+                if (next != 0) {
+                    fail[next] = fallback;
+                    transitions[state * alphabetSize + symbol] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * alphabetSize + symbol] = fallback;
+                }
+            }
+        }
+    }
+
+    /**
+     * Маска понятий (бит — {@link Concept#ordinal()}), ключевые слова которых встречаются в тексте.
+     */
+    public long scan(CharSequence text) {
+        if (text == null) {
+            return 0L;
+        }
+        long found = 0L;
+        int state = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            state = transitions[state * alphabetSize + alphabetIndex[Character.toLowerCase(text.charAt(i))]];
+            found |= outputs[state];
+        }
+        return found;
+    }
+
+    public static boolean has(long mask, Concept concept) {
+        return (mask & (1L << concept.ordinal())) != 0;
+    }
+
+    public boolean matches(CharSequence text, Concept concept) {
+        return has(scan(text), concept);
+    }
+}
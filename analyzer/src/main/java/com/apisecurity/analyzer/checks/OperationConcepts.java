@@ -0,0 +1,67 @@
+// com.apisecurity.analyzer.checks/OperationConcepts.java
+package com.apisecurity.analyzer.checks;
+
+import com.apisecurity.shared.EndpointIndex;
+import com.apisecurity.shared.EndpointOperation;
+
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Понятия, найденные в тексте одной операции: путь, summary + description и operationId
+ * сканируются {@link KeywordMatcher} по одному разу, проверки читают готовые маски.
+ * Маски всех операций индекса считаются за один проход при первом обращении
+ * и общие для всех проверок, включая параллельные.
+ */
+public final class OperationConcepts {
+    private static final Map<EndpointIndex, OperationConcepts[]> BY_INDEX = new WeakHashMap<>();
+
+    private final long path;
+    private final long text;
+    private final long operationId;
+
+    private OperationConcepts(EndpointOperation endpoint) {
+        KeywordMatcher matcher = KeywordMatcher.shared();
+        this.path = matcher.scan(endpoint.getPath());
+        this.text = matcher.scan(endpoint.getTextLower());
+        this.operationId = matcher.scan(endpoint.getOperationId());
+    }
+
+    public static OperationConcepts of(EndpointIndex endpointIndex, EndpointOperation endpoint) {
+        OperationConcepts[] all;
+        synchronized (BY_INDEX) {
+            all = BY_INDEX.computeIfAbsent(endpointIndex, OperationConcepts::scanAll);
+        }
+        return all[endpoint.getIndex()];
+    }
+
+    private static OperationConcepts[] scanAll(EndpointIndex endpointIndex) {
+        List<EndpointOperation> operations = endpointIndex.getOperations();
+        OperationConcepts[] all = new OperationConcepts[operations.size()];
+        for (EndpointOperation operation : operations) {
+            all[operation.getIndex()] = new OperationConcepts(operation);
+        }
+        return all;
+    }
+
+    // Только путь
+    public boolean inPath(Concept concept) {
+        return KeywordMatcher.has(path, concept);
+    }
+
+    // summary + description (EndpointOperation.getTextLower)
+    public boolean inText(Concept concept) {
+        return KeywordMatcher.has(text, concept);
+    }
+
+    // summary + description + operationId (EndpointOperation.getSearchTextLower)
+    public boolean inSearchText(Concept concept) {
+        return KeywordMatcher.has(text | operationId, concept);
+    }
+
+    // Путь и весь текст операции
+    public boolean anywhere(Concept concept) {
+        return KeywordMatcher.has(path | text | operationId, concept);
+    }
+}
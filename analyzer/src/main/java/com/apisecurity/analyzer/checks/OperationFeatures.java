@@ -0,0 +1,192 @@
+// com.apisecurity.analyzer.checks/OperationFeatures.java
+package com.apisecurity.analyzer.checks;
+
+import com.apisecurity.shared.EndpointIndex;
+import com.apisecurity.shared.EndpointOperation;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.*;
+
+/**
+ * Структурные признаки одной операции, которые раньше каждая проверка заново
+ * извлекала из JsonNode: имена параметров по расположению, поля тел запроса
+ * и успешных ответов, media types, примеры ошибок и действующие security-требования.
+ * Как и {@link OperationConcepts}, считаются один раз на EndpointIndex
+ * и общие для всех проверок; все коллекции неизменяемы.
+ */
+public final class OperationFeatures {
+    private static final Map<EndpointIndex, OperationFeatures[]> BY_INDEX = new WeakHashMap<>();
+    private static final List<String> COMBINERS = List.of("allOf", "anyOf", "oneOf");
+
+    // "query" → имена параметров в нижнем регистре
+    private final Map<String, Set<String>> parametersByLocation;
+    private final Set<String> parameterNames;
+    private final Set<String> requestFields;
+    private final Set<String> responseFields;
+    private final Set<String> requestMediaTypes;
+    private final Set<String> responseMediaTypes;
+    // Текстовые примеры 4xx/5xx ответов в нижнем регистре
+    private final List<String> errorExamples;
+    private final Set<String> securitySchemes;
+    private final boolean securityRequired;
+
+    private OperationFeatures(EndpointOperation endpoint, JsonNode globalSecurity) {
+        Map<String, Set<String>> byLocation = new LinkedHashMap<>();
+        Set<String> allNames = new LinkedHashSet<>();
+        JsonNode parameters = endpoint.getParameters();
+        if (parameters != null && parameters.isArray()) {
+            for (JsonNode param : parameters) {
+                String name = param.has("name") ? param.get("name").asText().toLowerCase() : "";
+                String in = param.has("in") ? param.get("in").asText() : "";
+                byLocation.computeIfAbsent(in, k -> new LinkedHashSet<>()).add(name);
+                allNames.add(name);
+            }
+        }
+        byLocation.replaceAll((in, names) -> Collections.unmodifiableSet(names));
+        this.parametersByLocation = Collections.unmodifiableMap(byLocation);
+        this.parameterNames = Collections.unmodifiableSet(allNames);
+
+        // Тело запроса
+        Set<String> requestFieldSet = new LinkedHashSet<>();
+        Set<String> requestTypes = new LinkedHashSet<>();
+        JsonNode requestBody = endpoint.getRequestBody();
+        if (requestBody != null) {
+            collectContent(requestBody.get("content"), requestTypes, requestFieldSet);
+        }
+        this.requestFields = Collections.unmodifiableSet(requestFieldSet);
+        this.requestMediaTypes = Collections.unmodifiableSet(requestTypes);
+
+        // Ответы: поля — только из 2xx, примеры — из 4xx/5xx, media types — из всех
+        Set<String> responseFieldSet = new LinkedHashSet<>();
+        Set<String> responseTypes = new LinkedHashSet<>();
+        List<String> examples = new ArrayList<>();
+        JsonNode responses = endpoint.getResponses();
+        if (responses != null) {
+            Iterator<Map.Entry<String, JsonNode>> it = responses.fields();
+            while (it.hasNext()) {
+                Map.Entry<String, JsonNode> response = it.next();
+                String code = response.getKey();
+                JsonNode content = response.getValue().get("content");
+                collectContent(content, responseTypes, code.startsWith("2") ? responseFieldSet : null);
+                if ((code.startsWith("4") || code.startsWith("5")) && content != null) {
+                    for (JsonNode media : content) {
+                        JsonNode example = media.get("example");
+                        if (example != null && example.isTextual()) {
+                            examples.add(example.asText().toLowerCase());
+                        }
+                    }
+                }
+            }
+        }
+        this.responseFields = Collections.unmodifiableSet(responseFieldSet);
+        this.responseMediaTypes = Collections.unmodifiableSet(responseTypes);
+        this.errorExamples = Collections.unmodifiableList(examples);
+
+        // Собственный непустой security операции, иначе глобальный
+        JsonNode security = endpoint.getSecurity();
+        if (security == null || !security.isArray() || security.isEmpty()) {
+            security = globalSecurity;
+        }
+        Set<String> schemes = new LinkedHashSet<>();
+        boolean required = security != null && security.isArray() && !security.isEmpty();
+        if (required) {
+            for (JsonNode secReq : security) {
+                if (secReq.isObject()) {
+                    secReq.fieldNames().forEachRemaining(schemes::add);
+                }
+            }
+        }
+        this.securitySchemes = Collections.unmodifiableSet(schemes);
+        this.securityRequired = required;
+    }
+
+    public static OperationFeatures of(EndpointIndex endpointIndex, EndpointOperation endpoint) {
+        OperationFeatures[] all;
+        synchronized (BY_INDEX) {
+            all = BY_INDEX.computeIfAbsent(endpointIndex, OperationFeatures::extractAll);
+        }
+        return all[endpoint.getIndex()];
+    }
+
+    private static OperationFeatures[] extractAll(EndpointIndex endpointIndex) {
+        List<EndpointOperation> operations = endpointIndex.getOperations();
+        OperationFeatures[] all = new OperationFeatures[operations.size()];
+        for (EndpointOperation operation : operations) {
+            all[operation.getIndex()] = new OperationFeatures(operation, endpointIndex.getGlobalSecurity());
+        }
+        return all;
+    }
+
+    // Media types из content; поля собираются только из JSON-схем и только если передан fields
+    private static void collectContent(JsonNode content, Set<String> mediaTypes, Set<String> fields) {
+        if (content == null || !content.isObject()) {
+            return;
+        }
+        Iterator<Map.Entry<String, JsonNode>> it = content.fields();
+        while (it.hasNext()) {
+            Map.Entry<String, JsonNode> media = it.next();
+            mediaTypes.add(media.getKey());
+            if (fields != null && media.getKey().contains("json")) {
+                JsonNode schema = media.getValue().get("schema");
+                if (schema != null) {
+                    collectFields(schema, fields);
+                }
+            }
+        }
+    }
+
+    private static void collectFields(JsonNode schema, Set<String> fields) {
+        if (schema.has("properties")) {
+            schema.get("properties").fieldNames().forEachRemaining(fields::add);
+        }
+        // Поддержка allOf, anyOf, oneOf
+        for (String combiner : COMBINERS) {
+            if (schema.has(combiner)) {
+                for (JsonNode sub : schema.get(combiner)) {
+                    collectFields(sub, fields);
+                }
+            }
+        }
+    }
+
+    // Имена параметров (в нижнем регистре) в указанном месте: "query", "path", "header", "cookie"
+    public Set<String> getParameterNames(String in) {
+        return parametersByLocation.getOrDefault(in, Collections.emptySet());
+    }
+
+    // Имена всех параметров в нижнем регистре
+    public Set<String> getParameterNames() {
+        return parameterNames;
+    }
+
+    // Поля JSON-тела запроса верхнего уровня (с учётом allOf/anyOf/oneOf)
+    public Set<String> getRequestFields() {
+        return requestFields;
+    }
+
+    // Поля JSON-тел успешных (2xx) ответов верхнего уровня
+    public Set<String> getResponseFields() {
+        return responseFields;
+    }
+
+    public Set<String> getRequestMediaTypes() {
+        return requestMediaTypes;
+    }
+
+    public Set<String> getResponseMediaTypes() {
+        return responseMediaTypes;
+    }
+
+    public List<String> getErrorExamples() {
+        return errorExamples;
+    }
+
+    // Схемы из действующего security-требования
+    public Set<String> getSecuritySchemes() {
+        return securitySchemes;
+    }
+
+    public boolean hasSecurityRequirement() {
+        return securityRequired;
+    }
+}
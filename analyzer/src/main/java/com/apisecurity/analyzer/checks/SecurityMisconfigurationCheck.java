@@ -6,6 +6,9 @@ import com.fasterxml.jackson.databind.JsonNode;
 
 import java.util.*;
 import com.apisecurity.analyzer.context.DynamicContext;
+import com.apisecurity.analyzer.rules.Rule;
+import com.apisecurity.analyzer.rules.RuleEngine;
+import com.apisecurity.analyzer.rules.RuleMatches;
 public class SecurityMisconfigurationCheck implements SecurityCheck {
 
     @Override
@@ -34,39 +37,21 @@ public class SecurityMisconfigurationCheck implements SecurityCheck {
         }
 
         // === 3. Анализ эндпоинтов на утечки в ошибках ===
-        if (spec.has("paths")) {
-            Iterator<Map.Entry<String, JsonNode>> pathIt = spec.get("paths").fields();
-            while (pathIt.hasNext()) {
-                Map.Entry<String, JsonNode> pathEntry = pathIt.next();
-                String path = pathEntry.getKey();
-                JsonNode pathItem = pathEntry.getValue();
-
-                Iterator<String> methodIt = pathItem.fieldNames();
-                while (methodIt.hasNext()) {
-                    String method = methodIt.next().toLowerCase();
-                    if (!"get".equals(method) && !"post".equals(method) && !"put".equals(method) &&
-                        !"patch".equals(method) && !"delete".equals(method)) {
-                        continue;
-                    }
-
-                    JsonNode operation = pathItem.get(method);
-                    String endpointName = method.toUpperCase() + " " + path;
-
-                    // Проверка: есть ли примеры ошибок со stack trace?
-                    if (hasSensitiveErrorExamples(operation)) {
-                        EndpointAnalysis analysis = findOrCreateAnalysis(container, endpointName);
-                        ModuleResult result = new ModuleResult("COMPLETED");
-                        result.addFinding("Error responses may expose stack traces or internal details");
-                        result.addDetail("risk_level", "MEDIUM");
-                        result.addDetail("cwe", "CWE-209");
-                        result.addDetail("owasp_category", "API8:2023 - Security Misconfiguration");
-                        container.addAnalyzerResult(endpointName + "_misconfig", result);
-                        foundIssues = true;
-
-                        if (analysis != null) {
-                            analysis.setAnalyzer("Security misconfiguration suspected");
-                        }
-                    }
+        EndpointIndex endpointIndex = container.getEndpointIndex();
+        RuleMatches rules = RuleEngine.forConfiguration(container.getConfiguration()).matches(endpointIndex);
+        for (EndpointOperation endpoint : endpointIndex.getOperations()) {
+            // Проверка: есть ли примеры ошибок со stack trace? (примеры 4xx/5xx — правила в rules/static-rules.json)
+            List<Rule> matched = rules.getMatched(getName(), endpoint);
+            if (!matched.isEmpty()) {
+                String endpointName = endpoint.getKey();
+                EndpointAnalysis analysis = container.findOrCreateAnalysis(endpointName);
+                ModuleResult result = new ModuleResult("COMPLETED");
+                matched.forEach(rule -> rule.applyTo(result));
+                container.addAnalyzerResult(endpointName + "_misconfig", result);
+                foundIssues = true;
+
+                if (analysis != null) {
+                    analysis.setAnalyzer("Security misconfiguration suspected");
                 }
             }
         }
@@ -139,56 +124,4 @@ public class SecurityMisconfigurationCheck implements SecurityCheck {
         String text = spec.toString().toLowerCase();
         return text.contains("cors") || text.contains("cross-origin") || text.contains("access-control");
     }
-
-    // === ПРОВЕРКА УТЕЧЕК В ОШИБКАХ ===
-    private boolean hasSensitiveErrorExamples(JsonNode operation) {
-        JsonNode responses = operation.get("responses");
-        if (responses == null) return false;
-
-        // Проверяем 4xx и 5xx ответы
-        for (Iterator<String> it = responses.fieldNames(); it.hasNext(); ) {
-            String code = it.next();
-            if (code.startsWith("4") || code.startsWith("5")) {
-                JsonNode response = responses.get(code);
-                if (hasSensitiveExample(response)) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    private boolean hasSensitiveExample(JsonNode response) {
-        if (response.has("content")) {
-            JsonNode content = response.get("content");
-            for (Iterator<String> mediaIt = content.fieldNames(); mediaIt.hasNext(); ) {
-                String mediaType = mediaIt.next();
-                JsonNode example = content.get(mediaType).get("example");
-                if (example != null && example.isTextual()) {
-                    String exampleText = example.asText().toLowerCase();
-                    if (exampleText.contains("stack") || exampleText.contains("exception") ||
-                        exampleText.contains("trace") || exampleText.contains("error") ||
-                        exampleText.contains("file:") || exampleText.contains("line ") ||
-                        exampleText.contains("at com.") || exampleText.contains("java.lang")) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
-    }
-
-    // --- ВСПОМОГАТЕЛЬНЫЙ МЕТОД ---
-
-    private EndpointAnalysis findOrCreateAnalysis(ContainerApi container, String endpointName) {
-        for (EndpointAnalysis ea : container.getAnalysisTable()) {
-            if (endpointName.equals(ea.getEndpointName())) {
-                return ea;
-            }
-        }
-        EndpointAnalysis newAnalysis = new EndpointAnalysis();
-        newAnalysis.setEndpointName(endpointName);
-        container.addEndpointAnalysis(newAnalysis);
-        return newAnalysis;
-    }
 }
\ No newline at end of file
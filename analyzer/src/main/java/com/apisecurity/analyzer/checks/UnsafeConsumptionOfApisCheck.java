@@ -8,20 +8,6 @@ import java.util.*;
 import com.apisecurity.analyzer.context.DynamicContext;
 public class UnsafeConsumptionOfApisCheck implements SecurityCheck {
 
-    // Ключевые слова, указывающие на интеграцию с внешними API
-    private static final Set<String> INTEGRATION_KEYWORDS = Set.of(
-        "third-party", "thirdparty", "external", "integration", "webhook",
-        "import", "fetch", "pull", "sync", "provider", "service", "api",
-        "forward", "proxy", "callback", "enrich", "partner"
-    );
-
-    // Ключевые слова, указывающие на защиту
-    private static final Set<String> PROTECTION_KEYWORDS = Set.of(
-        "validate", "sanitize", "filter", "escape", "encoding",
-        "https", "tls", "ssl", "redirect", "follow", "timeout",
-        "allowlist", "whitelist", "limit", "size", "max"
-    );
-
     @Override
     public String getName() {
         return "UnsafeConsumptionOfApis";
@@ -31,11 +17,11 @@ public class UnsafeConsumptionOfApisCheck implements SecurityCheck {
     public void run(JsonNode spec, ContainerApi container, DynamicContext dynamicContext) {
         System.out.println("Checking Unsafe Consumption of APIs (API10:2023)...");
 
-        String fullSpecText = spec.toString().toLowerCase();
+        // Вся спецификация сканируется один раз для обоих словарей
+        long specConcepts = KeywordMatcher.shared().scan(spec.toString());
 
         // Проверяем, есть ли вообще упоминания интеграций
-        boolean hasIntegrationMention = INTEGRATION_KEYWORDS.stream()
-            .anyMatch(fullSpecText::contains);
+        boolean hasIntegrationMention = KeywordMatcher.has(specConcepts, Concept.INTEGRATION);
 
         if (!hasIntegrationMention) {
             // Нет признаков интеграций — пропускаем
@@ -49,8 +35,7 @@ public class UnsafeConsumptionOfApisCheck implements SecurityCheck {
         boolean foundIssue = false;
 
         // === 1. Проверка: нет ли описания защиты? ===
-        boolean hasProtection = PROTECTION_KEYWORDS.stream()
-            .anyMatch(fullSpecText::contains);
+        boolean hasProtection = KeywordMatcher.has(specConcepts, Concept.INTEGRATION_PROTECTION);
 
         if (!hasProtection) {
             addGlobalFinding(
@@ -89,7 +74,8 @@ public class UnsafeConsumptionOfApisCheck implements SecurityCheck {
         result.addDetail("risk_level", riskLevel);
         result.addDetail("cwe", cwe);
         result.addDetail("owasp_category", "API10:2023 - Unsafe Consumption of APIs");
-        String key = "unsafe_consumption_issue_" + System.currentTimeMillis();
+        // Уникальный и воспроизводимый ключ (метка времени совпадает у быстрых находок)
+        String key = "unsafe_consumption_issue_" + container.getAnalyzerResults().size();
         container.addAnalyzerResult(key, result);
     }
 
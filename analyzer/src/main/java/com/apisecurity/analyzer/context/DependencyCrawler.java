@@ -0,0 +1,150 @@
+// com.apisecurity.analyzer.context/DependencyCrawler.java
+package com.apisecurity.analyzer.context;
+
+import com.apisecurity.analyzer.discovery.EndpointSignature;
+import com.apisecurity.analyzer.executor.ApiCallResult;
+import com.apisecurity.analyzer.executor.ApiExecutor;
+import com.apisecurity.analyzer.executor.TokenManager;
+import com.apisecurity.analyzer.graph.DependencyGraph;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Обходит граф зависимостей и собирает реальные значения параметров из ответов API.
+ *
+ * Уровни графа обходятся в топологическом порядке: GET-эндпоинты одного уровня вызываются
+ * параллельно, из их JSON-ответов извлекаются поля, которые другие эндпоинты принимают
+ * на вход, и попадают в корпус ExecutionContext. Эндпоинт с path-параметрами вызывается
+ * для комбинаций уже собранных значений, поэтому следующий уровень видит ID предыдущего.
+ * Ответы разбираются в порядке эндпоинтов, так что корпус не зависит от порядка ответов.
+ * Все запросы обхода идут от основной личности, и каждое собранное значение помечается
+ * её client_id: это объекты, к которым у неё есть законный доступ. BOLA пробует их
+ * от имени другой личности.
+ */
+public class DependencyCrawler {
+    public static final int DEFAULT_MAX_VALUES_PER_PARAMETER = 20;
+    private static final int MAX_CALLS_PER_ENDPOINT = 10;
+    private static final int MAX_DEPTH = 8;
+
+    private final ApiExecutor executor;
+    private final DependencyGraph graph;
+    private final Map<String, EndpointSignature> signatures;
+    private final int defaultLimit;
+    private final Map<String, Integer> parameterLimits;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public DependencyCrawler(ApiExecutor executor, DependencyGraph graph, Map<String, EndpointSignature> signatures,
+                             int defaultLimit, Map<String, Integer> parameterLimits) {
+        this.executor = executor;
+        this.graph = graph;
+        this.signatures = signatures;
+        this.defaultLimit = defaultLimit;
+        this.parameterLimits = parameterLimits != null ? parameterLimits : Collections.emptyMap();
+    }
+
+    /**
+     * Дополняет контекст собранными значениями; возвращает число значений по параметрам.
+     */
+    public Map<String, Integer> crawl(ExecutionContext ctx) {
+        Set<String> wanted = graph.getLinkedParameters();
+        if (wanted.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        TokenManager manager = executor.getTokenManager();
+        TokenManager.Identity harvester = manager != null ? manager.primary() : null;
+        String owner = harvester != null ? harvester.clientId : null;
+
+        int calls = 0;
+        for (List<String> level : graph.getTopologicalLevels()) {
+            List<CompletableFuture<ApiCallResult>> pending = new ArrayList<>();
+            for (String endpointKey : level) {
+                EndpointSignature sig = signatures.get(endpointKey);
+                if (sig == null || !"get".equalsIgnoreCase(sig.method) || Collections.disjoint(sig.outputs, wanted)) {
+                    continue;
+                }
+                for (Map<String, String> pathValues : pathCombinations(sig, ctx)) {
+                    pending.add(executor.callEndpointAsync("GET", sig.path, ctx.withValues(pathValues), harvester));
+                }
+            }
+
+            for (CompletableFuture<ApiCallResult> call : pending) {
+                ApiCallResult result = call.join();
+                calls++;
+                if (result.isSuccess() && result.responseBody != null) {
+                    harvest(result.responseBody, wanted, ctx, owner);
+                }
+            }
+        }
+
+        Map<String, Integer> counts = ctx.getCandidateCounts();
+        System.out.println("Dependency crawl: " + calls + " calls, harvested " + counts);
+        return counts;
+    }
+
+    // Комбинации значений path-параметров; эндпоинт без значения для какого-то параметра пропускается
+    private List<Map<String, String>> pathCombinations(EndpointSignature sig, ExecutionContext ctx) {
+        List<Map<String, String>> combinations = new ArrayList<>();
+        combinations.add(new LinkedHashMap<>());
+        for (Map.Entry<String, String> input : sig.inputs.entrySet()) {
+            if (!"path".equals(input.getValue())) {
+                continue;
+            }
+            List<String> values = ctx.getCandidates(input.getKey());
+            if (values.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<Map<String, String>> expanded = new ArrayList<>();
+            for (Map<String, String> combination : combinations) {
+                for (String value : values) {
+                    if (expanded.size() >= MAX_CALLS_PER_ENDPOINT) {
+                        break;
+                    }
+                    Map<String, String> next = new LinkedHashMap<>(combination);
+                    next.put(input.getKey(), value);
+                    expanded.add(next);
+                }
+            }
+            combinations = expanded;
+        }
+        return combinations;
+    }
+
+    private void harvest(String body, Set<String> wanted, ExecutionContext ctx, String owner) {
+        JsonNode json;
+        try {
+            json = objectMapper.readTree(body);
+        } catch (Exception e) {
+            return;
+        }
+        collect(json, wanted, ctx, owner, 0);
+    }
+
+    private void collect(JsonNode node, Set<String> wanted, ExecutionContext ctx, String owner, int depth) {
+        if (node == null || depth > MAX_DEPTH) {
+            return;
+        }
+        if (node.isArray()) {
+            for (JsonNode item : node) {
+                collect(item, wanted, ctx, owner, depth + 1);
+            }
+        } else if (node.isObject()) {
+            node.fields().forEachRemaining(field -> {
+                JsonNode value = field.getValue();
+                if (wanted.contains(field.getKey()) && value.isValueNode() && !value.isNull()
+                    && !value.asText().isEmpty()) {
+                    ctx.addCandidate(field.getKey(), value.asText(), limitFor(field.getKey()), owner);
+                } else {
+                    collect(value, wanted, ctx, owner, depth + 1);
+                }
+            });
+        }
+    }
+
+    private int limitFor(String parameter) {
+        return parameterLimits.getOrDefault(parameter, defaultLimit);
+    }
+}
@@ -3,6 +3,11 @@ package com.apisecurity.analyzer.context;
 
 import com.apisecurity.analyzer.executor.ApiExecutor;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Контекст для динамического анализа.
  * Передаётся в SecurityCheck, если доступен.
@@ -10,10 +15,19 @@ import com.apisecurity.analyzer.executor.ApiExecutor;
 public class DynamicContext {
     private final ApiExecutor executor;
     private final ExecutionContext executionContext;
+    // Пул для динамических тестов отдельных эндпоинтов; null — тесты выполняются в потоке проверки
+    private final ExecutorService endpointPool;
+    // Процессорное время тестов, выполненных в пуле (для контекста одной проверки)
+    private final AtomicLong poolCpuNanos = new AtomicLong();
 
     public DynamicContext(ApiExecutor executor, ExecutionContext executionContext) {
+        this(executor, executionContext, null);
+    }
+
+    public DynamicContext(ApiExecutor executor, ExecutionContext executionContext, ExecutorService endpointPool) {
         this.executor = executor;
         this.executionContext = executionContext;
+        this.endpointPool = endpointPool;
     }
 
     public ApiExecutor getExecutor() {
@@ -24,7 +38,65 @@ public class DynamicContext {
         return executionContext;
     }
 
+    /**
+     * Контекст для одной проверки: тот же исполнитель и пул, но собственный счётчик
+     * процессорного времени тестов, отправленных в пул.
+     */
+    public DynamicContext forCheck() {
+        return new DynamicContext(executor, executionContext, endpointPool);
+    }
+
+    // Процессорное время тестов в пуле, нс; время в потоке проверки сюда не входит
+    public long getPoolCpuNanos() {
+        return poolCpuNanos.get();
+    }
+
     public boolean isAvailable() {
         return executor != null && executionContext != null;
     }
-}
\ No newline at end of file
+
+    /**
+     * Запускает динамический тест эндпоинта. Тесты разных эндпоинтов независимы,
+     * поэтому проверка запускает их все сразу, а результаты забирает через {@link #await}
+     * в порядке эндпоинтов — так отчёт не зависит от порядка завершения.
+     */
+    public <T> Future<T> submit(Callable<T> test) {
+        if (endpointPool != null) {
+            return endpointPool.submit(() -> {
+                ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+                boolean cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+                long cpuStart = cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : 0;
+                try {
+                    return test.call();
+                } finally {
+                    if (cpuTimeSupported) {
+                        poolCpuNanos.addAndGet(threadBean.getCurrentThreadCpuTime() - cpuStart);
+                    }
+                }
+            });
+        }
+        CompletableFuture<T> inline = new CompletableFuture<>();
+        try {
+            inline.complete(test.call());
+        } catch (Exception e) {
+            inline.completeExceptionally(e);
+        }
+        return inline;
+    }
+
+    // Результат теста или null, если тест не запускался или упал
+    public <T> T await(Future<T> test) {
+        if (test == null) {
+            return null;
+        }
+        try {
+            return test.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            System.err.println("Dynamic test failed: " + e.getCause().getMessage());
+            return null;
+        }
+    }
+}
@@ -5,9 +5,15 @@ import java.util.*;
 
 /**
  * Контекст выполнения: хранит все известные параметры для динамического анализа.
+ * Помимо основного значения параметра хранит корпус кандидатов — значения,
+ * собранные из ответов API (см. {@link DependencyCrawler}), — и для каждого из них
+ * client_id личности, в чьём ответе значение встретилось (владельца объекта).
  */
 public class ExecutionContext {
     private final Map<String, Object> values = new LinkedHashMap<>();
+    private final Map<String, Set<String>> candidates = new LinkedHashMap<>();
+    // параметр → значение → client_id, получивший значение в своём ответе
+    private final Map<String, Map<String, String>> candidateOwners = new LinkedHashMap<>();
 
     public void provide(String key, Object value) {
         if (value != null) {
@@ -31,6 +37,68 @@ public class ExecutionContext {
         return this.values.keySet();
     }
 
+    /**
+     * Добавляет значение в корпус параметра, если его там ещё нет и корпус не заполнен.
+     * Первое значение становится основным, если основного ещё нет.
+     */
+    public boolean addCandidate(String key, String value, int limit) {
+        return addCandidate(key, value, limit, null);
+    }
+
+    /**
+     * То же, с владельцем: owner — client_id личности, чей ответ содержал значение
+     * (null — неизвестен). Владельцем остаётся первая такая личность.
+     */
+    public boolean addCandidate(String key, String value, int limit, String owner) {
+        if (owner != null) {
+            this.candidateOwners.computeIfAbsent(key, k -> new LinkedHashMap<>()).putIfAbsent(value, owner);
+        }
+        Set<String> corpus = this.candidates.computeIfAbsent(key, k -> new LinkedHashSet<>());
+        if (corpus.size() >= limit || (this.values.containsKey(key) && value.equals(this.values.get(key).toString()))) {
+            return false;
+        }
+        if (!corpus.add(value)) {
+            return false;
+        }
+        if (!this.values.containsKey(key)) {
+            this.values.put(key, value);
+        }
+        return true;
+    }
+
+    // Основное значение и корпус без повторов, основное — первым
+    public List<String> getCandidates(String key) {
+        Set<String> result = new LinkedHashSet<>();
+        if (this.values.containsKey(key)) {
+            result.add(this.values.get(key).toString());
+        }
+        result.addAll(this.candidates.getOrDefault(key, Collections.emptySet()));
+        return new ArrayList<>(result);
+    }
+
+    // client_id владельца значения или null, если значение не собрано из ответа известной личности
+    public String getCandidateOwner(String key, String value) {
+        return this.candidateOwners.getOrDefault(key, Collections.emptyMap()).get(value);
+    }
+
+    public Map<String, Integer> getCandidateCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        this.candidates.forEach((key, corpus) -> {
+            if (!corpus.isEmpty()) {
+                counts.put(key, corpus.size());
+            }
+        });
+        return counts;
+    }
+
+    // Копия основных значений с заменёнными параметрами — для одного запроса с конкретными ID
+    public ExecutionContext withValues(Map<String, ?> overrides) {
+        ExecutionContext copy = new ExecutionContext();
+        copy.values.putAll(this.values);
+        copy.values.putAll(overrides);
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "ExecutionContext" + values;
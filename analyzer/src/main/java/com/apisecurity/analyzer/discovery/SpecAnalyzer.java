@@ -1,9 +1,12 @@
 // com.apisecurity.analyzer.discovery/SpecAnalyzer.java
 package com.apisecurity.analyzer.discovery;
 
+import com.apisecurity.shared.EndpointIndex;
+import com.apisecurity.shared.EndpointOperation;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Анализирует OpenAPI-спецификацию и строит сигнатуры эндпоинтов:
@@ -12,7 +15,11 @@ import java.util.*;
  */
 public class SpecAnalyzer {
 
+    private static final String[] COMPOSITION_KEYWORDS = { "allOf", "oneOf", "anyOf" };
+
     private final JsonNode componentsSchemas;
+    // Схема (по identity) → её поля; общий для всех потоков построения сигнатур
+    private final Map<JsonNode, Set<String>> fieldsBySchema = Collections.synchronizedMap(new IdentityHashMap<>());
 
     /**
      * Конструктор принимает ПОЛНУЮ OpenAPI-спецификацию для разрешения $ref.
@@ -28,51 +35,38 @@ public class SpecAnalyzer {
      * Строит карту сигнатур всех эндпоинтов.
      * Ключ: "GET /accounts"
      */
-    public Map<String, EndpointSignature> buildEndpointSignatures(JsonNode spec) {
-        Map<String, EndpointSignature> signatures = new LinkedHashMap<>();
-
-        JsonNode paths = spec.get("paths");
-        if (paths == null || !paths.isObject()) {
-            return signatures;
-        }
-
-        Iterator<Map.Entry<String, JsonNode>> pathIt = paths.fields();
-        while (pathIt.hasNext()) {
-            Map.Entry<String, JsonNode> pathEntry = pathIt.next();
-            String path = pathEntry.getKey();
-            JsonNode pathItem = pathEntry.getValue();
-
-            if (!pathItem.isObject()) continue;
-
-            Iterator<String> methodIt = pathItem.fieldNames();
-            while (methodIt.hasNext()) {
-                String method = methodIt.next().toLowerCase();
-                if (!isHttpMethod(method)) continue;
-
-                JsonNode operation = pathItem.get(method);
-                if (!operation.isObject()) continue;
-
-                String opId = operation.has("operationId")
-                    ? operation.get("operationId").asText()
-                    : generateOperationId(method, path);
-
-                EndpointSignature sig = new EndpointSignature(path, method, opId);
+    public Map<String, EndpointSignature> buildEndpointSignatures(EndpointIndex endpointIndex) {
+        // TRACE в анализ зависимостей не входит: сигнатуры и узлы графа — только для остальных методов
+        List<EndpointOperation> operations = endpointIndex.getOperations().stream()
+            .filter(endpoint -> !"trace".equals(endpoint.getMethod()))
+            .collect(Collectors.toList());
 
-                extractInputs(operation, sig.inputs);
-                extractOutputs(operation, sig.outputs);
+        // Операции независимы: сигнатуры строятся параллельно, порядок карты — порядок индекса
+        List<EndpointSignature> built = operations.parallelStream()
+            .map(this::buildSignature)
+            .collect(Collectors.toList());
 
-                String key = method.toUpperCase() + " " + path;
-                signatures.put(key, sig);
-            }
+        Map<String, EndpointSignature> signatures = new LinkedHashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            signatures.put(operations.get(i).getKey(), built.get(i));
         }
-
         return signatures;
     }
 
-    private boolean isHttpMethod(String method) {
-        return "get".equals(method) || "post".equals(method) || "put".equals(method) ||
-               "patch".equals(method) || "delete".equals(method) || "head".equals(method) ||
-               "options".equals(method);
+    private EndpointSignature buildSignature(EndpointOperation endpoint) {
+        String method = endpoint.getMethod();
+        String path = endpoint.getPath();
+        JsonNode operation = endpoint.getOperation();
+
+        String opId = endpoint.getOperationId() != null
+            ? endpoint.getOperationId()
+            : generateOperationId(method, path);
+
+        EndpointSignature sig = new EndpointSignature(path, method, opId);
+
+        extractInputs(operation, sig.inputs);
+        extractOutputs(operation, sig.outputs);
+        return sig;
     }
 
     private String generateOperationId(String method, String path) {
@@ -124,49 +118,100 @@ public class SpecAnalyzer {
     // --- ИЗВЛЕЧЕНИЕ ПОЛЕЙ ИЗ content (например, application/json) ---
 
     private Set<String> extractFieldsFromContent(JsonNode content) {
-        Set<String> fields = new LinkedHashSet<>();
-        if (content == null || !content.isObject()) return fields;
+        if (content == null || !content.isObject()) return Collections.emptySet();
 
+        Set<String> fields = null;
         for (Iterator<String> mediaIt = content.fieldNames(); mediaIt.hasNext(); ) {
             String mediaType = mediaIt.next();
             if (!mediaType.contains("json")) continue;
 
             JsonNode schema = content.get(mediaType).get("schema");
             if (schema != null) {
-                extractFieldsFromSchema(schema, fields);
+                Set<String> schemaFields = fieldsOf(schema, new Walk());
+                if (fields == null) {
+                    // Чаще всего один JSON media type — отдаём общий экземпляр без копирования
+                    fields = schemaFields;
+                } else if (!fields.containsAll(schemaFields)) {
+                    Set<String> merged = new LinkedHashSet<>(fields);
+                    merged.addAll(schemaFields);
+                    fields = merged;
+                }
             }
         }
-        return fields;
+        return fields != null ? fields : Collections.emptySet();
     }
 
-    // --- РЕКУРСИВНОЕ ИЗВЛЕЧЕНИЕ ПОЛЕЙ С ПОДДЕРЖКОЙ $ref И allOf ---
+    // --- РЕКУРСИВНОЕ ИЗВЛЕЧЕНИЕ ПОЛЕЙ С ПОДДЕРЖКОЙ $ref, allOf, oneOf И anyOf ---
 
-    private void extractFieldsFromSchema(JsonNode schema, Set<String> fields) {
-        if (schema == null || schema.isNull()) return;
+    // Схемы, которые обходятся сейчас (по identity), и самый мелкий уровень обрезанного цикла
+    private static final class Walk {
+        final Map<JsonNode, Integer> depthOf = new IdentityHashMap<>();
+        int cutDepth = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Поля схемы. Результат для составных схем запоминается по самому узлу схемы —
+     * цель одного $ref всегда один и тот же узел — и переиспользуется всеми операциями.
+     * Повторный вход в схему, которая уже обходится, обрывает цикл; результат схемы
+     * внутри оборванного цикла не запоминается, пока не завершится его вершина.
+     */
+    private Set<String> fieldsOf(JsonNode schema, Walk walk) {
+        if (schema == null || schema.isNull()) return Collections.emptySet();
 
         // 1. Разрешение $ref
         if (schema.has("$ref")) {
             JsonNode resolved = resolveRef(schema);
-            if (resolved != null) {
-                extractFieldsFromSchema(resolved, fields);
-            }
-            return;
+            return resolved != null ? fieldsOf(resolved, walk) : Collections.emptySet();
+        }
+
+        Set<String> cached = fieldsBySchema.get(schema);
+        if (cached != null) {
+            return cached;
+        }
+        Integer activeDepth = walk.depthOf.get(schema);
+        if (activeDepth != null) {
+            walk.cutDepth = Math.min(walk.cutDepth, activeDepth);
+            return Collections.emptySet();
+        }
+
+        int depth = walk.depthOf.size();
+        walk.depthOf.put(schema, depth);
+        int outerCut = walk.cutDepth;
+        walk.cutDepth = Integer.MAX_VALUE;
+
+        Set<String> fields = new LinkedHashSet<>();
+        collectFields(schema, fields, walk);
+
+        walk.depthOf.remove(schema);
+        Set<String> result = Collections.unmodifiableSet(fields);
+        if (walk.cutDepth >= depth) {
+            fieldsBySchema.put(schema, result);
+            walk.cutDepth = outerCut;
+        } else {
+            walk.cutDepth = Math.min(outerCut, walk.cutDepth);
         }
+        return result;
+    }
 
-        // 2. Обработка allOf (часто используется в OpenAPI)
-        if (schema.has("allOf")) {
-            for (JsonNode item : schema.get("allOf")) {
-                extractFieldsFromSchema(item, fields);
+    private void collectFields(JsonNode schema, Set<String> fields, Walk walk) {
+        // 2. Композиции: allOf (часто используется в OpenAPI), oneOf и anyOf — объединение полей вариантов
+        boolean composed = false;
+        for (String keyword : COMPOSITION_KEYWORDS) {
+            JsonNode variants = schema.get(keyword);
+            if (variants != null && variants.isArray()) {
+                composed = true;
+                for (JsonNode item : variants) {
+                    fields.addAll(fieldsOf(item, walk));
+                }
             }
+        }
+        if (composed) {
             return;
         }
 
         // 3. Массив
         if ("array".equals(getType(schema))) {
-            JsonNode items = schema.get("items");
-            if (items != null) {
-                extractFieldsFromSchema(items, fields);
-            }
+            fields.addAll(fieldsOf(schema.get("items"), walk));
             return;
         }
 
@@ -174,20 +219,16 @@ public class SpecAnalyzer {
         if ("object".equals(getType(schema)) || schema.has("properties")) {
             JsonNode properties = schema.get("properties");
             if (properties != null && properties.isObject()) {
-                for (Iterator<String> propIt = properties.fieldNames(); propIt.hasNext(); ) {
-                    String propName = propIt.next();
-                    JsonNode propSchema = properties.get(propName);
-
-                    String propType = getType(propSchema);
-                    if (isScalarType(propType)) {
-                        fields.add(propName);
+                for (Iterator<Map.Entry<String, JsonNode>> propIt = properties.fields(); propIt.hasNext(); ) {
+                    Map.Entry<String, JsonNode> property = propIt.next();
+                    if (isScalarType(getType(property.getValue()))) {
+                        fields.add(property.getKey());
                     } else {
                         // Рекурсивно заходим в объекты и вложенные структуры
-                        extractFieldsFromSchema(propSchema, fields);
+                        fields.addAll(fieldsOf(property.getValue(), walk));
                     }
                 }
             }
-            return;
         }
 
         // 5. Другие типы (например, примитивы на верхнем уровне) — игнорируем
@@ -1,21 +1,40 @@
 // com.apisecurity.analyzer.executor/ApiCallResult.java
 package com.apisecurity.analyzer.executor;
 
+import java.util.Collections;
+import java.util.Map;
+
 public class ApiCallResult {
     public final int statusCode;
     public final String responseBody;
     public final Exception error;
+    // Заголовки, с которыми запрос ушёл на самом деле (в т.ч. Authorization выбранной личности)
+    public final Map<String, String> requestHeaders;
 
     public ApiCallResult(int statusCode, String responseBody) {
+        this(statusCode, responseBody, Collections.emptyMap());
+    }
+
+    public ApiCallResult(int statusCode, String responseBody, Map<String, String> requestHeaders) {
         this.statusCode = statusCode;
         this.responseBody = responseBody;
         this.error = null;
+        this.requestHeaders = requestHeaders;
     }
 
     public ApiCallResult(Exception error) {
         this.statusCode = -1;
         this.responseBody = null;
         this.error = error;
+        this.requestHeaders = Collections.emptyMap();
+    }
+
+    // Токен из заголовка Authorization отправленного запроса
+    public String getBearerToken() {
+        String authorization = requestHeaders.get("Authorization");
+        return authorization != null && authorization.startsWith("Bearer ")
+            ? authorization.substring("Bearer ".length())
+            : null;
     }
 
     public boolean isSuccess() {
@@ -1,357 +1,473 @@
 package com.apisecurity.analyzer.executor;
 
 import com.apisecurity.analyzer.context.ExecutionContext;
+import com.apisecurity.analyzer.discovery.EndpointSignature;
+import com.apisecurity.shared.EndpointIndex;
+import com.apisecurity.shared.http.Cassette;
+import com.apisecurity.shared.http.HostRateLimiter;
+import com.apisecurity.shared.http.ResponseCache;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.IOException;
 import java.net.URI;
-import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class ApiExecutor {
 
     private final String baseUrl;
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private String accessToken = null;
-    private final HttpClient httpClient = HttpClient.newHttpClient();
-
-    private static final String REQUESTS_LOG_FILE = "reports/dynamic-requests.log";
-    private final List<String> requestLog = new ArrayList<>();
+    private volatile TokenManager tokenManager;
+    private final TokenEndpointFinder tokenEndpointFinder = new TokenEndpointFinder();
+    private final HttpClient httpClient;
+    private final HostConcurrencyLimiter hostLimiter;
+    private final HostRateLimiter rateLimiter = HostRateLimiter.shared();
+    private final Duration requestTimeout;
+
+    public static final int DEFAULT_MAX_IN_FLIGHT_PER_HOST = 6;
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(20);
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final int MAX_RATE_LIMIT_RETRIES = 2;
+
+    private final RequestJournal journal;
+    private final Cassette cassette;
+    private final ResponseCache responseCache;
+    // Шаблоны URL по "METHOD path"; пути без переменных не компилируются
+    private final Map<String, UrlTemplate> urlTemplates = new ConcurrentHashMap<>();
 
     private void logRequestResponse(String method, String url, Map<String, String> requestHeaders,
                                     String requestBody,
                                     int statusCode, String responseBody) {
-        StringBuilder logEntry = new StringBuilder();
-        logEntry.append("# ").append(new Date()).append("\n");
-
-        logEntry.append("### REQUEST\n");
-        logEntry.append("curl -X ").append(method.toUpperCase()).append(" '").append(url).append("'");
-        for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
-            logEntry.append(" \\\n  -H '").append(header.getKey()).append(": ").append(header.getValue()).append("'");
-        }
-        if (requestBody != null && !requestBody.isEmpty()) {
-            String safeBody = requestBody.replace("'", "'\"'\"'");
-            logEntry.append(" \\\n  -d '").append(safeBody).append("'");
-        }
-        logEntry.append("\n\n");
-
-        logEntry.append("### RESPONSE (").append(statusCode).append(")\n");
-        if (responseBody != null) {
-            String trimmedBody = responseBody.length() > 1000
-                ? responseBody.substring(0, 1000) + "..."
-                : responseBody;
-            logEntry.append(trimmedBody).append("\n");
-        }
-        logEntry.append("\n").append("=".repeat(80)).append("\n\n");
-
-        synchronized (requestLog) {
-            requestLog.add(logEntry.toString());
-        }
+        journal.record(method, url, requestHeaders, requestBody, statusCode, responseBody);
     }
 
+    // Дописывает журнал на диск и останавливает его писателя
     public void saveRequestLog() {
-        if (requestLog.isEmpty()) return;
-        try {
-            Files.createDirectories(Paths.get("reports"));
-            Files.write(Paths.get(REQUESTS_LOG_FILE), requestLog,
-                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-            System.out.println("Dynamic requests logged to: " + REQUESTS_LOG_FILE);
-        } catch (IOException e) {
-            System.err.println("Failed to write request log: " + e.getMessage());
+        journal.close();
+        if (journal.getWrittenCount() > 0) {
+            System.out.println("Dynamic requests logged to: " + journal.getFile()
+                + " (" + journal.getWrittenCount() + " requests"
+                + (journal.getBackpressureWaits() > 0 ? ", " + journal.getBackpressureWaits() + " backpressure waits" : "")
+                + "; view with JournalViewer)");
         }
     }
 
     public ApiExecutor(String baseUrl) {
+        this(baseUrl, DEFAULT_MAX_IN_FLIGHT_PER_HOST, DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    public ApiExecutor(String baseUrl, int maxInFlightPerHost, Duration requestTimeout) {
+        this(baseUrl, maxInFlightPerHost, requestTimeout,
+            new RequestJournal(Paths.get("reports"), "dynamic-requests", false), null);
+    }
+
+    public ApiExecutor(String baseUrl, int maxInFlightPerHost, Duration requestTimeout, RequestJournal journal,
+                       Cassette cassette) {
+        this(baseUrl, maxInFlightPerHost, requestTimeout, journal, cassette, ResponseCache.shared());
+    }
+
+    // cassette — null, если запись и воспроизведение выключены; responseCache — null, если кэш выключен.
+    // С кассетой кэш не используется: каждый запрос должен соответствовать одной её записи
+    public ApiExecutor(String baseUrl, int maxInFlightPerHost, Duration requestTimeout, RequestJournal journal,
+                       Cassette cassette, ResponseCache responseCache) {
         this.baseUrl = baseUrl.replaceAll("/+$", "");
+        this.journal = journal;
+        this.cassette = cassette;
+        this.responseCache = cassette != null ? null : responseCache;
+        this.hostLimiter = new HostConcurrencyLimiter(maxInFlightPerHost);
+        this.requestTimeout = requestTimeout;
+        this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(CONNECT_TIMEOUT)
+            .build();
     }
 
     // === СТАРЫЙ МЕТОД: получение токена через ExecutionContext ===
-    public boolean obtainToken(JsonNode spec, ExecutionContext ctx) {
-        TokenEndpointFinder finder = new TokenEndpointFinder();
-        TokenEndpointFinder.TokenEndpoint tokenEp = finder.findTokenEndpoint(spec);
+    // client_id/client_secret из контекста — основная личность; остальные client_id из params.json идут в пул
+    public boolean obtainToken(EndpointIndex endpointIndex, ExecutionContext ctx) {
+        TokenEndpointFinder.TokenEndpoint tokenEp = tokenEndpointFinder.findTokenEndpoint(endpointIndex);
 
         if (tokenEp == null) {
             System.err.println("No token endpoint found in spec.");
             return false;
         }
 
-        Map<String, String> tokenParams = new HashMap<>();
         for (String paramName : tokenEp.requiredParams.keySet()) {
-            if (ctx.has(paramName)) {
-                tokenParams.put(paramName, ctx.get(paramName).toString());
-            } else {
+            if (!ctx.has(paramName)) {
                 System.err.println("Missing param for token: " + paramName);
                 return false;
             }
         }
 
-        String url = this.baseUrl + tokenEp.path;
-        StringBuilder query = new StringBuilder();
-        for (Map.Entry<String, String> entry : tokenParams.entrySet()) {
-            if (query.length() > 0) query.append("&");
-            query.append(URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8))
-                 .append("=")
-                 .append(URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8));
-        }
-        if (query.length() > 0) {
-            url += "?" + query;
-        }
-
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .POST(HttpRequest.BodyPublishers.noBody())
-                .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            logRequestResponse("POST", url, Map.of(), "", response.statusCode(), response.body());
-
-            if (response.statusCode() == 200) {
-                JsonNode tokenRes = objectMapper.readTree(response.body());
-                if (tokenRes.has("access_token")) {
-                    this.accessToken = tokenRes.get("access_token").asText();
-                    System.out.println("Token obtained successfully.");
-                    return true;
-                } else {
-                    System.err.println("No 'access_token' in response: " + response.body());
+        List<TokenManager.ClientCredentials> identities = new ArrayList<>();
+        String primaryId = ctx.get("client_id").toString();
+        identities.add(new TokenManager.ClientCredentials(primaryId, ctx.get("client_secret").toString()));
+        JsonNode params = readParams();
+        if (params != null) {
+            for (TokenManager.ClientCredentials identity : TokenManager.fromParams(params)) {
+                if (!identity.clientId.equals(primaryId)) {
+                    identities.add(identity);
                 }
-            } else {
-                System.err.println("Token request failed: " + response.statusCode());
             }
-        } catch (Exception e) {
-            System.err.println("Error obtaining token: " + e.getMessage());
         }
-        return false;
+        return startTokenManager(tokenEp, identities);
     }
 
-    // === НОВЫЙ МЕТОД: получение токена из params.json (для динамического тестирования) ===
-public boolean obtainTokenFromParams(JsonNode spec) {
-    TokenEndpointFinder finder = new TokenEndpointFinder();
-    TokenEndpointFinder.TokenEndpoint tokenEp = finder.findTokenEndpoint(spec);
+    // === НОВЫЙ МЕТОД: получение токенов для всех client_id из params.json (для динамического тестирования) ===
+    public boolean obtainTokenFromParams(EndpointIndex endpointIndex) {
+        TokenEndpointFinder.TokenEndpoint tokenEp = tokenEndpointFinder.findTokenEndpoint(endpointIndex);
 
-    if (tokenEp == null) {
-        System.err.println("No token endpoint found in spec.");
-        return false;
+        if (tokenEp == null) {
+            System.err.println("No token endpoint found in spec.");
+            return false;
+        }
+
+        JsonNode params = readParams();
+        if (params == null) {
+            return false;
+        }
+        List<TokenManager.ClientCredentials> identities = TokenManager.fromParams(params);
+        if (identities.isEmpty()) {
+            System.err.println("params.json must contain non-empty 'client_id' and 'client_secret' arrays");
+            return false;
+        }
+        return startTokenManager(tokenEp, identities);
     }
 
-    JsonNode params;
-    try {
-        params = objectMapper.readTree(Files.readAllBytes(Paths.get("params.json")));
-    } catch (IOException e) {
-        System.err.println("Failed to read params.json: " + e.getMessage());
-        return false;
+    private JsonNode readParams() {
+        try {
+            return objectMapper.readTree(Files.readAllBytes(Paths.get("params.json")));
+        } catch (IOException e) {
+            System.err.println("Failed to read params.json: " + e.getMessage());
+            return null;
+        }
     }
 
-    Map<String, String> tokenParams = new HashMap<>();
-    for (String paramName : tokenEp.requiredParams.keySet()) {
-        if (params.has(paramName)) {
-            JsonNode values = params.get(paramName);
-            if (values.isArray() && values.size() > 0) {
-                tokenParams.put(paramName, values.get(0).asText());
-            } else {
-                System.err.println("Parameter '" + paramName + "' in params.json is not a non-empty array");
-                return false;
-            }
-        } else {
-            System.err.println("Required token param '" + paramName + "' not found in params.json");
+    private boolean startTokenManager(TokenEndpointFinder.TokenEndpoint tokenEp,
+                                      List<TokenManager.ClientCredentials> identities) {
+        TokenManager manager = new TokenManager(this.baseUrl, tokenEp, identities, this::sendTokenRequest,
+            TokenManager.DEFAULT_REFRESH_MARGIN, requestTimeout);
+        int ready = manager.initialize(requestTimeout);
+        if (manager.primary() == null) {
+            System.err.println("Token request failed for " + identities.get(0).clientId);
+            manager.shutdown();
             return false;
         }
+        TokenManager previous = this.tokenManager;
+        this.tokenManager = manager;
+        if (previous != null) {
+            previous.shutdown();
+        }
+        System.out.println("Token obtained successfully (" + ready + "/" + identities.size()
+            + " identities: " + manager.getClientIds() + ").");
+        return true;
     }
 
-    // 🔴 ИСПРАВЛЕНО: собираем URL как baseUrl + path, НЕ используем tokenEp.url
-    String tokenUrl = this.baseUrl + tokenEp.path;
-
-    String formData = tokenParams.entrySet().stream()
-        .map(e -> URLEncoder.encode(e.getKey(), StandardCharsets.UTF_8) + "=" +
-                   URLEncoder.encode(e.getValue(), StandardCharsets.UTF_8))
-        .collect(Collectors.joining("&"));
-
-    HttpRequest request = HttpRequest.newBuilder()
-        .uri(URI.create(tokenUrl)) 
-        .header("Content-Type", "application/x-www-form-urlencoded")
-        .POST(HttpRequest.BodyPublishers.ofString(formData, StandardCharsets.UTF_8))
-        .build();
-
-    try {
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        logRequestResponse("POST", tokenUrl,  
-            Map.of("Content-Type", "application/x-www-form-urlencoded"),
-            formData, response.statusCode(), response.body());
-
-        if (response.statusCode() == 200) {
-            JsonNode tokenResponse = objectMapper.readTree(response.body());
-            if (tokenResponse.has("access_token")) {
-                this.accessToken = tokenResponse.get("access_token").asText();
-                System.out.println("Token from params.json obtained successfully.");
-                return true;
-            } else {
-                System.err.println("Token response missing 'access_token'");
-            }
-        } else {
-            System.err.println("Token request failed: " + response.statusCode());
+    private CompletableFuture<HttpResponse<String>> sendTokenRequest(HttpRequest request, String body) {
+        return exchange(request, body).thenApply(res -> {
+            Map<String, String> headers = new LinkedHashMap<>();
+            request.headers().map().forEach((name, values) -> headers.put(name, String.join(", ", values)));
+            logRequestResponse("POST", request.uri().toString(), headers, body, res.statusCode(), res.body());
+            return res;
+        });
+    }
+
+    public void shutdown() {
+        TokenManager manager = this.tokenManager;
+        if (manager != null) {
+            manager.shutdown();
         }
-    } catch (Exception e) {
-        System.err.println("Exception during token request from params.json: " + e.getMessage());
     }
-    return false;
-}
 
     // === СТАРЫЕ МЕТОДЫ ДЛЯ СОВМЕСТИМОСТИ ===
+    // Блокирующие варианты ждут асинхронные и подчиняются тем же лимитам и таймаутам
 
     public ApiCallResult callEndpoint(String method, String path, ExecutionContext ctx) {
-        String url = buildUrl(path, ctx);
-        try {
-            HttpRequest.Builder reqBuilder = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .method(method.toUpperCase(), HttpRequest.BodyPublishers.noBody());
+        return callEndpointAsync(method, path, ctx).join();
+    }
 
-            if (this.accessToken != null) {
-                reqBuilder.header("Authorization", "Bearer " + this.accessToken);
-            }
-            addHeadersFromContext(reqBuilder, ctx, path);
+    public ApiCallResult callEndpointWithBody(String method, String path, JsonNode body, ExecutionContext ctx) {
+        return callEndpointWithBodyAsync(method, path, body, ctx).join();
+    }
 
-            HttpRequest request = reqBuilder.build();
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    // === АСИНХРОННЫЕ ВЫЗОВЫ ===
+    // Ошибки запроса возвращаются как ApiCallResult(error); future завершается исключением только при отмене
 
-            int statusCode = response.statusCode();
-            String responseBody = response.body();
+    public CompletableFuture<ApiCallResult> callEndpointAsync(String method, String path, ExecutionContext ctx) {
+        return callEndpointAsync(method, path, ctx, null);
+    }
 
-            Map<String, String> requestHeaders = new HashMap<>();
-            if (this.accessToken != null) {
-                requestHeaders.put("Authorization", "Bearer " + this.accessToken);
-            }
-            for (String key : ctx.getKeys()) {
-                if (key.startsWith("x-")) {
-                    requestHeaders.put(key, ctx.get(key).toString());
-                }
-            }
+    /**
+     * Вызов от имени конкретной личности (межтенантная проба, сбор ID основной личностью);
+     * identity == null — основная личность.
+     */
+    public CompletableFuture<ApiCallResult> callEndpointAsync(String method, String path, ExecutionContext ctx,
+                                                              TokenManager.Identity identity) {
+        String url;
+        try {
+            url = buildUrl(method, path, ctx::get);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(new ApiCallResult(e));
+        }
+        return sendAsync(method.toUpperCase(), url, contextHeaders(ctx, null, identity), null);
+    }
 
-            logRequestResponse(method, url, requestHeaders, null, statusCode, responseBody);
-            return new ApiCallResult(statusCode, responseBody);
+    public CompletableFuture<ApiCallResult> callEndpointWithBodyAsync(String method, String path, JsonNode body,
+                                                                      ExecutionContext ctx) {
+        String url;
+        try {
+            url = buildUrl(method, path, ctx::get);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(new ApiCallResult(e));
+        }
+        String requestBody = body != null ? body.toString() : null;
+        return sendAsync(method.toUpperCase(), url, contextHeaders(ctx, "application/json", null), requestBody);
+    }
 
-        } catch (Exception e) {
-            return new ApiCallResult(e);
+    private Map<String, String> contextHeaders(ExecutionContext ctx, String contentType,
+                                               TokenManager.Identity identity) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (contentType != null) {
+            headers.put("Content-Type", contentType);
         }
+        // Без явной личности — основная; запрос не ждёт обновления токена
+        if (identity == null) {
+            identity = primaryIdentity();
+        }
+        if (identity != null) {
+            headers.put("Authorization", "Bearer " + identity.accessToken);
+        }
+        for (String key : ctx.getKeys()) {
+            if (key.startsWith("x-")) {
+                headers.put(key, ctx.get(key).toString());
+            }
+        }
+        return headers;
     }
 
-    public ApiCallResult callEndpointWithBody(String method, String path, JsonNode body, ExecutionContext ctx) {
-        String url = buildUrl(path, ctx);
+    private CompletableFuture<ApiCallResult> sendAsync(String method, String url, Map<String, String> headers,
+                                                       String body) {
+        HttpRequest request;
         try {
-            String requestBody = body != null ? body.toString() : null;
-            HttpRequest.BodyPublisher bodyPublisher = requestBody != null
-                ? HttpRequest.BodyPublishers.ofString(requestBody)
-                : HttpRequest.BodyPublishers.noBody();
-
-            HttpRequest.Builder reqBuilder = HttpRequest.newBuilder()
+            HttpRequest.Builder builder = HttpRequest.newBuilder()
                 .uri(URI.create(url))
-                .method(method.toUpperCase(), bodyPublisher)
-                .header("Content-Type", "application/json");
+                .timeout(requestTimeout)
+                .method(method, body != null
+                    ? HttpRequest.BodyPublishers.ofString(body)
+                    : HttpRequest.BodyPublishers.noBody());
+            headers.forEach(builder::header);
+            request = builder.build();
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(new ApiCallResult(e));
+        }
 
-            if (this.accessToken != null) {
-                reqBuilder.header("Authorization", "Bearer " + this.accessToken);
-            }
-            addHeadersFromContext(reqBuilder, ctx, path);
+        CompletableFuture<HttpResponse<String>> response = cachedExchange(request, body, headers);
 
-            HttpRequest request = reqBuilder.build();
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        CompletableFuture<ApiCallResult> result = response.handle((res, error) -> {
+            if (error != null) {
+                return new ApiCallResult(unwrap(error));
+            }
+            logRequestResponse(method, url, headers, body, res.statusCode(), res.body());
+            return new ApiCallResult(res.statusCode(), res.body(), headers);
+        });
+        // Отмена результата отменяет и сам запрос
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                response.cancel(true);
+            }
+        });
+        return result;
+    }
 
-            int statusCode = response.statusCode();
-            String responseBody = response.body();
+    // GET и HEAD идут через кэш ответов: повтор в пределах TTL и такой же запрос в полёте не выходят в сеть;
+    // остальные методы сбрасывают кэш своего URL
+    private CompletableFuture<HttpResponse<String>> cachedExchange(HttpRequest request, String body,
+                                                                   Map<String, String> headers) {
+        if (responseCache == null) {
+            return exchange(request, body);
+        }
+        if (!ResponseCache.isCacheable(request.method())) {
+            // Изменение ресурса сбрасывает его GET/HEAD — при отправке и по ответу
+            String url = request.uri().toString();
+            responseCache.invalidate(url);
+            CompletableFuture<HttpResponse<String>> mutation = exchange(request, body);
+            mutation.whenComplete((res, error) -> responseCache.invalidate(url));
+            return mutation;
+        }
+        String key = ResponseCache.key(request.method(), request.uri().toString(), headers);
+        CompletableFuture<ResponseCache.CachedResponse> cached = responseCache.getOrFetch(key, () ->
+            cancellable(exchange(request, body), res -> {
+                Map<String, String> responseHeaders = new LinkedHashMap<>();
+                res.headers().map().forEach((name, values) -> responseHeaders.put(name, String.join(", ", values)));
+                return new ResponseCache.CachedResponse(res.statusCode(), responseHeaders, res.body());
+            }));
+        return cancellable(cached, res -> new ReplayedHttpResponse(request, res.status, res.headers, res.body));
+    }
 
-            Map<String, String> requestHeaders = new HashMap<>();
-            requestHeaders.put("Content-Type", "application/json");
-            if (this.accessToken != null) {
-                requestHeaders.put("Authorization", "Bearer " + this.accessToken);
+    // thenApply, отмена результата которого отменяет и исходный future
+    private static <T, R> CompletableFuture<R> cancellable(CompletableFuture<T> source,
+                                                           Function<T, R> mapper) {
+        CompletableFuture<R> result = source.thenApply(mapper);
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                source.cancel(true);
             }
-            for (String key : ctx.getKeys()) {
-                if (key.startsWith("x-")) {
-                    requestHeaders.put(key, ctx.get(key).toString());
-                }
+        });
+        return result;
+    }
+
+    // В режиме воспроизведения ответ берётся из кассеты без сети и ограничителей; при записи сохраняется
+    private CompletableFuture<HttpResponse<String>> exchange(HttpRequest request, String body) {
+        if (cassette != null && cassette.isReplaying()) {
+            Cassette.Interaction recorded = cassette.replay(request.method(), request.uri().toString(), body);
+            if (recorded == null) {
+                return CompletableFuture.failedFuture(
+                    new IOException("No recorded response for " + request.method() + " " + request.uri()));
             }
+            return CompletableFuture.completedFuture(new ReplayedHttpResponse(request, recorded));
+        }
+
+        URI uri = request.uri();
+        String host = HostRateLimiter.hostKey(uri.getScheme(), uri.getHost(), uri.getPort());
+        CompletableFuture<HttpResponse<String>> response = new CompletableFuture<>();
+        sendRateLimited(request, host, response, 0);
+        if (cassette != null) {
+            response.thenAccept(res -> {
+                Map<String, String> headers = new LinkedHashMap<>();
+                res.headers().map().forEach((name, values) -> headers.put(name, String.join(", ", values)));
+                cassette.record(request.method(), uri.toString(), body, res.statusCode(), headers, res.body());
+            });
+        }
+        return response;
+    }
 
-            logRequestResponse(method, url, requestHeaders, requestBody, statusCode, responseBody);
-            return new ApiCallResult(statusCode, responseBody);
+    // Запрос ждёт токен хоста, затем слот; на 429 повторяется после паузы, назначенной ограничителем.
+    // Любой сбой на этом пути завершает response исключением: блокирующие вызовы ждут его в join()
+    private void sendRateLimited(HttpRequest request, String host,
+                                 CompletableFuture<HttpResponse<String>> response, int attempt) {
+        rateLimiter.acquireAsync(host).whenComplete((ignored, acquireError) -> {
+            if (response.isDone()) {
+                return;
+            }
+            if (acquireError != null) {
+                response.completeExceptionally(acquireError);
+                return;
+            }
+            try {
+                CompletableFuture<HttpResponse<String>> call = hostLimiter.submit(host,
+                    () -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+                response.whenComplete((value, error) -> {
+                    if (response.isCancelled()) {
+                        call.cancel(true);
+                    }
+                });
+                call.whenComplete((res, error) -> {
+                    if (error != null) {
+                        response.completeExceptionally(error);
+                        return;
+                    }
+                    try {
+                        rateLimiter.onResponse(host, res.statusCode(), name -> res.headers().firstValue(name).orElse(null));
+                        if (res.statusCode() == 429 && attempt < MAX_RATE_LIMIT_RETRIES) {
+                            sendRateLimited(request, host, response, attempt + 1);
+                        } else {
+                            response.complete(res);
+                        }
+                    } catch (RuntimeException e) {
+                        response.completeExceptionally(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                response.completeExceptionally(e);
+            }
+        });
+    }
 
-        } catch (Exception e) {
-            return new ApiCallResult(e);
+    private static Exception unwrap(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
         }
+        return cause instanceof Exception ? (Exception) cause : new Exception(cause);
     }
 
-    private String buildUrl(String path, ExecutionContext ctx) {
-        String url = this.baseUrl + path;
-        for (String key : ctx.getKeys()) {
-            String placeholder = "{" + key + "}";
-            if (url.contains(placeholder)) {
-                url = url.replace(placeholder, ctx.get(key).toString());
+    /**
+     * Компилирует шаблоны URL эндпоинтов заранее, вместе с их query-параметрами.
+     */
+    public void registerEndpoints(Collection<EndpointSignature> signatures) {
+        for (EndpointSignature signature : signatures) {
+            UrlTemplate template = UrlTemplate.of(signature);
+            if (template.hasVariables()) {
+                urlTemplates.put(templateKey(signature.method, signature.path), template);
             }
         }
-        return url;
     }
 
-    private void addHeadersFromContext(HttpRequest.Builder builder, ExecutionContext ctx, String path) {
-        for (String key : ctx.getKeys()) {
-            if (key.startsWith("x-")) {
-                builder.header(key, ctx.get(key).toString());
+    private String buildUrl(String method, String path, Function<String, ?> values) {
+        UrlTemplate template = urlTemplates.get(templateKey(method, path));
+        if (template == null) {
+            if (path.indexOf('{') < 0) {
+                return baseUrl + path;
             }
+            template = urlTemplates.computeIfAbsent(templateKey(method, path), key -> UrlTemplate.compile(path));
         }
+        return template.expand(baseUrl, values);
+    }
+
+    private static String templateKey(String method, String path) {
+        return method.toUpperCase() + " " + path;
     }
 
+    // Токен основной личности
     public String getAccessToken() {
-        return this.accessToken;
+        TokenManager.Identity primary = primaryIdentity();
+        return primary != null ? primary.accessToken : null;
+    }
+
+    private TokenManager.Identity primaryIdentity() {
+        TokenManager manager = this.tokenManager;
+        return manager != null ? manager.primary() : null;
+    }
+
+    public TokenManager getTokenManager() {
+        return tokenManager;
     }
 
     // === НОВЫЙ МЕТОД: executeRequest (для прямого вызова с pathParams и requestBody) ===
     public ApiCallResult executeRequest(String method, String path, Map<String, String> pathParams,
                                         ObjectNode requestBody) {
-        String url = baseUrl + path;
-        for (Map.Entry<String, String> param : pathParams.entrySet()) {
-            url = url.replace("{" + param.getKey() + "}",
-                URLEncoder.encode(param.getValue(), StandardCharsets.UTF_8));
-        }
+        return executeRequestAsync(method, path, pathParams, requestBody).join();
+    }
 
-        Map<String, String> headers = new HashMap<>();
-        if (accessToken != null) {
-            headers.put("Authorization", "Bearer " + accessToken);
+    public CompletableFuture<ApiCallResult> executeRequestAsync(String method, String path,
+                                                                Map<String, String> pathParams,
+                                                                ObjectNode requestBody) {
+        String url;
+        try {
+            url = buildUrl(method, path, pathParams::get);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(new ApiCallResult(e));
         }
-        headers.put("Content-Type", "application/json");
 
-        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-            .uri(URI.create(url))
-            .headers(headers.entrySet().stream()
-                .flatMap(e -> Stream.of(e.getKey(), e.getValue()))
-                .toArray(String[]::new));
-
-        String bodyStr = null;
-        if (requestBody != null) {
-            bodyStr = requestBody.toString();
-            requestBuilder = requestBuilder.method(method, HttpRequest.BodyPublishers.ofString(bodyStr));
-        } else {
-            if ("POST".equals(method) || "PUT".equals(method)) {
-                requestBuilder = requestBuilder.method(method, HttpRequest.BodyPublishers.noBody());
-            } else {
-                requestBuilder = requestBuilder.method(method, HttpRequest.BodyPublishers.noBody());
-            }
+        Map<String, String> headers = new LinkedHashMap<>();
+        TokenManager.Identity identity = primaryIdentity();
+        if (identity != null) {
+            headers.put("Authorization", "Bearer " + identity.accessToken);
         }
+        headers.put("Content-Type", "application/json");
 
-        try {
-            HttpRequest request = requestBuilder.build();
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            logRequestResponse(method, url, headers, bodyStr, response.statusCode(), response.body());
-            return new ApiCallResult(response.statusCode(), response.body());
-        } catch (Exception e) {
-            return new ApiCallResult(e);
-        }
+        String bodyStr = requestBody != null ? requestBody.toString() : null;
+        return sendAsync(method.toUpperCase(), url, headers, bodyStr);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,100 @@
+// com.apisecurity.analyzer.executor/HostConcurrencyLimiter.java
+package com.apisecurity.analyzer.executor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Ограничивает число одновременных запросов к одному хосту, не блокируя потоки:
+ * запрос сверх лимита ставится в очередь и стартует, когда освобождается слот.
+ * Отмена возвращённого future снимает запрос из очереди или отменяет его в полёте.
+ */
+public class HostConcurrencyLimiter {
+    private final int maxInFlightPerHost;
+    private final Map<String, HostSlot> hosts = new ConcurrentHashMap<>();
+
+    private static final class HostSlot {
+        int inFlight;
+        final Deque<BooleanSupplier> waiting = new ArrayDeque<>();
+    }
+
+    public HostConcurrencyLimiter(int maxInFlightPerHost) {
+        if (maxInFlightPerHost < 1) {
+            throw new IllegalArgumentException("maxInFlightPerHost must be positive: " + maxInFlightPerHost);
+        }
+        this.maxInFlightPerHost = maxInFlightPerHost;
+    }
+
+    public <T> CompletableFuture<T> submit(String host, Supplier<CompletableFuture<T>> call) {
+        HostSlot slot = hosts.computeIfAbsent(host, h -> new HostSlot());
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        // true — запрос занял слот; false — слот не понадобился (отменён в очереди или упал при старте)
+        BooleanSupplier start = () -> {
+            if (result.isDone()) {
+                return false;
+            }
+            CompletableFuture<T> inFlight;
+            try {
+                inFlight = call.get();
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return false;
+            }
+            inFlight.whenComplete((value, error) -> {
+                release(slot);
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    inFlight.cancel(true);
+                }
+            });
+            return true;
+        };
+
+        boolean runNow;
+        synchronized (slot) {
+            runNow = slot.inFlight < maxInFlightPerHost;
+            if (runNow) {
+                slot.inFlight++;
+            } else {
+                slot.waiting.addLast(start);
+            }
+        }
+        if (runNow && !start.getAsBoolean()) {
+            release(slot);
+        }
+        return result;
+    }
+
+    // Освободившийся слот сразу передаётся следующему ожидающему запросу
+    private void release(HostSlot slot) {
+        while (true) {
+            BooleanSupplier next;
+            synchronized (slot) {
+                next = slot.waiting.pollFirst();
+                if (next == null) {
+                    slot.inFlight--;
+                    return;
+                }
+            }
+            if (next.getAsBoolean()) {
+                return;
+            }
+        }
+    }
+
+    public int getMaxInFlightPerHost() {
+        return maxInFlightPerHost;
+    }
+}
@@ -0,0 +1,77 @@
+// com.apisecurity.analyzer.executor/JournalViewer.java
+package com.apisecurity.analyzer.executor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Показывает журнал {@link RequestJournal} в прежнем виде: curl-команда запроса и ответ.
+ *
+ * Использование: java -cp app.jar com.apisecurity.analyzer.executor.JournalViewer reports/dynamic-requests.jsonl
+ */
+public class JournalViewer {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: JournalViewer <journal.jsonl[.gz]>...");
+            System.exit(1);
+        }
+        JournalViewer viewer = new JournalViewer();
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        for (String file : args) {
+            viewer.render(Paths.get(file), out);
+        }
+        out.flush();
+    }
+
+    public void render(Path file, Writer out) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    out.write(renderEntry(objectMapper.readTree(line)));
+                }
+            }
+        }
+    }
+
+    public String renderEntry(JsonNode entry) {
+        StringBuilder text = new StringBuilder();
+        text.append("# ").append(new Date(entry.path("ts").asLong())).append("\n");
+
+        text.append("### REQUEST\n");
+        text.append("curl -X ").append(entry.path("method").asText()).append(" '").append(entry.path("url").asText()).append("'");
+        Iterator<Map.Entry<String, JsonNode>> headers = entry.path("headers").fields();
+        while (headers.hasNext()) {
+            Map.Entry<String, JsonNode> header = headers.next();
+            text.append(" \\\n  -H '").append(header.getKey()).append(": ").append(header.getValue().asText()).append("'");
+        }
+        String requestBody = entry.path("requestBody").asText("");
+        if (!requestBody.isEmpty()) {
+            text.append(" \\\n  -d '").append(requestBody.replace("'", "'\"'\"'")).append("'");
+        }
+        text.append("\n\n");
+
+        text.append("### RESPONSE (").append(entry.path("status").asInt()).append(")\n");
+        if (entry.has("responseBody")) {
+            text.append(entry.get("responseBody").asText()).append("\n");
+        }
+        text.append("\n").append("=".repeat(80)).append("\n\n");
+        return text.toString();
+    }
+}
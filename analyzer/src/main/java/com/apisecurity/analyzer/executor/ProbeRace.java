@@ -0,0 +1,71 @@
+// com.apisecurity.analyzer.executor/ProbeRace.java
+package com.apisecurity.analyzer.executor;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Набор асинхронных проб одного динамического теста. Пробы запускаются разом
+ * (темп задаёт ограничитель частоты ApiExecutor), а как только одна из них даёт
+ * решающий ответ, остальные отменяются — и ожидающие отправки, и уже отправленные.
+ */
+public class ProbeRace<K> {
+
+    public static class Winner<K> {
+        public final K key;
+        public final ApiCallResult result;
+
+        Winner(K key, ApiCallResult result) {
+            this.key = key;
+            this.result = result;
+        }
+    }
+
+    private final Map<K, Supplier<CompletableFuture<ApiCallResult>>> probes = new LinkedHashMap<>();
+
+    public ProbeRace<K> add(K key, Supplier<CompletableFuture<ApiCallResult>> probe) {
+        probes.put(key, probe);
+        return this;
+    }
+
+    /**
+     * Ждёт первую пробу, для которой decisive вернул true, и отменяет остальные.
+     * Возвращает null, если ни одна проба не оказалась решающей.
+     */
+    public Winner<K> awaitFirst(Predicate<ApiCallResult> decisive) throws InterruptedException {
+        if (probes.isEmpty()) {
+            return null;
+        }
+        CompletableFuture<Winner<K>> verdict = new CompletableFuture<>();
+        List<CompletableFuture<ApiCallResult>> inFlight = new CopyOnWriteArrayList<>();
+        AtomicInteger remaining = new AtomicInteger(probes.size());
+
+        for (Map.Entry<K, Supplier<CompletableFuture<ApiCallResult>>> probe : probes.entrySet()) {
+            if (verdict.isDone()) {
+                break;
+            }
+            CompletableFuture<ApiCallResult> call = probe.getValue().get();
+            inFlight.add(call);
+            call.whenComplete((result, error) -> {
+                if (result != null && decisive.test(result)) {
+                    verdict.complete(new Winner<>(probe.getKey(), result));
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    verdict.complete(null);
+                }
+            });
+        }
+
+        try {
+            return verdict.get();
+        } catch (ExecutionException e) {
+            return null;
+        } finally {
+            verdict.complete(null);
+            inFlight.forEach(call -> call.cancel(true));
+        }
+    }
+}
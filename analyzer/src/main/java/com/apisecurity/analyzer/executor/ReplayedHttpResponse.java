@@ -0,0 +1,78 @@
+// com.apisecurity.analyzer.executor/ReplayedHttpResponse.java
+package com.apisecurity.analyzer.executor;
+
+import com.apisecurity.shared.http.Cassette;
+
+import javax.net.ssl.SSLSession;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Ответ из кассеты или кэша ответов в виде {@link HttpResponse}, чтобы он шёл тем же путём, что и сетевой.
+ */
+class ReplayedHttpResponse implements HttpResponse<String> {
+    private final HttpRequest request;
+    private final int status;
+    private final HttpHeaders headers;
+    private final String body;
+
+    ReplayedHttpResponse(HttpRequest request, Cassette.Interaction interaction) {
+        this(request, interaction.status, interaction.headers, interaction.body);
+    }
+
+    ReplayedHttpResponse(HttpRequest request, int status, Map<String, String> headers, String body) {
+        this.request = request;
+        this.status = status;
+        this.body = body;
+        Map<String, List<String>> headerMap = headers.entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, e -> List.of(e.getValue())));
+        this.headers = HttpHeaders.of(headerMap, (name, value) -> true);
+    }
+
+    @Override
+    public int statusCode() {
+        return status;
+    }
+
+    @Override
+    public HttpRequest request() {
+        return request;
+    }
+
+    @Override
+    public Optional<HttpResponse<String>> previousResponse() {
+        return Optional.empty();
+    }
+
+    @Override
+    public HttpHeaders headers() {
+        return headers;
+    }
+
+    @Override
+    public String body() {
+        return body;
+    }
+
+    @Override
+    public Optional<SSLSession> sslSession() {
+        return Optional.empty();
+    }
+
+    @Override
+    public URI uri() {
+        return request.uri();
+    }
+
+    @Override
+    public HttpClient.Version version() {
+        return HttpClient.Version.HTTP_1_1;
+    }
+}
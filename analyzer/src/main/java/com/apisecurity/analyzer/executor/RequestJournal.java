@@ -0,0 +1,326 @@
+// com.apisecurity.analyzer.executor/RequestJournal.java
+package com.apisecurity.analyzer.executor;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Журнал динамических запросов в формате JSONL.
+ *
+ * Потоки запросов кладут записи в ограниченный кольцевой буфер без блокировок,
+ * один поток-писатель выгружает его в файл и сбрасывает на диск, как только буфер
+ * опустел. Когда буфер полон, записывающий поток ждёт освобождения места, поэтому
+ * память ограничена ёмкостью буфера. Файл перекатывается при достижении
+ * {@code maxSegmentBytes}; curl-представление строит {@link JournalViewer} при просмотре.
+ */
+public class RequestJournal implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 32L * 1024 * 1024;
+    public static final int MAX_BODY_CHARS = 1000;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    static final class Entry {
+        final long timestamp;
+        final String method;
+        final String url;
+        final Map<String, String> requestHeaders;
+        final String requestBody;
+        final int statusCode;
+        final String responseBody;
+
+        Entry(long timestamp, String method, String url, Map<String, String> requestHeaders,
+              String requestBody, int statusCode, String responseBody) {
+            this.timestamp = timestamp;
+            this.method = method;
+            this.url = url;
+            this.requestHeaders = requestHeaders;
+            this.requestBody = requestBody;
+            this.statusCode = statusCode;
+            this.responseBody = responseBody;
+        }
+    }
+
+    private final Path directory;
+    private final String baseName;
+    private final boolean compressed;
+    private final long maxSegmentBytes;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    // Ограниченная очередь многих производителей и одного потребителя: номер слота
+    // показывает, свободен он для записи с этим номером или уже заполнен
+    private final int mask;
+    private final AtomicReferenceArray<Entry> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // только поток-писатель
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong backpressureWaits = new AtomicLong();
+    private volatile boolean closed;
+    private volatile Thread writer;
+
+    private OutputStream segmentStream;
+    private CountingOutputStream segmentCounter;
+    private JsonGenerator segmentGenerator;
+    private long segmentStartBytes;
+
+    public RequestJournal(Path directory, String baseName, boolean compressed) {
+        this(directory, baseName, compressed, DEFAULT_CAPACITY, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    public RequestJournal(Path directory, String baseName, boolean compressed, int capacity, long maxSegmentBytes) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+        this.directory = directory;
+        this.baseName = baseName;
+        this.compressed = compressed;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public Path getFile() {
+        return directory.resolve(baseName + (compressed ? ".jsonl.gz" : ".jsonl"));
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getBackpressureWaits() {
+        return backpressureWaits.get();
+    }
+
+    /**
+     * Добавляет запись; тело ответа обрезается до {@link #MAX_BODY_CHARS} символов.
+     * Если буфер полон, ждёт, пока писатель освободит место.
+     */
+    public void record(String method, String url, Map<String, String> requestHeaders, String requestBody,
+                       int statusCode, String responseBody) {
+        if (closed) {
+            return;
+        }
+        startWriterIfNeeded();
+        String trimmed = responseBody != null && responseBody.length() > MAX_BODY_CHARS
+            ? responseBody.substring(0, MAX_BODY_CHARS) + "..."
+            : responseBody;
+        Entry entry = new Entry(System.currentTimeMillis(), method.toUpperCase(), url,
+            requestHeaders, requestBody, statusCode, trimmed);
+
+        boolean waited = false;
+        while (!offer(entry)) {
+            if (closed) {
+                return;
+            }
+            if (!waited) {
+                backpressureWaits.incrementAndGet();
+                waited = true;
+            }
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+    }
+
+    private boolean offer(Entry entry) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, entry);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false; // буфер полон
+            }
+        }
+    }
+
+    private Entry poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        Entry entry = slots.get(index);
+        slots.set(index, null);
+        sequences.set(index, head + mask + 1);
+        head++;
+        return entry;
+    }
+
+    private void startWriterIfNeeded() {
+        if (writer != null) {
+            return;
+        }
+        synchronized (this) {
+            if (writer == null && !closed) {
+                Thread thread = new Thread(this::drainLoop, "request-journal");
+                thread.setDaemon(true);
+                thread.start();
+                writer = thread;
+            }
+        }
+    }
+
+    private void drainLoop() {
+        try {
+            while (true) {
+                Entry entry = poll();
+                if (entry != null) {
+                    write(entry);
+                    continue;
+                }
+                // Буфер пуст: всё записанное уходит на диск
+                flush();
+                if (closed && tail.get() == head) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        } catch (IOException e) {
+            System.err.println("Request journal failed: " + e.getMessage());
+            closed = true;
+        } finally {
+            closeSegment();
+        }
+    }
+
+    private void write(Entry entry) throws IOException {
+        if (segmentGenerator == null || segmentBytes() >= maxSegmentBytes) {
+            rollSegment();
+        }
+        JsonGenerator gen = segmentGenerator;
+        gen.writeStartObject();
+        gen.writeNumberField("ts", entry.timestamp);
+        gen.writeStringField("method", entry.method);
+        gen.writeStringField("url", entry.url);
+        gen.writeObjectFieldStart("headers");
+        for (Map.Entry<String, String> header : entry.requestHeaders.entrySet()) {
+            gen.writeStringField(header.getKey(), header.getValue());
+        }
+        gen.writeEndObject();
+        if (entry.requestBody != null) {
+            gen.writeStringField("requestBody", entry.requestBody);
+        }
+        gen.writeNumberField("status", entry.statusCode);
+        if (entry.responseBody != null) {
+            gen.writeStringField("responseBody", entry.responseBody);
+        }
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+        written.incrementAndGet();
+    }
+
+    // Размер сегмента считается по несжатым данным
+    private long segmentBytes() {
+        return segmentStartBytes + segmentCounter.count;
+    }
+
+    // Текущий файл переименовывается в следующий свободный номер, запись продолжается в новый
+    private void rollSegment() throws IOException {
+        Files.createDirectories(directory);
+        Path file = getFile();
+        if (segmentGenerator != null) {
+            closeSegment();
+            String suffix = compressed ? ".jsonl.gz" : ".jsonl";
+            int number = 1;
+            Path rolled;
+            while (Files.exists(rolled = directory.resolve(baseName + "." + number + suffix))) {
+                number++;
+            }
+            Files.move(file, rolled, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(file,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        if (compressed) {
+            // syncFlush: каждый flush() доводит сжатые данные до файла, а не только до буфера Deflater
+            out = new GZIPOutputStream(out, 8192, true);
+        }
+        segmentStream = out;
+        segmentCounter = new CountingOutputStream(out);
+        segmentGenerator = jsonFactory.createGenerator(segmentCounter, JsonEncoding.UTF8);
+        segmentStartBytes = compressed ? 0 : Files.size(file);
+    }
+
+    private void flush() throws IOException {
+        if (segmentGenerator != null) {
+            segmentGenerator.flush();
+        }
+    }
+
+    private void closeSegment() {
+        try {
+            // Генератор закрывает и поток под собой
+            if (segmentGenerator != null) {
+                segmentGenerator.close();
+            } else if (segmentStream != null) {
+                segmentStream.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to close request journal: " + e.getMessage());
+        }
+        segmentGenerator = null;
+        segmentCounter = null;
+        segmentStream = null;
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Дописывает всё из буфера и останавливает писателя.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Thread thread = writer;
+        if (thread != null) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
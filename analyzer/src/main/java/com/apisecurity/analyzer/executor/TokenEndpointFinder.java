@@ -1,6 +1,8 @@
 // com.apisecurity.analyzer.executor/TokenEndpointFinder.java
 package com.apisecurity.analyzer.executor;
 
+import com.apisecurity.shared.EndpointIndex;
+import com.apisecurity.shared.EndpointOperation;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import java.util.*;
@@ -22,24 +24,28 @@ public class TokenEndpointFinder {
         }
     }
 
-    public TokenEndpoint findTokenEndpoint(JsonNode spec) {
-        JsonNode paths = spec.get("paths");
-        if (paths == null || !paths.isObject()) return null;
+    // Результат поиска для индекса: индекс неизменяем, повторный обход не нужен
+    private EndpointIndex searchedIndex;
+    private TokenEndpoint found;
 
-        Iterator<Map.Entry<String, JsonNode>> pathIt = paths.fields();
-        while (pathIt.hasNext()) {
-            Map.Entry<String, JsonNode> entry = pathIt.next();
-            String path = entry.getKey();
-            JsonNode pathItem = entry.getValue();
+    public synchronized TokenEndpoint findTokenEndpoint(EndpointIndex endpointIndex) {
+        if (endpointIndex != searchedIndex) {
+            found = search(endpointIndex);
+            searchedIndex = endpointIndex;
+        }
+        return found;
+    }
 
-            JsonNode postOp = pathItem.get("post");
-            if (postOp == null) continue;
+    private TokenEndpoint search(EndpointIndex endpointIndex) {
+        for (EndpointOperation endpoint : endpointIndex.getOperations()) {
+            if (!"post".equals(endpoint.getMethod())) continue;
+            String path = endpoint.getPath();
 
             // Ищем признаки токена: client_id + client_secret в query/form
             Set<String> foundParams = new HashSet<>();
             Map<String, String> paramLocations = new HashMap<>();
 
-            JsonNode params = postOp.get("parameters");
+            JsonNode params = endpoint.getParameters();
             if (params != null && params.isArray()) {
                 for (JsonNode param : params) {
                     String name = param.has("name") ? param.get("name").asText() : "";
@@ -60,8 +66,8 @@ public class TokenEndpointFinder {
             }
 
             // Дополнительно: по описанию
-            String summary = postOp.has("summary") ? postOp.get("summary").asText().toLowerCase() : "";
-            String desc = postOp.has("description") ? postOp.get("description").asText().toLowerCase() : "";
+            String summary = endpoint.getSummaryLower();
+            String desc = endpoint.getDescriptionLower();
             if ((summary.contains("token") || desc.contains("token")) &&
                 (summary.contains("access") || desc.contains("access") || summary.contains("bearer"))) {
                 Map<String, String> required = new HashMap<>();
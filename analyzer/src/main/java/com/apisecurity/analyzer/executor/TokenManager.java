@@ -0,0 +1,309 @@
+// com.apisecurity.analyzer.executor/TokenManager.java
+package com.apisecurity.analyzer.executor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Пул OAuth-токенов client_credentials: по одному на каждый client_id.
+ *
+ * Токен обновляется заранее, за {@link #DEFAULT_REFRESH_MARGIN} до истечения expires_in
+ * (но не раньше половины срока жизни короткого токена); одновременные обновления одного client_id схлопываются в один запрос. Запросы никогда
+ * не ждут обновления: пока оно идёт, выдаётся прежний, ещё действующий токен.
+ *
+ * У личностей разные роли: обычные запросы сканирования (и сбор ID из ответов) идут от
+ * основной личности {@link #primary()}, а межтенантные пробы BOLA — от другой личности,
+ * которую выдаёт {@link #other(Identity)}. Так известно, кому принадлежит объект и
+ * чьим токеном его пытались прочитать.
+ */
+public class TokenManager {
+    public static final Duration DEFAULT_REFRESH_MARGIN = Duration.ofSeconds(60);
+    // После неудачного запроса токена client_id не запрашивается повторно это время
+    private static final long FAILURE_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(30);
+    // Плановое обновление никогда не запускается раньше этого: защита от цикла запросов токена
+    private static final long MIN_REFRESH_DELAY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Отправка запроса токена. ApiExecutor пропускает его через ограничитель частоты
+     * и журнал запросов; body — тело формы или null.
+     */
+    public interface Transport {
+        CompletableFuture<HttpResponse<String>> send(HttpRequest request, String body);
+    }
+
+    public static class ClientCredentials {
+        public final String clientId;
+        public final String clientSecret;
+
+        public ClientCredentials(String clientId, String clientSecret) {
+            this.clientId = clientId;
+            this.clientSecret = clientSecret;
+        }
+    }
+
+    // Выданный токен вместе с client_id, которому он принадлежит
+    public static class Identity {
+        public final String clientId;
+        public final String accessToken;
+
+        Identity(String clientId, String accessToken) {
+            this.clientId = clientId;
+            this.accessToken = accessToken;
+        }
+    }
+
+    private static final class CachedToken {
+        final String accessToken;
+        final long expiresAtNanos; // Long.MAX_VALUE — сервер не сообщил срок
+        final long refreshAtNanos; // с этого момента токен обновляется заранее
+
+        CachedToken(String accessToken, long expiresAtNanos, long refreshAtNanos) {
+            this.accessToken = accessToken;
+            this.expiresAtNanos = expiresAtNanos;
+            this.refreshAtNanos = refreshAtNanos;
+        }
+
+        boolean isValid(long now) {
+            return now < expiresAtNanos;
+        }
+    }
+
+    private final String tokenUrl;
+    private final TokenEndpointFinder.TokenEndpoint tokenEndpoint;
+    private final List<ClientCredentials> identities;
+    private final Transport transport;
+    private final Duration refreshMargin;
+    private final Duration requestTimeout;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, CachedToken> tokens = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<CachedToken>> refreshes = new ConcurrentHashMap<>();
+    private final Map<String, Long> failedUntil = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "token-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TokenManager(String baseUrl, TokenEndpointFinder.TokenEndpoint tokenEndpoint,
+                        List<ClientCredentials> identities, Transport transport,
+                        Duration refreshMargin, Duration requestTimeout) {
+        this.tokenUrl = baseUrl + tokenEndpoint.path;
+        this.tokenEndpoint = tokenEndpoint;
+        this.identities = List.copyOf(identities);
+        this.transport = transport;
+        this.refreshMargin = refreshMargin;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Получает токены для всех client_id и ждёт их не дольше timeout.
+     * Возвращает число client_id, для которых токен получен.
+     */
+    public int initialize(Duration timeout) {
+        List<CompletableFuture<CachedToken>> pending = identities.stream()
+            .map(this::refresh)
+            .collect(Collectors.toList());
+        try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0]))
+                .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // Недоступные client_id просто не попадут в пул
+        }
+        long now = System.nanoTime();
+        return (int) identities.stream()
+            .filter(identity -> {
+                CachedToken token = tokens.get(identity.clientId);
+                return token != null && token.isValid(now);
+            })
+            .count();
+    }
+
+    // Токен первого client_id (основная личность сканирования); null, если токена сейчас нет
+    public Identity primary() {
+        return identities.isEmpty() ? null : current(identities.get(0), System.nanoTime());
+    }
+
+    /**
+     * Первая по порядку личность с действующим токеном, отличная от owner, — для
+     * межтенантной пробы объекта, принадлежащего owner. null, если другой личности нет.
+     * Не блокируется: при необходимости обновление запускается в фоне.
+     */
+    public Identity other(Identity owner) {
+        return other(owner != null ? owner.clientId : null);
+    }
+
+    // То же по client_id владельца (например, из корпуса ExecutionContext)
+    public Identity other(String ownerClientId) {
+        long now = System.nanoTime();
+        for (ClientCredentials credentials : identities) {
+            if (credentials.clientId.equals(ownerClientId)) {
+                continue;
+            }
+            Identity identity = current(credentials, now);
+            if (identity != null) {
+                return identity;
+            }
+        }
+        return null;
+    }
+
+    public List<String> getClientIds() {
+        return identities.stream().map(identity -> identity.clientId).collect(Collectors.toList());
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private Identity current(ClientCredentials credentials, long now) {
+        CachedToken token = tokens.get(credentials.clientId);
+        boolean valid = token != null && token.isValid(now);
+        // Отказ запроса токена откладывает и повторную попытку, и досрочное обновление
+        Long backoff = failedUntil.get(credentials.clientId);
+        boolean mayRefresh = backoff == null || now >= backoff;
+        if (mayRefresh && (!valid || now >= token.refreshAtNanos)) {
+            refresh(credentials);
+        }
+        return valid ? new Identity(credentials.clientId, token.accessToken) : null;
+    }
+
+    // Single-flight: пока запрос токена в полёте, все обращения получают тот же future
+    private CompletableFuture<CachedToken> refresh(ClientCredentials credentials) {
+        CompletableFuture<CachedToken> started = new CompletableFuture<>();
+        CompletableFuture<CachedToken> existing = refreshes.putIfAbsent(credentials.clientId, started);
+        if (existing != null) {
+            return existing;
+        }
+
+        CompletableFuture<CachedToken> request;
+        try {
+            request = requestToken(credentials);
+        } catch (RuntimeException e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+        request.whenComplete((token, error) -> {
+            refreshes.remove(credentials.clientId, started);
+            if (token != null) {
+                failedUntil.remove(credentials.clientId);
+                tokens.put(credentials.clientId, token);
+                scheduleRefresh(credentials, token);
+                started.complete(token);
+            } else {
+                failedUntil.put(credentials.clientId, System.nanoTime() + FAILURE_BACKOFF_NANOS);
+                System.err.println("Token request for " + credentials.clientId + " failed: "
+                    + (error != null ? error.getMessage() : "no access_token"));
+                started.completeExceptionally(error != null ? error
+                    : new IllegalStateException("No access_token for " + credentials.clientId));
+            }
+        });
+        return started;
+    }
+
+    private void scheduleRefresh(ClientCredentials credentials, CachedToken token) {
+        if (token.expiresAtNanos == Long.MAX_VALUE) {
+            return;
+        }
+        long delayNanos = token.refreshAtNanos - System.nanoTime();
+        try {
+            scheduler.schedule(() -> refresh(credentials), Math.max(delayNanos, MIN_REFRESH_DELAY_NANOS),
+                TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Менеджер уже остановлен
+        }
+    }
+
+    private CompletableFuture<CachedToken> requestToken(ClientCredentials credentials) {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("client_id", credentials.clientId);
+        params.put("client_secret", credentials.clientSecret);
+        String encoded = params.entrySet().stream()
+            .map(e -> URLEncoder.encode(e.getKey(), StandardCharsets.UTF_8) + "="
+                + URLEncoder.encode(e.getValue(), StandardCharsets.UTF_8))
+            .collect(Collectors.joining("&"));
+
+        // Параметры передаются так, как их объявляет спецификация: formData — телом, иначе в query
+        boolean form = "formData".equals(tokenEndpoint.requiredParams.get("client_id"));
+        HttpRequest.Builder builder = HttpRequest.newBuilder().timeout(requestTimeout);
+        String body = null;
+        if (form) {
+            body = encoded;
+            builder.uri(URI.create(tokenUrl))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8));
+        } else {
+            builder.uri(URI.create(tokenUrl + "?" + encoded))
+                .POST(HttpRequest.BodyPublishers.noBody());
+        }
+
+        long requestedAt = System.nanoTime();
+        return transport.send(builder.build(), body).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new CompletionException(new IllegalStateException(
+                    "HTTP " + response.statusCode() + " from token endpoint"));
+            }
+            try {
+                JsonNode json = objectMapper.readTree(response.body());
+                if (!json.hasNonNull("access_token")) {
+                    return null;
+                }
+                if (!json.has("expires_in") || json.get("expires_in").asLong() <= 0) {
+                    return new CachedToken(json.get("access_token").asText(), Long.MAX_VALUE, Long.MAX_VALUE);
+                }
+                long lifetime = TimeUnit.SECONDS.toNanos(json.get("expires_in").asLong());
+                // Запас не больше половины срока: иначе короткий токен обновлялся бы сразу после выдачи
+                long margin = Math.min(refreshMargin.toNanos(), lifetime / 2);
+                return new CachedToken(json.get("access_token").asText(), requestedAt + lifetime,
+                    requestedAt + lifetime - margin);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Личности из params.json: client_id и client_secret — массивы, секрет берётся
+     * с тем же индексом, а если секретов меньше — последний из них.
+     */
+    public static List<ClientCredentials> fromParams(JsonNode params) {
+        List<ClientCredentials> result = new ArrayList<>();
+        List<String> ids = textValues(params.get("client_id"));
+        List<String> secrets = textValues(params.get("client_secret"));
+        if (secrets.isEmpty()) {
+            return result;
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            result.add(new ClientCredentials(ids.get(i), secrets.get(Math.min(i, secrets.size() - 1))));
+        }
+        return result;
+    }
+
+    private static List<String> textValues(JsonNode node) {
+        List<String> values = new ArrayList<>();
+        if (node == null) {
+            return values;
+        }
+        if (node.isArray()) {
+            for (JsonNode value : node) {
+                if (!value.asText().trim().isEmpty()) {
+                    values.add(value.asText().trim());
+                }
+            }
+        } else if (node.isTextual() && !node.asText().trim().isEmpty()) {
+            values.add(node.asText().trim());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,152 @@
+// com.apisecurity.analyzer.executor/UrlTemplate.java
+package com.apisecurity.analyzer.executor;
+
+import com.apisecurity.analyzer.discovery.EndpointSignature;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Скомпилированный шаблон пути эндпоинта, например {@code /accounts/{account_id}/balances}.
+ *
+ * Шаблон разбирается один раз на литералы и имена переменных; подстановка — один проход
+ * в переиспользуемый буфер потока с процентным кодированием значений по RFC 3986.
+ * Переменная, для которой нет значения, остаётся в пути как есть. Query-параметры
+ * из сигнатуры добавляются, только если для них есть значение.
+ */
+public final class UrlTemplate {
+    private static final int MAX_REUSED_CAPACITY = 4096;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final boolean[] UNRESERVED = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) UNRESERVED[c] = true;
+        for (char c = 'A'; c <= 'Z'; c++) UNRESERVED[c] = true;
+        for (char c = '0'; c <= '9'; c++) UNRESERVED[c] = true;
+        for (char c : "-._~".toCharArray()) UNRESERVED[c] = true;
+    }
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    // literals.length == names.length + 1: литерал, переменная, литерал, ...
+    private final String[] literals;
+    private final String[] names;
+    private final String[] queryNames;
+
+    private UrlTemplate(String[] literals, String[] names, String[] queryNames) {
+        this.literals = literals;
+        this.names = names;
+        this.queryNames = queryNames;
+    }
+
+    public static UrlTemplate compile(String path) {
+        return compile(path, Collections.emptyList());
+    }
+
+    public static UrlTemplate compile(String path, Collection<String> queryNames) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int position = 0;
+        while (true) {
+            int open = path.indexOf('{', position);
+            int close = open >= 0 ? path.indexOf('}', open + 1) : -1;
+            if (close < 0) {
+                literals.add(path.substring(position));
+                break;
+            }
+            literals.add(path.substring(position, open));
+            names.add(path.substring(open + 1, close));
+            position = close + 1;
+        }
+        return new UrlTemplate(literals.toArray(new String[0]), names.toArray(new String[0]),
+            queryNames.toArray(new String[0]));
+    }
+
+    // Шаблон по сигнатуре: путь и её query-входы
+    public static UrlTemplate of(EndpointSignature signature) {
+        List<String> query = new ArrayList<>();
+        signature.inputs.forEach((name, in) -> {
+            if ("query".equals(in)) {
+                query.add(name);
+            }
+        });
+        return compile(signature.path, query);
+    }
+
+    public boolean hasVariables() {
+        return names.length > 0 || queryNames.length > 0;
+    }
+
+    /**
+     * URL для baseUrl и значений переменных; values возвращает null для неизвестных.
+     */
+    public String expand(String baseUrl, Function<String, ?> values) {
+        StringBuilder url = BUFFER.get();
+        if (url.capacity() > MAX_REUSED_CAPACITY) {
+            url = new StringBuilder(256);
+            BUFFER.set(url);
+        }
+        url.setLength(0);
+        url.append(baseUrl);
+
+        for (int i = 0; i < names.length; i++) {
+            url.append(literals[i]);
+            Object value = values.apply(names[i]);
+            if (value != null) {
+                encode(url, value.toString());
+            } else {
+                url.append('{').append(names[i]).append('}');
+            }
+        }
+        url.append(literals[names.length]);
+
+        char separator = url.indexOf("?") >= 0 ? '&' : '?';
+        for (String name : queryNames) {
+            Object value = values.apply(name);
+            if (value != null) {
+                url.append(separator);
+                encode(url, name);
+                url.append('=');
+                encode(url, value.toString());
+                separator = '&';
+            }
+        }
+        return url.toString();
+    }
+
+    private static void encode(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 128 && UNRESERVED[c]) {
+                out.append(c);
+            } else if (c < 128) {
+                appendEscaped(out, c);
+            } else {
+                // Не-ASCII символ или суррогатная пара кодируется байтами UTF-8
+                int end = i + (Character.isHighSurrogate(c) && i + 1 < value.length() ? 2 : 1);
+                for (byte b : value.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                    appendEscaped(out, b & 0xFF);
+                }
+                i = end - 1;
+            }
+        }
+    }
+
+    private static void appendEscaped(StringBuilder out, int b) {
+        out.append('%').append(HEX[b >> 4]).append(HEX[b & 0xF]);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            path.append(literals[i]).append('{').append(names[i]).append('}');
+        }
+        path.append(literals[names.length]);
+        if (queryNames.length > 0) {
+            path.append(" ?").append(String.join("&", queryNames));
+        }
+        return path.toString();
+    }
+}
@@ -8,50 +8,94 @@ import java.util.*;
 /**
  * Граф зависимостей между эндпоинтами.
  * Позволяет находить "поставщиков" параметров для любого эндпоинта.
+ *
+ * Эндпоинты получают номера в порядке сигнатур; рёбра хранятся в сжатых массивах
+ * смежности (CSR) в обе стороны, поэтому поставщики и потребители эндпоинта находятся
+ * за O(степени). Компоненты сильной связности (Тарьян) и уровни топологического
+ * порядка (Кан по графу компонент) считаются один раз при построении.
  */
 public class DependencyGraph {
-    // Ключ: эндпоинт-потребитель → список рёбер
-    private final Map<String, List<DependencyEdge>> edgesByTarget = new LinkedHashMap<>();
+    // Номер эндпоинта ↔ ключ "GET /accounts"
+    private final String[] endpointKeys;
+    private final Map<String, Integer> endpointIds = new HashMap<>();
 
     // Ключ: параметр → список эндпоинтов, которые его предоставляют
     private final Map<String, List<String>> providersByParam = new LinkedHashMap<>();
 
+    // Рёбра потребителя i: incomingEdges[incomingOffsets[i] .. incomingOffsets[i + 1])
+    private final int[] incomingOffsets;
+    private final DependencyEdge[] incomingEdges;
+    // Потребители поставщика i без повторов: dependents[dependentOffsets[i] .. dependentOffsets[i + 1])
+    private final int[] dependentOffsets;
+    private final int[] dependents;
+
+    private final int[] componentOf;
+    private final List<List<String>> components;
+    private final List<List<String>> levels;
+
     public DependencyGraph(Map<String, EndpointSignature> signatures) {
-        // 1. Индексируем поставщиков по параметрам
-        for (Map.Entry<String, EndpointSignature> entry : signatures.entrySet()) {
-            String endpointKey = entry.getKey();
-            EndpointSignature sig = entry.getValue();
+        int size = signatures.size();
+        this.endpointKeys = signatures.keySet().toArray(new String[0]);
+        for (int i = 0; i < size; i++) {
+            endpointIds.put(endpointKeys[i], i);
+        }
 
-            for (String outputParam : sig.outputs) {
-                providersByParam.computeIfAbsent(outputParam, k -> new ArrayList<>())
-                                .add(endpointKey);
+        // 1. Индексируем поставщиков по параметрам
+        Map<String, List<Integer>> providerIds = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            for (String outputParam : signatures.get(endpointKeys[i]).outputs) {
+                providersByParam.computeIfAbsent(outputParam, k -> new ArrayList<>()).add(endpointKeys[i]);
+                providerIds.computeIfAbsent(outputParam, k -> new ArrayList<>()).add(i);
             }
         }
 
-        // 2. Строим рёбра
-        for (Map.Entry<String, EndpointSignature> entry : signatures.entrySet()) {
-            String targetKey = entry.getKey();
-            EndpointSignature targetSig = entry.getValue();
-
-            List<DependencyEdge> edges = new ArrayList<>();
-
+        // 2. Строим входящие рёбра сразу в CSR: потребители идут по порядку номеров
+        List<DependencyEdge> edges = new ArrayList<>();
+        List<int[]> pairs = new ArrayList<>();
+        this.incomingOffsets = new int[size + 1];
+        for (int target = 0; target < size; target++) {
+            incomingOffsets[target] = edges.size();
             // Для каждого входного параметра ищем поставщика
-            for (String inputParam : targetSig.inputs.keySet()) {
-                List<String> providers = providersByParam.get(inputParam);
-                if (providers != null) {
-                    for (String provider : providers) {
-                        // Не создаём цикл: эндпоинт не может зависеть от себя
-                        if (!provider.equals(targetKey)) {
-                            edges.add(new DependencyEdge(provider, targetKey, inputParam));
-                        }
+            for (String inputParam : signatures.get(endpointKeys[target]).inputs.keySet()) {
+                for (int source : providerIds.getOrDefault(inputParam, Collections.emptyList())) {
+                    // Не создаём цикл: эндпоинт не может зависеть от себя
+                    if (source != target) {
+                        edges.add(new DependencyEdge(endpointKeys[source], endpointKeys[target], inputParam));
+                        pairs.add(new int[] { source, target });
                     }
                 }
             }
+        }
+        incomingOffsets[size] = edges.size();
+        this.incomingEdges = edges.toArray(new DependencyEdge[0]);
 
-            if (!edges.isEmpty()) {
-                edgesByTarget.put(targetKey, edges);
+        // 3. Обратная смежность подсчётом: сначала степени, затем раскладка по смещениям
+        int[] degree = new int[size];
+        boolean[] seen = new boolean[pairs.size()];
+        Set<Long> distinct = new HashSet<>();
+        for (int e = 0; e < pairs.size(); e++) {
+            int[] pair = pairs.get(e);
+            if (distinct.add(((long) pair[0] << 32) | pair[1])) {
+                seen[e] = true;
+                degree[pair[0]]++;
             }
         }
+        this.dependentOffsets = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            dependentOffsets[i + 1] = dependentOffsets[i] + degree[i];
+        }
+        this.dependents = new int[dependentOffsets[size]];
+        int[] fill = Arrays.copyOf(dependentOffsets, size);
+        for (int e = 0; e < pairs.size(); e++) {
+            if (seen[e]) {
+                int[] pair = pairs.get(e);
+                dependents[fill[pair[0]]++] = pair[1];
+            }
+        }
+
+        this.componentOf = new int[size];
+        this.components = findComponents();
+        this.levels = buildLevels();
     }
 
     /**
@@ -65,37 +109,221 @@ public class DependencyGraph {
      * Возвращает все зависимости для заданного эндпоинта.
      */
     public List<DependencyEdge> getDependenciesFor(String endpointKey) {
-        return edgesByTarget.getOrDefault(endpointKey, Collections.emptyList());
+        Integer id = endpointIds.get(endpointKey);
+        if (id == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(
+            Arrays.asList(incomingEdges).subList(incomingOffsets[id], incomingOffsets[id + 1]));
     }
 
     /**
      * Возвращает все эндпоинты, которые зависят от данного.
      */
     public List<String> getDependentsOf(String endpointKey) {
-        List<String> dependents = new ArrayList<>();
-        for (List<DependencyEdge> edges : edgesByTarget.values()) {
-            for (DependencyEdge edge : edges) {
-                if (edge.sourceEndpointKey.equals(endpointKey)) {
-                    dependents.add(edge.targetEndpointKey);
+        Integer id = endpointIds.get(endpointKey);
+        if (id == null) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>(dependentOffsets[id + 1] - dependentOffsets[id]);
+        for (int i = dependentOffsets[id]; i < dependentOffsets[id + 1]; i++) {
+            result.add(endpointKeys[dependents[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Параметры, которые хотя бы один эндпоинт получает от другого.
+     */
+    public Set<String> getLinkedParameters() {
+        Set<String> params = new LinkedHashSet<>();
+        for (DependencyEdge edge : incomingEdges) {
+            params.add(edge.parameterName);
+        }
+        return params;
+    }
+
+    /**
+     * Компоненты сильной связности в порядке номеров их первых эндпоинтов.
+     */
+    public List<List<String>> getStronglyConnectedComponents() {
+        return components;
+    }
+
+    public boolean hasCycles() {
+        return components.size() < endpointKeys.length;
+    }
+
+    /**
+     * Эндпоинты по уровням топологического порядка — волны, которые можно выполнять
+     * параллельно: все поставщики эндпоинта стоят на более ранних уровнях. Эндпоинты
+     * одного цикла попадают на один уровень.
+     */
+    public List<List<String>> getTopologicalLevels() {
+        return levels;
+    }
+
+    // Итеративный Тарьян: без рекурсии, чтобы длинные цепочки не переполняли стек
+    private List<List<String>> findComponents() {
+        int size = endpointKeys.length;
+        int[] index = new int[size];
+        int[] lowLink = new int[size];
+        boolean[] onStack = new boolean[size];
+        Arrays.fill(index, -1);
+        int[] stack = new int[size];
+        int stackSize = 0;
+        int[] callNode = new int[size];
+        int[] callEdge = new int[size];
+        int counter = 0;
+        int componentCount = 0;
+        Arrays.fill(componentOf, -1);
+
+        for (int root = 0; root < size; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            callNode[0] = root;
+            callEdge[0] = dependentOffsets[root];
+            index[root] = lowLink[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth >= 0) {
+                int node = callNode[depth];
+                if (callEdge[depth] < dependentOffsets[node + 1]) {
+                    int next = dependents[callEdge[depth]++];
+                    if (index[next] < 0) {
+                        index[next] = lowLink[next] = counter++;
+                        stack[stackSize++] = next;
+                        onStack[next] = true;
+                        depth++;
+                        callNode[depth] = next;
+                        callEdge[depth] = dependentOffsets[next];
+                    } else if (onStack[next]) {
+                        lowLink[node] = Math.min(lowLink[node], index[next]);
+                    }
+                    continue;
+                }
+                if (lowLink[node] == index[node]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        componentOf[member] = componentCount;
+                    } while (member != node);
+                    componentCount++;
+                }
+                depth--;
+                if (depth >= 0) {
+                    int parent = callNode[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+            }
+        }
+
+        // Перенумеровываем компоненты в порядке первых эндпоинтов
+        int[] renumber = new int[componentCount];
+        Arrays.fill(renumber, -1);
+        List<List<String>> result = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            int component = componentOf[i];
+            if (renumber[component] < 0) {
+                renumber[component] = result.size();
+                result.add(new ArrayList<>());
+            }
+            componentOf[i] = renumber[component];
+            result.get(componentOf[i]).add(endpointKeys[i]);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    // Кан по графу компонент; эндпоинты внутри уровня — в порядке сигнатур
+    private List<List<String>> buildLevels() {
+        int count = components.size();
+        int[] inDegree = new int[count];
+        Set<Long> condensed = new HashSet<>();
+        for (int source = 0; source < endpointKeys.length; source++) {
+            for (int i = dependentOffsets[source]; i < dependentOffsets[source + 1]; i++) {
+                int from = componentOf[source];
+                int to = componentOf[dependents[i]];
+                if (from != to && condensed.add(((long) from << 32) | to)) {
+                    inDegree[to]++;
+                }
+            }
+        }
+
+        int[] levelOf = new int[count];
+        List<Integer> ready = new ArrayList<>();
+        for (int c = 0; c < count; c++) {
+            if (inDegree[c] == 0) {
+                ready.add(c);
+            }
+        }
+        List<List<Integer>> endpointsOfComponent = new ArrayList<>();
+        for (int c = 0; c < count; c++) {
+            endpointsOfComponent.add(new ArrayList<>());
+        }
+        for (int i = 0; i < endpointKeys.length; i++) {
+            endpointsOfComponent.get(componentOf[i]).add(i);
+        }
+
+        int levelCount = 0;
+        int processed = 0;
+        while (processed < ready.size()) {
+            int component = ready.get(processed++);
+            levelCount = Math.max(levelCount, levelOf[component] + 1);
+            Set<Integer> targets = new HashSet<>();
+            for (int source : endpointsOfComponent.get(component)) {
+                for (int i = dependentOffsets[source]; i < dependentOffsets[source + 1]; i++) {
+                    int to = componentOf[dependents[i]];
+                    if (to != component && targets.add(to)) {
+                        levelOf[to] = Math.max(levelOf[to], levelOf[component] + 1);
+                        if (--inDegree[to] == 0) {
+                            ready.add(to);
+                        }
+                    }
                 }
             }
         }
-        return dependents;
+
+        List<List<String>> result = new ArrayList<>();
+        for (int l = 0; l < levelCount; l++) {
+            result.add(new ArrayList<>());
+        }
+        for (int i = 0; i < endpointKeys.length; i++) {
+            result.get(levelOf[componentOf[i]]).add(endpointKeys[i]);
+        }
+        List<List<String>> frozen = new ArrayList<>();
+        for (List<String> level : result) {
+            frozen.add(Collections.unmodifiableList(level));
+        }
+        return Collections.unmodifiableList(frozen);
     }
 
     /**
      * Печать графа для отладки.
      */
     public void printGraph() {
-        if (edgesByTarget.isEmpty()) {
+        if (incomingEdges.length == 0) {
             System.out.println("🕸️  Dependency graph is empty.");
             return;
         }
         System.out.println("🕸️  Built dependency graph:");
-        for (List<DependencyEdge> edges : edgesByTarget.values()) {
-            for (DependencyEdge edge : edges) {
-                System.out.println("  - " + edge);
+        for (DependencyEdge edge : incomingEdges) {
+            System.out.println("  - " + edge);
+        }
+        System.out.println("  " + endpointKeys.length + " endpoints, " + incomingEdges.length + " edges, "
+            + levels.size() + " levels" + (hasCycles() ? ", cycles: " + cyclicComponents() : ""));
+    }
+
+    private List<List<String>> cyclicComponents() {
+        List<List<String>> cyclic = new ArrayList<>();
+        for (List<String> component : components) {
+            if (component.size() > 1) {
+                cyclic.add(component);
             }
         }
+        return cyclic;
     }
-}
\ No newline at end of file
+}
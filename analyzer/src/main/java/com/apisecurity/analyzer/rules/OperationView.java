@@ -0,0 +1,35 @@
+// com.apisecurity.analyzer.rules/OperationView.java
+package com.apisecurity.analyzer.rules;
+
+import com.apisecurity.analyzer.checks.OperationConcepts;
+import com.apisecurity.analyzer.checks.OperationFeatures;
+import com.apisecurity.shared.EndpointIndex;
+import com.apisecurity.shared.EndpointOperation;
+
+/**
+ * Всё, что видят условия правил об одной операции: сама операция, её понятия
+ * и структурные признаки. Создаётся один раз на операцию за проход движка.
+ */
+public final class OperationView {
+    private final EndpointOperation endpoint;
+    private final OperationConcepts concepts;
+    private final OperationFeatures features;
+    private String pathLower;
+
+    OperationView(EndpointIndex endpointIndex, EndpointOperation endpoint) {
+        this.endpoint = endpoint;
+        this.concepts = OperationConcepts.of(endpointIndex, endpoint);
+        this.features = OperationFeatures.of(endpointIndex, endpoint);
+    }
+
+    public EndpointOperation getEndpoint() { return endpoint; }
+    public OperationConcepts getConcepts() { return concepts; }
+    public OperationFeatures getFeatures() { return features; }
+
+    public String getPathLower() {
+        if (pathLower == null) {
+            pathLower = endpoint.getPath().toLowerCase();
+        }
+        return pathLower;
+    }
+}
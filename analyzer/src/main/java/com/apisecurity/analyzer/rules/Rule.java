@@ -0,0 +1,50 @@
+// com.apisecurity.analyzer.rules/Rule.java
+package com.apisecurity.analyzer.rules;
+
+import com.apisecurity.shared.ModuleResult;
+
+import java.util.Map;
+
+/**
+ * Статическое правило проверки: scope отбирает операции, которые проверка
+ * рассматривает, when — те из них, где проблема найдена.
+ */
+public final class Rule {
+    private final String id;
+    private final String check;
+    private final RuleCondition scope;
+    private final RuleCondition when;
+    private final String finding;
+    private final Map<String, String> details;
+
+    Rule(String id, String check, RuleCondition scope, RuleCondition when,
+         String finding, Map<String, String> details) {
+        this.id = id;
+        this.check = check;
+        this.scope = scope;
+        this.when = when;
+        this.finding = finding;
+        this.details = details;
+    }
+
+    public String getId() { return id; }
+    public String getCheck() { return check; }
+    public String getFinding() { return finding; }
+    public Map<String, String> getDetails() { return details; }
+
+    RuleCondition getScope() { return scope; }
+    RuleCondition getWhen() { return when; }
+
+    /**
+     * Добавляет находку и детали правила в результат проверки.
+     */
+    public void applyTo(ModuleResult result) {
+        result.addFinding(finding);
+        details.forEach(result::addDetail);
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
@@ -0,0 +1,259 @@
+// com.apisecurity.analyzer.rules/RuleCompiler.java
+package com.apisecurity.analyzer.rules;
+
+import com.apisecurity.analyzer.checks.Concept;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Компилирует JSON-правила в условия {@link RuleCondition}.
+ *
+ * Формат правила:
+ * <pre>
+ * {
+ *   "id": "ssrf-user-supplied-url",
+ *   "check": "ServerSideRequestForgery",
+ *   "scope": { "method": ["post", "put", "patch"] },
+ *   "when": { "all": [ { "concept": "SSRF_CONTEXT" }, { "not": { "concept": "SSRF_PROTECTION", "in": "searchText" } } ] },
+ *   "finding": "...",
+ *   "details": { "risk_level": "HIGH", "cwe": "CWE-918" }
+ * }
+ * </pre>
+ * Условия: all / any / not, method, pathMatches (regex), concept (+ in: path | text |
+ * searchText | anywhere), text (ключевые слова, + in), parameter (+ location),
+ * requestField, responseField, requestMediaType, responseMediaType, security (true/false),
+ * errorExample. Имена параметров, полей и ключевые слова сравниваются без учёта регистра.
+ * Одинаковые листья всех правил компилируются в один объект.
+ */
+public class RuleCompiler {
+    private static final Set<String> MODIFIERS = Set.of("in", "location");
+
+    private final Map<String, RuleCondition.Leaf> leaves = new LinkedHashMap<>();
+
+    public List<Rule> compile(JsonNode rules, String source) {
+        JsonNode list = rules != null && rules.has("rules") ? rules.get("rules") : rules;
+        if (list == null || !list.isArray()) {
+            throw new IllegalArgumentException(source + ": expected an array of rules or {\"rules\": [...]}");
+        }
+        List<Rule> compiled = new ArrayList<>();
+        for (JsonNode rule : list) {
+            compiled.add(compileRule(rule, source));
+        }
+        return compiled;
+    }
+
+    // Все различные листья, скомпилированные этим компилятором
+    Collection<RuleCondition.Leaf> getLeaves() {
+        return leaves.values();
+    }
+
+    private Rule compileRule(JsonNode rule, String source) {
+        String id = requiredText(rule, "id", source);
+        String where = source + " rule '" + id + "'";
+        String check = requiredText(rule, "check", where);
+        String finding = requiredText(rule, "finding", where);
+        if (!rule.has("when")) {
+            throw new IllegalArgumentException(where + ": missing 'when'");
+        }
+        RuleCondition scope = rule.has("scope") ? condition(rule.get("scope"), where) : RuleCondition.always();
+        RuleCondition when = condition(rule.get("when"), where);
+
+        Map<String, String> details = new LinkedHashMap<>();
+        JsonNode detailsNode = rule.get("details");
+        if (detailsNode != null) {
+            detailsNode.fields().forEachRemaining(e -> details.put(e.getKey(), e.getValue().asText()));
+        }
+        return new Rule(id, check, scope, when, finding, Collections.unmodifiableMap(details));
+    }
+
+    private RuleCondition condition(JsonNode node, String where) {
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException(where + ": condition must be an object, got " + node);
+        }
+        List<String> kinds = new ArrayList<>();
+        node.fieldNames().forEachRemaining(name -> {
+            if (!MODIFIERS.contains(name)) {
+                kinds.add(name);
+            }
+        });
+        if (kinds.size() != 1) {
+            throw new IllegalArgumentException(where + ": condition must have exactly one kind, got " + kinds);
+        }
+        String kind = kinds.get(0);
+        JsonNode value = node.get(kind);
+
+        switch (kind) {
+            case "all":
+            case "any": {
+                if (!value.isArray() || value.isEmpty()) {
+                    throw new IllegalArgumentException(where + ": '" + kind + "' needs a non-empty array");
+                }
+                RuleCondition[] children = new RuleCondition[value.size()];
+                for (int i = 0; i < value.size(); i++) {
+                    children[i] = condition(value.get(i), where);
+                }
+                return children.length == 1 ? children[0] : new RuleCondition.Junction("any".equals(kind), children);
+            }
+            case "not":
+                return new RuleCondition.Not(condition(value, where));
+            default:
+                return leaf(kind, value, node, where);
+        }
+    }
+
+    private RuleCondition leaf(String kind, JsonNode value, JsonNode node, String where) {
+        String key = node.toString();
+        RuleCondition.Leaf existing = leaves.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        String in = node.has("in") ? node.get("in").asText() : "anywhere";
+        RuleCondition.Leaf leaf;
+        switch (kind) {
+            case "method": {
+                Set<String> methods = lowerSet(value, kind, where);
+                leaf = new RuleCondition.Leaf(key, 1, view -> methods.contains(view.getEndpoint().getMethod()));
+                break;
+            }
+            case "pathMatches": {
+                Pattern pattern = Pattern.compile(value.asText(), Pattern.CASE_INSENSITIVE);
+                leaf = new RuleCondition.Leaf(key, 8, view -> pattern.matcher(view.getEndpoint().getPath()).find());
+                break;
+            }
+            case "concept": {
+                Concept concept = concept(value.asText(), where);
+                leaf = new RuleCondition.Leaf(key, 1, conceptPredicate(concept, in, where));
+                break;
+            }
+            case "text": {
+                List<String> keywords = new ArrayList<>(lowerSet(value, kind, where));
+                leaf = new RuleCondition.Leaf(key, 2 + keywords.size(), textPredicate(keywords, in, where));
+                break;
+            }
+            case "parameter": {
+                Set<String> names = lowerSet(value, kind, where);
+                String location = node.has("location") ? node.get("location").asText() : null;
+                leaf = new RuleCondition.Leaf(key, 2, view -> !Collections.disjoint(names, location != null
+                    ? view.getFeatures().getParameterNames(location)
+                    : view.getFeatures().getParameterNames()));
+                break;
+            }
+            case "requestField": {
+                Set<String> names = lowerSet(value, kind, where);
+                leaf = new RuleCondition.Leaf(key, 3, view -> anyLowerIn(view.getFeatures().getRequestFields(), names));
+                break;
+            }
+            case "responseField": {
+                Set<String> names = lowerSet(value, kind, where);
+                leaf = new RuleCondition.Leaf(key, 3, view -> anyLowerIn(view.getFeatures().getResponseFields(), names));
+                break;
+            }
+            case "requestMediaType": {
+                Set<String> types = lowerSet(value, kind, where);
+                leaf = new RuleCondition.Leaf(key, 2, view -> anyContains(view.getFeatures().getRequestMediaTypes(), types));
+                break;
+            }
+            case "responseMediaType": {
+                Set<String> types = lowerSet(value, kind, where);
+                leaf = new RuleCondition.Leaf(key, 2, view -> anyContains(view.getFeatures().getResponseMediaTypes(), types));
+                break;
+            }
+            case "security": {
+                if (!value.isBoolean()) {
+                    throw new IllegalArgumentException(where + ": 'security' must be true or false");
+                }
+                boolean required = value.asBoolean();
+                leaf = new RuleCondition.Leaf(key, 1, view -> view.getFeatures().hasSecurityRequirement() == required);
+                break;
+            }
+            case "errorExample": {
+                Set<String> keywords = lowerSet(value, kind, where);
+                leaf = new RuleCondition.Leaf(key, 4, view -> anyContains(view.getFeatures().getErrorExamples(), keywords));
+                break;
+            }
+            default:
+                throw new IllegalArgumentException(where + ": unknown condition '" + kind + "'");
+        }
+        leaves.put(key, leaf);
+        return leaf;
+    }
+
+    private Predicate<OperationView> conceptPredicate(Concept concept, String in, String where) {
+        switch (in) {
+            case "path": return view -> view.getConcepts().inPath(concept);
+            case "text": return view -> view.getConcepts().inText(concept);
+            case "searchText": return view -> view.getConcepts().inSearchText(concept);
+            case "anywhere": return view -> view.getConcepts().anywhere(concept);
+            default: throw new IllegalArgumentException(where + ": unknown scope in='" + in + "'");
+        }
+    }
+
+    private Predicate<OperationView> textPredicate(List<String> keywords, String in, String where) {
+        switch (in) {
+            case "path": return view -> containsAny(view.getPathLower(), keywords);
+            case "text": return view -> containsAny(view.getEndpoint().getTextLower(), keywords);
+            case "searchText": return view -> containsAny(view.getEndpoint().getSearchTextLower(), keywords);
+            case "anywhere": return view -> containsAny(view.getPathLower(), keywords)
+                || containsAny(view.getEndpoint().getSearchTextLower(), keywords);
+            default: throw new IllegalArgumentException(where + ": unknown scope in='" + in + "'");
+        }
+    }
+
+    private static Concept concept(String name, String where) {
+        try {
+            return Concept.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(where + ": unknown concept '" + name + "'");
+        }
+    }
+
+    private static Set<String> lowerSet(JsonNode value, String kind, String where) {
+        if (!value.isArray() || value.isEmpty()) {
+            throw new IllegalArgumentException(where + ": '" + kind + "' needs a non-empty array");
+        }
+        Set<String> set = new LinkedHashSet<>();
+        for (JsonNode item : value) {
+            set.add(item.asText().toLowerCase());
+        }
+        return set;
+    }
+
+    private static boolean containsAny(String text, Collection<String> keywords) {
+        for (String keyword : keywords) {
+            if (text.contains(keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean anyContains(Collection<String> values, Collection<String> keywords) {
+        for (String value : values) {
+            if (containsAny(value.toLowerCase(), keywords)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean anyLowerIn(Collection<String> values, Set<String> names) {
+        for (String value : values) {
+            if (names.contains(value.toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String requiredText(JsonNode node, String field, String where) {
+        JsonNode value = node.get(field);
+        if (value == null || value.asText().isBlank()) {
+            throw new IllegalArgumentException(where + ": missing '" + field + "'");
+        }
+        return value.asText();
+    }
+}
@@ -0,0 +1,163 @@
+// com.apisecurity.analyzer.rules/RuleCondition.java
+package com.apisecurity.analyzer.rules;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Predicate;
+
+/**
+ * Скомпилированное условие правила.
+ *
+ * Листья — предикаты над {@link OperationView} с оценкой стоимости; одинаковые листья
+ * разных правил компилируются в один объект и запоминают результат для текущей операции,
+ * поэтому общее условие считается один раз на операцию. В all/any порядок детей
+ * подбирается по наблюдаемой избирательности: раньше идут дешёвые условия, которые
+ * чаще всего решают исход (false для all, true для any). Порядок не влияет на результат.
+ *
+ * Не потокобезопасно: условия вычисляются только внутри прохода {@link RuleEngine}.
+ */
+public abstract class RuleCondition {
+
+    abstract boolean test(OperationView view);
+
+    // Оценка стоимости одного вычисления в условных единицах
+    abstract double cost();
+
+    static RuleCondition always() {
+        return new Leaf("true", 0, view -> true);
+    }
+
+    static final class Leaf extends RuleCondition {
+        private final String description;
+        private final double cost;
+        private final Predicate<OperationView> predicate;
+        private OperationView lastView;
+        private boolean lastResult;
+        private long evaluations;
+        private long memoHits;
+
+        Leaf(String description, double cost, Predicate<OperationView> predicate) {
+            this.description = description;
+            this.cost = cost;
+            this.predicate = predicate;
+        }
+
+        @Override
+        boolean test(OperationView view) {
+            if (view == lastView) {
+                memoHits++;
+                return lastResult;
+            }
+            evaluations++;
+            lastResult = predicate.test(view);
+            lastView = view;
+            return lastResult;
+        }
+
+        @Override
+        double cost() {
+            return cost;
+        }
+
+        long getEvaluations() { return evaluations; }
+        long getMemoHits() { return memoHits; }
+
+        void resetStats() {
+            evaluations = 0;
+            memoHits = 0;
+            lastView = null;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    static final class Not extends RuleCondition {
+        private final RuleCondition inner;
+
+        Not(RuleCondition inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        boolean test(OperationView view) {
+            return !inner.test(view);
+        }
+
+        @Override
+        double cost() {
+            return inner.cost();
+        }
+    }
+
+    /**
+     * all (decisive = false) и any (decisive = true): вычисление прекращается на первом
+     * ребёнке, вернувшем decisive. Каждые REORDER_INTERVAL вычислений дети сортируются
+     * по cost / P(decisive) — порядок, минимизирующий ожидаемую стоимость.
+     */
+    static final class Junction extends RuleCondition {
+        private static final int REORDER_INTERVAL = 32;
+
+        private final boolean decisive;
+        private final Child[] children;
+        private int sinceReorder;
+
+        Junction(boolean decisive, RuleCondition[] conditions) {
+            this.decisive = decisive;
+            this.children = new Child[conditions.length];
+            for (int i = 0; i < conditions.length; i++) {
+                children[i] = new Child(conditions[i]);
+            }
+            reorder();
+        }
+
+        @Override
+        boolean test(OperationView view) {
+            boolean result = !decisive;
+            for (Child child : children) {
+                child.evaluations++;
+                if (child.condition.test(view) == decisive) {
+                    child.decisions++;
+                    result = decisive;
+                    break;
+                }
+            }
+            if (++sinceReorder >= REORDER_INTERVAL) {
+                sinceReorder = 0;
+                reorder();
+            }
+            return result;
+        }
+
+        private void reorder() {
+            Arrays.sort(children, Comparator.comparingDouble(Child::rank));
+        }
+
+        @Override
+        double cost() {
+            double total = 0;
+            for (Child child : children) {
+                total += child.condition.cost();
+            }
+            return total;
+        }
+    }
+
+    private static final class Child {
+        final RuleCondition condition;
+        long evaluations;
+        long decisions;
+
+        Child(RuleCondition condition) {
+            this.condition = condition;
+        }
+
+        // Сглаженная вероятность решающего исхода (априорно 1/2)
+        double rank() {
+            double probability = (decisions + 1.0) / (evaluations + 2.0);
+            return (condition.cost() + 0.01) / probability;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+// com.apisecurity.analyzer.rules/RuleEngine.java
+package com.apisecurity.analyzer.rules;
+
+import com.apisecurity.shared.Configuration;
+import com.apisecurity.shared.EndpointIndex;
+import com.apisecurity.shared.EndpointOperation;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Движок статических правил проверок.
+ *
+ * Встроенные правила (rules/static-rules.json) и правила из файла конфигурации
+ * компилируются один раз и вычисляются одним проходом по EndpointIndex: для каждой
+ * операции — все правила подряд, общие листья условий считаются один раз.
+ * Новое правило добавляет вычисления, но не новый обход спецификации.
+ * Результат кэшируется на индекс, так что проверки, запущенные параллельно,
+ * читают один и тот же {@link RuleMatches}.
+ */
+public class RuleEngine {
+    private static final String BUILTIN_RULES = "/rules/static-rules.json";
+    private static final Map<String, RuleEngine> BY_RULES_PATH = new HashMap<>();
+
+    private final List<Rule> rules;
+    private final Collection<RuleCondition.Leaf> leaves;
+    private final Map<EndpointIndex, RuleMatches> matchesByIndex = new WeakHashMap<>();
+
+    private RuleEngine(List<Rule> rules, Collection<RuleCondition.Leaf> leaves) {
+        this.rules = Collections.unmodifiableList(rules);
+        this.leaves = leaves;
+    }
+
+    /**
+     * Движок для конфигурации: встроенные правила плюс staticRulesPath, если задан.
+     */
+    public static RuleEngine forConfiguration(Configuration config) {
+        String rulesPath = config != null && config.getStaticRulesPath() != null ? config.getStaticRulesPath() : "";
+        synchronized (BY_RULES_PATH) {
+            return BY_RULES_PATH.computeIfAbsent(rulesPath, RuleEngine::load);
+        }
+    }
+
+    private static RuleEngine load(String rulesPath) {
+        ObjectMapper mapper = new ObjectMapper();
+        RuleCompiler compiler = new RuleCompiler();
+        List<Rule> rules = new ArrayList<>();
+        try (InputStream in = RuleEngine.class.getResourceAsStream(BUILTIN_RULES)) {
+            if (in == null) {
+                throw new IllegalStateException("Built-in rules not found: " + BUILTIN_RULES);
+            }
+            rules.addAll(compiler.compile(mapper.readTree(in), BUILTIN_RULES));
+            if (!rulesPath.isEmpty()) {
+                rules.addAll(compiler.compile(mapper.readTree(Files.readAllBytes(Paths.get(rulesPath))), rulesPath));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read static rules: " + e.getMessage(), e);
+        }
+
+        Set<String> ids = new HashSet<>();
+        for (Rule rule : rules) {
+            if (!ids.add(rule.getId())) {
+                throw new IllegalArgumentException("Duplicate rule id: " + rule.getId());
+            }
+        }
+        return new RuleEngine(rules, new ArrayList<>(compiler.getLeaves()));
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Совпадения правил для индекса; первый вызов выполняет проход, остальные берут кэш.
+     */
+    public synchronized RuleMatches matches(EndpointIndex endpointIndex) {
+        return matchesByIndex.computeIfAbsent(endpointIndex, this::evaluate);
+    }
+
+    private RuleMatches evaluate(EndpointIndex endpointIndex) {
+        leaves.forEach(RuleCondition.Leaf::resetStats);
+        // Признаки операций извлекаются (или берутся из кэша) до замера: время — только правила
+        List<OperationView> views = new ArrayList<>(endpointIndex.size());
+        for (EndpointOperation endpoint : endpointIndex.getOperations()) {
+            views.add(new OperationView(endpointIndex, endpoint));
+        }
+        long start = System.nanoTime();
+
+        List<List<Rule>> inScope = new ArrayList<>(views.size());
+        List<List<Rule>> matched = new ArrayList<>(views.size());
+        for (OperationView view : views) {
+            List<Rule> scoped = new ArrayList<>();
+            List<Rule> hits = new ArrayList<>();
+            for (Rule rule : rules) {
+                if (rule.getScope().test(view)) {
+                    scoped.add(rule);
+                    if (rule.getWhen().test(view)) {
+                        hits.add(rule);
+                    }
+                }
+            }
+            inScope.add(scoped.isEmpty() ? Collections.emptyList() : scoped);
+            matched.add(hits.isEmpty() ? Collections.emptyList() : hits);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long evaluations = 0;
+        long memoHits = 0;
+        for (RuleCondition.Leaf leaf : leaves) {
+            evaluations += leaf.getEvaluations();
+            memoHits += leaf.getMemoHits();
+        }
+        return new RuleMatches(inScope, matched, rules.size(), evaluations, memoHits, elapsed);
+    }
+}
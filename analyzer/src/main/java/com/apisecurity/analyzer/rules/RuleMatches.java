@@ -0,0 +1,79 @@
+// com.apisecurity.analyzer.rules/RuleMatches.java
+package com.apisecurity.analyzer.rules;
+
+import com.apisecurity.shared.EndpointOperation;
+
+import java.util.*;
+
+/**
+ * Результат одного прохода {@link RuleEngine} по индексу эндпоинтов:
+ * для каждой операции — правила, в scope которых она попала, и сработавшие правила.
+ * Неизменяем после построения; читается проверками параллельно.
+ */
+public final class RuleMatches {
+    private final List<List<Rule>> inScope;
+    private final List<List<Rule>> matched;
+    private final int ruleCount;
+    private final long leafEvaluations;
+    private final long memoHits;
+    private final long elapsedNanos;
+    private final int matchCount;
+
+    RuleMatches(List<List<Rule>> inScope, List<List<Rule>> matched, int ruleCount,
+                long leafEvaluations, long memoHits, long elapsedNanos) {
+        this.inScope = inScope;
+        this.matched = matched;
+        this.ruleCount = ruleCount;
+        this.leafEvaluations = leafEvaluations;
+        this.memoHits = memoHits;
+        this.elapsedNanos = elapsedNanos;
+        this.matchCount = matched.stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * Рассматривает ли проверка операцию хотя бы по одному своему правилу.
+     */
+    public boolean isInScope(String check, EndpointOperation endpoint) {
+        for (Rule rule : inScope.get(endpoint.getIndex())) {
+            if (rule.getCheck().equals(check)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Сработавшие правила проверки для операции в порядке файла правил.
+     */
+    public List<Rule> getMatched(String check, EndpointOperation endpoint) {
+        List<Rule> result = null;
+        for (Rule rule : matched.get(endpoint.getIndex())) {
+            if (rule.getCheck().equals(check)) {
+                if (result == null) {
+                    result = new ArrayList<>();
+                }
+                result.add(rule);
+            }
+        }
+        return result != null ? result : Collections.emptyList();
+    }
+
+    public int getRuleCount() { return ruleCount; }
+    public int getOperationCount() { return matched.size(); }
+    public int getMatchCount() { return matchCount; }
+    public long getLeafEvaluations() { return leafEvaluations; }
+    public long getMemoHits() { return memoHits; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    // Пар (правило, операция) в секунду
+    public double getThroughput() {
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        return (double) ruleCount * getOperationCount() / seconds;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rules x %d operations in %.2f ms (%.0f rule evals/s), %d matches, %d predicate evals, %d shared",
+            ruleCount, getOperationCount(), elapsedNanos / 1e6, getThroughput(), matchCount, leafEvaluations, memoHits);
+    }
+}
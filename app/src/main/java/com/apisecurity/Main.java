@@ -5,6 +5,7 @@ import com.apisecurity.shared.Configuration;
 import com.apisecurity.shared.ContainerApi;
 
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 public class Main {
@@ -13,9 +14,9 @@ public class Main {
         System.out.println("================================\n");
         
         try {
-            // Загрузка спецификации OpenAPI
-            String openApiSpec = loadFile("openapi_s.json");
-            if (openApiSpec == null) {
+            // Спецификация OpenAPI читается потоково при запуске анализа
+            Path openApiSpec = Paths.get("openapi_s.json");
+            if (!Files.isRegularFile(openApiSpec)) {
                 System.err.println("❌ OpenAPI specification file 'openapi_s.json' not found");
                 return;
             }
@@ -6,11 +6,15 @@ import com.apisecurity.analyzer.AnalyzerModule;
 import com.apisecurity.ai.AIModule;
 import com.apisecurity.testing.TestingModule;
 import com.apisecurity.reportmaker.ReportMakerModule;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
+import java.io.File;
 import java.io.FileWriter;
+import java.nio.file.Path;
 import java.util.*;
 
 public class InputProcessor {
@@ -18,25 +22,57 @@ public class InputProcessor {
     
     public ContainerApi processInput(String openApiSpec, String configJson) throws Exception {
         System.out.println("🚀 Starting API Security Analysis...");
-        
+        return processInput(objectMapper.readTree(openApiSpec), Collections.emptyMap(), configJson);
+    }
+    
+    // Спецификация читается из файла потоково, без промежуточной строки
+    public ContainerApi processInput(Path openApiSpecFile, String configJson) throws Exception {
+        System.out.println("🚀 Starting API Security Analysis...");
+        StreamingSpecLoader.IngestedSpecification ingested = loadSpecification(openApiSpecFile);
+        return processInput(ingested.root, ingested.componentIndex, configJson);
+    }
+    
+    private ContainerApi processInput(JsonNode rootNode, Map<String, JsonNode> componentIndex,
+                                      String configJson) throws Exception {
         // Парсинг конфигурации
         Configuration config = parseConfiguration(configJson);
         ContainerApi container = new ContainerApi();
         container.setConfiguration(config);
         
         // Обработка OpenAPI спецификации
-        JsonNode fullSpec = resolveReferences(openApiSpec);
+        LazySpecView specView = null;
+        JsonNode fullSpec;
+        if (config.isLazyReferenceResolution()) {
+            specView = createSpecificationView(rootNode, componentIndex);
+            fullSpec = specView.getRoot();
+        } else {
+            fullSpec = resolveReferences(rootNode);
+        }
         container.setFullSpecification(fullSpec);
         
-        // Создание таблицы эндпоинтов
-        createAnalysisTable(fullSpec, container);
+        // Единственный обход "paths": индекс операций для всех модулей
+        EndpointIndex endpointIndex = EndpointIndex.fromSpec(fullSpec);
+        container.setEndpointIndex(endpointIndex);
         
-        // Сохранение полной спецификации
-        saveFullSpecification(fullSpec);
+        // Создание таблицы эндпоинтов
+        createAnalysisTable(endpointIndex, container);
+        
+        // Сохранение полной спецификации. Ленивое представление пишется из сырого
+        // дерева: сериализация корня развернула бы его целиком и оставила в памяти.
+        if (specView == null) {
+            saveFullSpecification(fullSpec);
+        } else {
+            saveFullSpecification(specView);
+        }
         
         // Запуск модулей
         startModules(config, container);
         
+        if (specView != null) {
+            System.out.println("🔍 Lazy specification view: " + specView.getResolvedReferenceCount()
+                + " $ref targets resolved, " + specView.getMaterializedNodeCount() + " nodes materialized");
+        }
+        
         System.out.println("✅ API Security Analysis completed!");
         return container;
     }
@@ -45,17 +81,35 @@ public class InputProcessor {
         return objectMapper.readValue(configJson, Configuration.class);
     }
     
-    private JsonNode resolveReferences(String openApiSpec) throws Exception {
+    private JsonNode resolveReferences(JsonNode rootNode) {
         System.out.println("🔍 Resolving $ref references...");
-        JsonNode rootNode = objectMapper.readTree(openApiSpec);
         ReferenceResolver resolver = new ReferenceResolver(objectMapper);
         return resolver.resolveReferences(rootNode);
     }
     
-    private void createAnalysisTable(JsonNode fullSpec, ContainerApi container) {
+    private StreamingSpecLoader.IngestedSpecification loadSpecification(Path file) throws Exception {
+        System.out.println("📥 Streaming OpenAPI specification from " + file + "...");
+        long startTime = System.nanoTime();
+        StreamingSpecLoader.IngestedSpecification ingested = new StreamingSpecLoader().load(file);
+        long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+        System.out.println("📥 Indexed " + ingested.pathIndex.size() + " paths and "
+            + ingested.componentIndex.size() + " components in " + elapsedMs + "ms"
+            + (ingested.rawSubtreeCount > 0
+                ? " (" + ingested.rawSubtreeCount + " large examples left in file, "
+                    + ingested.rawSubtreeBytes + " bytes)"
+                : ""));
+        return ingested;
+    }
+    
+    private LazySpecView createSpecificationView(JsonNode rootNode, Map<String, JsonNode> componentIndex) {
+        System.out.println("🔍 Creating lazy specification view ($ref resolved on demand)...");
+        return new LazySpecView(rootNode, componentIndex);
+    }
+    
+    private void createAnalysisTable(EndpointIndex endpointIndex, ContainerApi container) {
         System.out.println("📊 Creating analysis table...");
         AnalysisTableCreator tableCreator = new AnalysisTableCreator();
-        tableCreator.createTable(fullSpec, container);
+        tableCreator.createTable(endpointIndex, container);
     }
     
     private void saveFullSpecification(JsonNode fullSpec) throws Exception {
@@ -73,58 +127,84 @@ public class InputProcessor {
         System.out.println("📄 Full specification processed (" + fullSpecJson.length() + " characters)");
     }
     
+    private void saveFullSpecification(LazySpecView specView) throws Exception {
+        File file = new File("reports/full-specification.json");
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(file, JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+            specView.writeResolved(generator);
+        }
+        System.out.println("💾 Full specification saved: reports/full-specification.json");
+        System.out.println("📄 Full specification processed (" + file.length() + " bytes)");
+    }
+    
     private void startModules(Configuration config, ContainerApi container) {
-        List<Thread> threads = new ArrayList<>();
-        long startTime = System.currentTimeMillis();
+        TaskGraph pipeline = new TaskGraph();
+        List<String> moduleResults = new ArrayList<>();
         
         if (config.isValidatorEnabled()) {
-            threads.add(new Thread(() -> {
-                System.out.println("🔧 Starting Validator module...");
-                new ValidatorModule().process(container);
-            }));
+            pipeline.addStage("validator", List.of(PipelineArtifacts.SPECIFICATION),
+                List.of(PipelineArtifacts.VALIDATOR_RESULTS), () -> {
+                    System.out.println("🔧 Starting Validator module...");
+                    new ValidatorModule().process(container);
+                });
+            moduleResults.add(PipelineArtifacts.VALIDATOR_RESULTS);
         }
         
         if (config.isAnalyzerEnabled()) {
-            threads.add(new Thread(() -> {
-                System.out.println("🛡️ Starting Analyzer module...");
-                new AnalyzerModule().process(container);
-            }));
+            pipeline.addStage("analyzer", List.of(PipelineArtifacts.SPECIFICATION),
+                List.of(PipelineArtifacts.ANALYZER_RESULTS, PipelineArtifacts.ANALYZER_SESSION), () -> {
+                    System.out.println("🛡️ Starting Analyzer module...");
+                    new AnalyzerModule().process(container);
+                });
+            moduleResults.add(PipelineArtifacts.ANALYZER_RESULTS);
         }
         
         if (config.isAiEnabled()) {
-            threads.add(new Thread(() -> {
-                System.out.println("🤖 Starting AI module...");
-                new AIModule().process(container);
-            }));
+            pipeline.addStage("ai", List.of(PipelineArtifacts.SPECIFICATION),
+                List.of(PipelineArtifacts.AI_RESULTS), () -> {
+                    System.out.println("🤖 Starting AI module...");
+                    new AIModule().process(container);
+                });
+            moduleResults.add(PipelineArtifacts.AI_RESULTS);
         }
         
         if (config.isTestingEnabled()) {
-            threads.add(new Thread(() -> {
-                System.out.println("🧪 Starting Testing module...");
-                new TestingModule().process(container);
-            }));
+            // Тестирование переиспользует токен и собранные ID анализатора; без анализатора
+            // у артефакта нет производителя, и этап зависит только от спецификации
+            pipeline.addStage("testing", List.of(PipelineArtifacts.SPECIFICATION, PipelineArtifacts.ANALYZER_SESSION),
+                List.of(PipelineArtifacts.TESTING_RESULTS), () -> {
+                    System.out.println("🧪 Starting Testing module...");
+                    new TestingModule().process(container);
+                });
+            moduleResults.add(PipelineArtifacts.TESTING_RESULTS);
         }
         
-        // Запуск всех потоков
-        threads.forEach(Thread::start);
+        // Отчёты по спецификации строятся сразу, остальные — после модулей, от которых зависят
+        if (config.isReportmakerEnabled()) {
+            System.out.println("📄 Scheduling ReportMaker stages...");
+            new ReportMakerModule().addStages(pipeline, container, moduleResults);
+        }
         
-        // Ожидание завершения
-        threads.forEach(thread -> {
-            try {
-                thread.join();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                System.err.println("❌ Thread interrupted: " + e.getMessage());
-            }
-        });
+        TaskGraph.Timeline timeline = pipeline.run(config.getPipelineThreads());
+        printTimeline(timeline);
         
-        // Запуск reportmaker после всех модулей
-        if (config.isReportmakerEnabled()) {
-            System.out.println("📄 Starting ReportMaker module...");
-            new ReportMakerModule().process(container);
+        System.out.println("⏱️ Total execution time: " + timeline.getTotalMs() + "ms");
+    }
+    
+    private void printTimeline(TaskGraph.Timeline timeline) {
+        System.out.println("📈 Pipeline timeline:");
+        for (TaskGraph.StageTiming stage : timeline.getStages()) {
+            System.out.println(String.format("   %6dms → %6dms  %-28s %6dms%s",
+                stage.getStartMs(), stage.getEndMs(), stage.getName(), stage.getDurationMs(),
+                stage.isSkipped() ? "  ⏭️ skipped: " + stage.getError()
+                    : stage.isFailed() ? "  ❌ " + stage.getError() : ""));
         }
         
-        long endTime = System.currentTimeMillis();
-        System.out.println("⏱️ Total execution time: " + (endTime - startTime) + "ms");
+        StringBuilder path = new StringBuilder();
+        for (TaskGraph.StageTiming stage : timeline.getCriticalPath()) {
+            if (path.length() > 0) path.append(" → ");
+            path.append(stage.getName()).append(" (").append(stage.getDurationMs()).append("ms)");
+        }
+        System.out.println("🧭 Critical path: " + path);
     }
-}
\ No newline at end of file
+}
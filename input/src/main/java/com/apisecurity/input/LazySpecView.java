@@ -0,0 +1,374 @@
+package com.apisecurity.input;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ленивое представление OpenAPI-спецификации с разрешением $ref по требованию.
+ *
+ * Корень представления — обычный read-only {@link JsonNode}: объекты и массивы
+ * создаются только тогда, когда потребитель в них заходит, а $ref заменяется
+ * разрешённым поддеревом в момент первого обращения. Представление каждой цели
+ * $ref кэшируется и переиспользуется по ссылке.
+ *
+ * Ссылки внутри одной компоненты сильной связности графа $ref (рекурсивные и
+ * взаимно рекурсивные схемы) остаются обратными ссылками {"$ref": "..."}, поэтому
+ * представление всегда ацикличное и его можно сериализовать.
+ *
+ * Потокобезопасно: модули читают одно представление параллельно.
+ *
+ * Для сохранения спецификации в файл есть {@link #writeResolved(JsonGenerator)}:
+ * сериализация getRoot() развернула бы и закэшировала всё представление.
+ */
+public class LazySpecView {
+    private static final String ROOT_POINTER = "#";
+
+    private final JsonNode rawRoot;
+    private final Map<String, JsonNode> pointerIndex;
+    private final JsonNodeFactory nodeFactory = JsonNodeFactory.instance;
+
+    // pointer → представление цели $ref
+    private final Map<String, JsonNode> viewsByPointer = new ConcurrentHashMap<>();
+    // pointer → номер компоненты сильной связности в графе $ref
+    private final Map<String, Integer> componentByPointer = new ConcurrentHashMap<>();
+    private final AtomicLong materializedNodes = new AtomicLong();
+    private final JsonNode rootView;
+
+    public LazySpecView(JsonNode rawRoot) {
+        this(rawRoot, Collections.emptyMap());
+    }
+
+    /**
+     * @param pointerIndex заранее известные цели $ref (pointer → сырой узел);
+     *                     остальные pointer'ы ищутся обходом от корня
+     */
+    public LazySpecView(JsonNode rawRoot, Map<String, JsonNode> pointerIndex) {
+        this.rawRoot = rawRoot;
+        this.pointerIndex = pointerIndex;
+        this.rootView = view(rawRoot, ROOT_POINTER);
+    }
+
+    public JsonNode getRoot() {
+        return rootView;
+    }
+
+    public int getResolvedReferenceCount() {
+        return viewsByPointer.size();
+    }
+
+    public long getMaterializedNodeCount() {
+        return materializedNodes.get();
+    }
+
+    /**
+     * Пишет развёрнутую спецификацию прямо из сырого дерева и индекса компонент, не
+     * создавая представлений: память ограничена глубиной обхода, кэш представлений
+     * не растёт. Результат совпадает с сериализацией {@link #getRoot()}.
+     */
+    public void writeResolved(JsonGenerator generator) throws IOException {
+        writeResolved(generator, rawRoot, ROOT_POINTER);
+    }
+
+    private void writeResolved(JsonGenerator generator, JsonNode raw, String origin) throws IOException {
+        if (raw.isObject()) {
+            JsonNode ref = raw.get("$ref");
+            if (ref != null && ref.isTextual() && ref.asText().startsWith("#/")) {
+                writeReference(generator, raw, ref.asText(), origin);
+                return;
+            }
+            writeFields(generator, raw, origin);
+        } else if (raw.isArray()) {
+            generator.writeStartArray();
+            for (JsonNode element : raw) {
+                writeResolved(generator, element, origin);
+            }
+            generator.writeEndArray();
+        } else {
+            generator.writeTree(raw);
+        }
+    }
+
+    // Те же правила, что у viewOfReference
+    private void writeReference(JsonGenerator generator, JsonNode refNode, String pointer, String origin) throws IOException {
+        JsonNode target = null;
+        if (ROOT_POINTER.equals(origin) || !isSameComponent(origin, pointer)) {
+            target = locate(pointer);
+        }
+        if (target == null) {
+            generator.writeTree(refNode);
+            return;
+        }
+        if (refNode.size() == 1) {
+            writeResolved(generator, target, pointer);
+            return;
+        }
+        ObjectNode merged = nodeFactory.objectNode();
+        if (target.isObject()) {
+            merged.setAll((ObjectNode) target);
+        }
+        refNode.fields().forEachRemaining(entry -> {
+            if (!"$ref".equals(entry.getKey())) {
+                merged.set(entry.getKey(), entry.getValue());
+            }
+        });
+        writeFields(generator, merged, pointer);
+    }
+
+    private void writeFields(JsonGenerator generator, JsonNode object, String origin) throws IOException {
+        generator.writeStartObject();
+        Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            generator.writeFieldName(field.getKey());
+            writeResolved(generator, field.getValue(), origin);
+        }
+        generator.writeEndObject();
+    }
+
+    // --- ПОСТРОЕНИЕ ПРЕДСТАВЛЕНИЙ ---
+
+    private JsonNode view(JsonNode raw, String origin) {
+        if (raw.isObject()) {
+            JsonNode ref = raw.get("$ref");
+            if (ref != null && ref.isTextual() && ref.asText().startsWith("#/")) {
+                return viewOfReference(raw, ref.asText(), origin);
+            }
+            materializedNodes.incrementAndGet();
+            return new ObjectNode(nodeFactory, new LazyObjectChildren(raw, origin));
+        }
+        if (raw.isArray()) {
+            materializedNodes.incrementAndGet();
+            return new ArrayNode(nodeFactory, new LazyArrayChildren(raw, origin));
+        }
+        return raw;
+    }
+
+    private JsonNode viewOfReference(JsonNode refNode, String pointer, String origin) {
+        if (!ROOT_POINTER.equals(origin) && isSameComponent(origin, pointer)) {
+            // Цикл в графе $ref: оставляем обратную ссылку как есть
+            return refNode;
+        }
+
+        if (refNode.size() == 1) {
+            JsonNode resolved = viewOfPointer(pointer);
+            return resolved != null ? resolved : refNode;
+        }
+
+        // $ref с соседними полями: поверх цели кладём собственные поля узла
+        JsonNode target = locate(pointer);
+        if (target == null) {
+            return refNode;
+        }
+        ObjectNode merged = nodeFactory.objectNode();
+        if (target.isObject()) {
+            merged.setAll((ObjectNode) target);
+        }
+        refNode.fields().forEachRemaining(entry -> {
+            if (!"$ref".equals(entry.getKey())) {
+                merged.set(entry.getKey(), entry.getValue());
+            }
+        });
+        materializedNodes.incrementAndGet();
+        return new ObjectNode(nodeFactory, new LazyObjectChildren(merged, pointer));
+    }
+
+    private JsonNode viewOfPointer(String pointer) {
+        JsonNode cached = viewsByPointer.get(pointer);
+        if (cached != null) {
+            return cached;
+        }
+        JsonNode target = locate(pointer);
+        if (target == null) {
+            return null;
+        }
+        JsonNode created = view(target, pointer);
+        JsonNode existing = viewsByPointer.putIfAbsent(pointer, created);
+        return existing != null ? existing : created;
+    }
+
+    private JsonNode locate(String pointer) {
+        JsonNode indexed = pointerIndex.get(pointer);
+        return indexed != null ? indexed : ReferenceResolver.resolveReference(pointer, rawRoot);
+    }
+
+    // --- ГРАФ $ref: КОМПОНЕНТЫ СИЛЬНОЙ СВЯЗНОСТИ (Tarjan, по требованию) ---
+
+    private boolean isSameComponent(String from, String to) {
+        if (!componentByPointer.containsKey(from) || !componentByPointer.containsKey(to)) {
+            computeComponents(from);
+            computeComponents(to);
+        }
+        return componentByPointer.get(from).equals(componentByPointer.get(to));
+    }
+
+    private synchronized void computeComponents(String start) {
+        if (componentByPointer.containsKey(start)) {
+            return;
+        }
+        new TarjanRun().visit(start);
+    }
+
+    private final class TarjanRun {
+        private final Map<String, Integer> index = new HashMap<>();
+        private final Map<String, Integer> lowLink = new HashMap<>();
+        private final Deque<String> stack = new ArrayDeque<>();
+        private final Set<String> onStack = new HashSet<>();
+
+        void visit(String pointer) {
+            int idx = index.size();
+            index.put(pointer, idx);
+            lowLink.put(pointer, idx);
+            stack.push(pointer);
+            onStack.add(pointer);
+
+            for (String next : referencesOf(pointer)) {
+                if (componentByPointer.containsKey(next)) {
+                    continue; // уже в завершённой компоненте
+                }
+                if (!index.containsKey(next)) {
+                    visit(next);
+                    lowLink.put(pointer, Math.min(lowLink.get(pointer), lowLink.get(next)));
+                } else if (onStack.contains(next)) {
+                    lowLink.put(pointer, Math.min(lowLink.get(pointer), index.get(next)));
+                }
+            }
+
+            if (lowLink.get(pointer).equals(index.get(pointer))) {
+                int componentId = componentByPointer.size();
+                String member;
+                do {
+                    member = stack.pop();
+                    onStack.remove(member);
+                    componentByPointer.put(member, componentId);
+                } while (!member.equals(pointer));
+            }
+        }
+    }
+
+    private Set<String> referencesOf(String pointer) {
+        Set<String> refs = new LinkedHashSet<>();
+        JsonNode target = locate(pointer);
+        if (target != null) {
+            collectReferences(target, refs);
+        }
+        return refs;
+    }
+
+    private static void collectReferences(JsonNode node, Set<String> refs) {
+        if (node.isObject()) {
+            JsonNode ref = node.get("$ref");
+            if (ref != null && ref.isTextual() && ref.asText().startsWith("#/")) {
+                refs.add(ref.asText());
+            }
+        }
+        if (node.isContainerNode()) {
+            for (JsonNode child : node) {
+                collectReferences(child, refs);
+            }
+        }
+    }
+
+    // --- ЛЕНИВЫЕ КОЛЛЕКЦИИ ДЕТЕЙ ---
+
+    private final class LazyObjectChildren extends AbstractMap<String, JsonNode> {
+        private final JsonNode raw;
+        private final String origin;
+        private final Map<String, JsonNode> resolved = new ConcurrentHashMap<>();
+
+        LazyObjectChildren(JsonNode raw, String origin) {
+            this.raw = raw;
+            this.origin = origin;
+        }
+
+        @Override
+        public JsonNode get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            JsonNode cached = resolved.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            JsonNode rawChild = raw.get((String) key);
+            if (rawChild == null) {
+                return null;
+            }
+            JsonNode created = view(rawChild, origin);
+            JsonNode existing = resolved.putIfAbsent((String) key, created);
+            return existing != null ? existing : created;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && raw.has((String) key);
+        }
+
+        @Override
+        public int size() {
+            return raw.size();
+        }
+
+        @Override
+        public Set<Entry<String, JsonNode>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, JsonNode>> iterator() {
+                    Iterator<String> names = raw.fieldNames();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return names.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, JsonNode> next() {
+                            String name = names.next();
+                            return new SimpleImmutableEntry<>(name, get(name));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return raw.size();
+                }
+            };
+        }
+    }
+
+    private final class LazyArrayChildren extends AbstractList<JsonNode> {
+        private final JsonNode raw;
+        private final String origin;
+        private final AtomicReferenceArray<JsonNode> resolved;
+
+        LazyArrayChildren(JsonNode raw, String origin) {
+            this.raw = raw;
+            this.origin = origin;
+            this.resolved = new AtomicReferenceArray<>(raw.size());
+        }
+
+        @Override
+        public JsonNode get(int index) {
+            JsonNode cached = resolved.get(index);
+            if (cached != null) {
+                return cached;
+            }
+            JsonNode created = view(raw.get(index), origin);
+            return resolved.compareAndSet(index, null, created) ? created : resolved.get(index);
+        }
+
+        @Override
+        public int size() {
+            return raw.size();
+        }
+    }
+}
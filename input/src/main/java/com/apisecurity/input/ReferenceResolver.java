@@ -2,55 +2,185 @@ package com.apisecurity.input;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.util.*;
+
+/**
+ * Разрешает $ref-ссылки OpenAPI-спецификации.
+ *
+ * Каждый JSON pointer разрешается один раз и кэшируется; разрешённое поддерево
+ * переиспользуется по ссылке во всех местах, где на него ссылаются. Поддеревья без
+ * ссылок не копируются. Циклические ссылки не разворачиваются бесконечно, а
+ * остаются в виде обратной ссылки {"$ref": "..."}, которую потребитель может
+ * разрешить сам при необходимости.
+ */
 public class ReferenceResolver {
     private final ObjectMapper objectMapper;
-    
+
+    // pointer → разрешённое поддерево
+    private final Map<String, JsonNode> resolvedByPointer = new HashMap<>();
+    // pointer'ы, которые разрешаются прямо сейчас (для обнаружения циклов)
+    private final Set<String> inProgress = new HashSet<>();
+    private int cycleCount;
+
     public ReferenceResolver(ObjectMapper objectMapper) {
         this.objectMapper = objectMapper;
     }
-    
+
     public JsonNode resolveReferences(JsonNode rootNode) {
-        return resolveReferencesRecursive(rootNode, rootNode, "#");
+        long startTime = System.nanoTime();
+        resolvedByPointer.clear();
+        inProgress.clear();
+        cycleCount = 0;
+
+        JsonNode result = resolveReferencesRecursive(rootNode, rootNode, "#");
+
+        long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+        System.out.println("🔗 Resolved " + resolvedByPointer.size() + " $ref targets in " + elapsedMs + "ms"
+            + (cycleCount > 0 ? " (" + cycleCount + " cyclic references kept as back-references)" : ""));
+        System.out.println("🔗 Nodes: source=" + countNodes(rootNode)
+            + ", resolved unique=" + countUniqueNodes(result)
+            + ", resolved expanded=" + countExpandedNodes(result));
+        return result;
     }
-    
+
     private JsonNode resolveReferencesRecursive(JsonNode currentNode, JsonNode rootNode, String currentPath) {
         if (currentNode.isObject()) {
-            ObjectNode resultNode = objectMapper.createObjectNode();
-            currentNode.fields().forEachRemaining(entry -> {
-                String key = entry.getKey();
+            JsonNode ref = currentNode.get("$ref");
+            if (ref != null && ref.isTextual()) {
+                return resolveRefNode((ObjectNode) currentNode, ref.asText(), rootNode, currentPath);
+            }
+
+            // Копируем объект только если изменился хотя бы один потомок
+            ObjectNode resultNode = null;
+            Iterator<Map.Entry<String, JsonNode>> it = currentNode.fields();
+            int index = 0;
+            while (it.hasNext()) {
+                Map.Entry<String, JsonNode> entry = it.next();
                 JsonNode value = entry.getValue();
-                
-                if ("$ref".equals(key) && value.isTextual()) {
-                    String refPath = value.asText();
-                    if (refPath.startsWith("#/")) {
-                        JsonNode resolved = resolveReference(refPath, rootNode);
-                        if (resolved != null) {
-                            resultNode.setAll((ObjectNode) resolveReferencesRecursive(resolved, rootNode, refPath));
-                        }
-                    }
-                } else {
-                    resultNode.set(key, resolveReferencesRecursive(value, rootNode, currentPath + "/" + key));
+                JsonNode resolved = resolveChild(value, rootNode, currentPath + "/" + escapePointerSegment(entry.getKey()));
+                if (resultNode == null && resolved != value) {
+                    resultNode = copyFirstFields(currentNode, index);
+                }
+                if (resultNode != null) {
+                    resultNode.set(entry.getKey(), resolved);
                 }
-            });
-            return resultNode;
+                index++;
+            }
+            return resultNode != null ? resultNode : currentNode;
         } else if (currentNode.isArray()) {
-            var resultArray = objectMapper.createArrayNode();
-            for (JsonNode element : currentNode) {
-                resultArray.add(resolveReferencesRecursive(element, rootNode, currentPath));
+            ArrayNode resultArray = null;
+            for (int i = 0; i < currentNode.size(); i++) {
+                JsonNode element = currentNode.get(i);
+                JsonNode resolved = resolveReferencesRecursive(element, rootNode, currentPath + "/" + i);
+                if (resultArray == null && resolved != element) {
+                    resultArray = objectMapper.createArrayNode();
+                    for (int j = 0; j < i; j++) {
+                        resultArray.add(currentNode.get(j));
+                    }
+                }
+                if (resultArray != null) {
+                    resultArray.add(resolved);
+                }
             }
-            return resultArray;
+            return resultArray != null ? resultArray : currentNode;
         }
         return currentNode;
     }
-    
-    private JsonNode resolveReference(String refPath, JsonNode rootNode) {
+
+    // Именованные компоненты (#/components/<type>/<name>) — типичные цели $ref,
+    // поэтому при обходе дерева разрешаем их через общий кэш.
+    private JsonNode resolveChild(JsonNode value, JsonNode rootNode, String childPath) {
+        if (isComponentPointer(childPath)) {
+            JsonNode resolved = resolvePointer(childPath, rootNode);
+            if (resolved != null) {
+                return resolved;
+            }
+        }
+        return resolveReferencesRecursive(value, rootNode, childPath);
+    }
+
+    private JsonNode resolveRefNode(ObjectNode refNode, String refPath, JsonNode rootNode, String currentPath) {
+        JsonNode resolved = null;
+        if (refPath.startsWith("#/")) {
+            resolved = resolvePointer(refPath, rootNode);
+        }
+
+        boolean hasSiblings = refNode.size() > 1;
+        if (!hasSiblings) {
+            return resolved != null ? resolved : objectMapper.createObjectNode();
+        }
+
+        // $ref с соседними полями: поверх разрешённого объекта кладём собственные поля
+        ObjectNode merged = objectMapper.createObjectNode();
+        if (resolved != null && resolved.isObject()) {
+            merged.setAll((ObjectNode) resolved);
+        }
+        refNode.fields().forEachRemaining(entry -> {
+            if (!"$ref".equals(entry.getKey())) {
+                merged.set(entry.getKey(), resolveReferencesRecursive(entry.getValue(), rootNode,
+                    currentPath + "/" + escapePointerSegment(entry.getKey())));
+            }
+        });
+        return merged;
+    }
+
+    private JsonNode resolvePointer(String refPath, JsonNode rootNode) {
+        JsonNode cached = resolvedByPointer.get(refPath);
+        if (cached != null) {
+            return cached;
+        }
+
+        if (inProgress.contains(refPath)) {
+            // Цикл: оставляем ленивую обратную ссылку
+            cycleCount++;
+            ObjectNode backReference = objectMapper.createObjectNode();
+            backReference.put("$ref", refPath);
+            return backReference;
+        }
+
+        JsonNode target = resolveReference(refPath, rootNode);
+        if (target == null) {
+            return null;
+        }
+
+        inProgress.add(refPath);
+        try {
+            JsonNode resolved = resolveReferencesRecursive(target, rootNode, refPath);
+            resolvedByPointer.put(refPath, resolved);
+            return resolved;
+        } finally {
+            inProgress.remove(refPath);
+        }
+    }
+
+    private ObjectNode copyFirstFields(JsonNode source, int count) {
+        ObjectNode copy = objectMapper.createObjectNode();
+        Iterator<Map.Entry<String, JsonNode>> it = source.fields();
+        for (int i = 0; i < count && it.hasNext(); i++) {
+            Map.Entry<String, JsonNode> entry = it.next();
+            copy.set(entry.getKey(), entry.getValue());
+        }
+        return copy;
+    }
+
+    private static boolean isComponentPointer(String pointer) {
+        if (!pointer.startsWith("#/components/")) {
+            return false;
+        }
+        int typeEnd = pointer.indexOf('/', "#/components/".length());
+        return typeEnd > 0 && pointer.indexOf('/', typeEnd + 1) < 0;
+    }
+
+    static JsonNode resolveReference(String refPath, JsonNode rootNode) {
         String[] pathSegments = refPath.substring(2).split("/");
         JsonNode current = rootNode;
-        
+
         for (String segment : pathSegments) {
-            current = current.get(segment);
+            String key = unescapePointerSegment(segment);
+            current = current.isArray() && isIndex(key) ? current.get(Integer.parseInt(key)) : current.get(key);
             if (current == null) {
                 System.err.println("⚠️ Reference not found: " + refPath);
                 return null;
@@ -58,4 +188,66 @@ public class ReferenceResolver {
         }
         return current;
     }
-}
\ No newline at end of file
+
+    static String escapePointerSegment(String segment) {
+        if (segment.indexOf('~') < 0 && segment.indexOf('/') < 0) {
+            return segment;
+        }
+        return segment.replace("~", "~0").replace("/", "~1");
+    }
+
+    static String unescapePointerSegment(String segment) {
+        if (segment.indexOf('~') < 0) {
+            return segment;
+        }
+        return segment.replace("~1", "/").replace("~0", "~");
+    }
+
+    private static boolean isIndex(String segment) {
+        if (segment.isEmpty()) return false;
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    // --- СТАТИСТИКА ---
+
+    private static long countNodes(JsonNode node) {
+        long count = 1;
+        for (JsonNode child : node) {
+            count += countNodes(child);
+        }
+        return count;
+    }
+
+    private static long countUniqueNodes(JsonNode root) {
+        Set<JsonNode> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<JsonNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            JsonNode node = stack.pop();
+            if (!seen.add(node)) continue;
+            for (JsonNode child : node) {
+                stack.push(child);
+            }
+        }
+        return seen.size();
+    }
+
+    // Сколько узлов было бы при полном (безссылочном) разворачивании — как в full-specification.json
+    private static long countExpandedNodes(JsonNode root) {
+        return countExpandedNodes(root, new IdentityHashMap<>());
+    }
+
+    private static long countExpandedNodes(JsonNode node, Map<JsonNode, Long> memo) {
+        Long cached = memo.get(node);
+        if (cached != null) return cached;
+        long count = 1;
+        for (JsonNode child : node) {
+            count += countExpandedNodes(child, memo);
+        }
+        memo.put(node, count);
+        return count;
+    }
+}
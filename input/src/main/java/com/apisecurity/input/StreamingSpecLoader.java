@@ -0,0 +1,237 @@
+package com.apisecurity.input;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.databind.util.RawValue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Потоковая загрузка OpenAPI-спецификации из файла.
+ *
+ * Файл отображается в память и разбирается один раз через {@link JsonParser}, без
+ * промежуточной строки. За тот же проход строятся индекс путей и индекс компонент.
+ * Крупные значения example вне components не превращаются в узлы: парсер их
+ * пропускает, а в дереве остаётся диапазон байт отображённого файла, который
+ * читается только при сериализации. Это литералы — $ref в них не разрешается, —
+ * поэтому потребители, ищущие ссылки, ничего не теряют.
+ */
+public class StreamingSpecLoader {
+    public static final int DEFAULT_RAW_SUBTREE_THRESHOLD = 4096;
+
+    private static final String RAW_SUBTREE_FIELD = "example";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final JsonNodeFactory nodeFactory = JsonNodeFactory.instance;
+    private final int rawSubtreeThreshold;
+
+    public static class IngestedSpecification {
+        public final JsonNode root;
+        public final Map<String, JsonNode> pathIndex;       // "/accounts" → path item
+        public final Map<String, JsonNode> componentIndex;  // "#/components/schemas/X" → схема
+        public final int rawSubtreeCount;
+        public final long rawSubtreeBytes;
+
+        public IngestedSpecification(JsonNode root, Map<String, JsonNode> pathIndex,
+                                     Map<String, JsonNode> componentIndex,
+                                     int rawSubtreeCount, long rawSubtreeBytes) {
+            this.root = root;
+            this.pathIndex = pathIndex;
+            this.componentIndex = componentIndex;
+            this.rawSubtreeCount = rawSubtreeCount;
+            this.rawSubtreeBytes = rawSubtreeBytes;
+        }
+    }
+
+    public StreamingSpecLoader() {
+        this(DEFAULT_RAW_SUBTREE_THRESHOLD);
+    }
+
+    public StreamingSpecLoader(int rawSubtreeThreshold) {
+        this.rawSubtreeThreshold = rawSubtreeThreshold;
+    }
+
+    public IngestedSpecification load(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Specification is too large to map: " + size + " bytes");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        Pass pass = new Pass(buffer);
+        try (JsonParser parser = jsonFactory.createParser(new ByteBufferBackedInputStream(buffer.duplicate()))) {
+            JsonToken first = parser.nextToken();
+            if (first == null) {
+                throw new IOException("Empty specification file: " + file);
+            }
+            JsonNode root = pass.readValue(parser, first, new ArrayDeque<>());
+            return new IngestedSpecification(root, pass.pathIndex, pass.componentIndex,
+                pass.rawSubtreeCount, pass.rawSubtreeBytes);
+        }
+    }
+
+    // Состояние одного прохода по файлу
+    private final class Pass {
+        private final ByteBuffer buffer;
+        private final Map<String, JsonNode> pathIndex = new LinkedHashMap<>();
+        private final Map<String, JsonNode> componentIndex = new LinkedHashMap<>();
+        private int rawSubtreeCount;
+        private long rawSubtreeBytes;
+
+        Pass(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        // location — имена полей от корня до текущего значения
+        JsonNode readValue(JsonParser parser, JsonToken token, Deque<String> location) throws IOException {
+            switch (token) {
+                case START_OBJECT:
+                    return readObject(parser, location);
+                case START_ARRAY:
+                    return readArray(parser, location);
+                case VALUE_STRING:
+                    return nodeFactory.textNode(parser.getText());
+                case VALUE_NUMBER_INT:
+                    switch (parser.getNumberType()) {
+                        case INT: return nodeFactory.numberNode(parser.getIntValue());
+                        case LONG: return nodeFactory.numberNode(parser.getLongValue());
+                        default: return nodeFactory.numberNode(parser.getBigIntegerValue());
+                    }
+                case VALUE_NUMBER_FLOAT:
+                    return parser.getNumberType() == JsonParser.NumberType.BIG_DECIMAL
+                        ? nodeFactory.numberNode(parser.getDecimalValue())
+                        : nodeFactory.numberNode(parser.getDoubleValue());
+                case VALUE_TRUE:
+                    return nodeFactory.booleanNode(true);
+                case VALUE_FALSE:
+                    return nodeFactory.booleanNode(false);
+                case VALUE_NULL:
+                    return nodeFactory.nullNode();
+                default:
+                    throw new IOException("Unexpected token " + token + " at " + parser.getCurrentLocation());
+            }
+        }
+
+        private ObjectNode readObject(JsonParser parser, Deque<String> location) throws IOException {
+            ObjectNode node = nodeFactory.objectNode();
+            String parentField = location.peekLast();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+
+                // Свойство схемы с именем example и примеры в components (на них бывают $ref) — обычные узлы
+                JsonNode value;
+                if (RAW_SUBTREE_FIELD.equals(field) && !"properties".equals(parentField)
+                        && !"components".equals(location.peekFirst())
+                        && (valueToken == JsonToken.START_OBJECT || valueToken == JsonToken.START_ARRAY)) {
+                    value = readPossiblyRawSubtree(parser);
+                } else {
+                    location.addLast(field);
+                    value = readValue(parser, valueToken, location);
+                    location.removeLast();
+                }
+                node.set(field, value);
+                indexIfNeeded(location, field, value);
+            }
+            return node;
+        }
+
+        private ArrayNode readArray(JsonParser parser, Deque<String> location) throws IOException {
+            ArrayNode node = nodeFactory.arrayNode();
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                node.add(readValue(parser, token, location));
+            }
+            return node;
+        }
+
+        // Пропускаем поддерево, запоминая его байтовый диапазон; узлы строятся только для мелких
+        private JsonNode readPossiblyRawSubtree(JsonParser parser) throws IOException {
+            long start = parser.getTokenLocation().getByteOffset();
+            parser.skipChildren();
+            long end = parser.getCurrentLocation().getByteOffset();
+            int length = (int) (end - start);
+
+            if (length > rawSubtreeThreshold) {
+                rawSubtreeCount++;
+                rawSubtreeBytes += length;
+                return nodeFactory.rawValueNode(new RawValue(new MappedJsonSlice(buffer, (int) start, length)));
+            }
+
+            // Мелкий пример разбирается повторно из того же диапазона: это дешевле, чем строить узлы заранее для всех
+            ByteBuffer slice = buffer.duplicate();
+            slice.position((int) start).limit((int) end);
+            try (JsonParser sliceParser = jsonFactory.createParser(new ByteBufferBackedInputStream(slice))) {
+                return readValue(sliceParser, sliceParser.nextToken(), new ArrayDeque<>());
+            }
+        }
+
+        private void indexIfNeeded(Deque<String> location, String field, JsonNode value) {
+            if (location.size() == 1 && "paths".equals(location.peekFirst())) {
+                pathIndex.put(field, value);
+            } else if (location.size() == 2 && "components".equals(location.peekFirst())) {
+                String type = location.peekLast();
+                componentIndex.put("#/components/" + ReferenceResolver.escapePointerSegment(type)
+                    + "/" + ReferenceResolver.escapePointerSegment(field), value);
+            }
+        }
+    }
+
+    /**
+     * JSON-поддерево, оставленное в отображённом файле. Текст читается только при
+     * сериализации и нигде не хранится.
+     */
+    static final class MappedJsonSlice implements JsonSerializable {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int length;
+
+        MappedJsonSlice(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        String text() {
+            byte[] bytes = new byte[length];
+            buffer.duplicate().position(offset).get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeRawValue(text());
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator gen, SerializerProvider serializers,
+                                      TypeSerializer typeSer) throws IOException {
+            serialize(gen, serializers);
+        }
+
+        @Override
+        public String toString() {
+            return text();
+        }
+    }
+}
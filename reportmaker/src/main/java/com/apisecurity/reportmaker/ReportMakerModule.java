@@ -3,7 +3,11 @@ package com.apisecurity.reportmaker;
 import com.apisecurity.shared.ContainerApi;
 import com.apisecurity.shared.Configuration;
 import com.apisecurity.shared.EndpointAnalysis;
+import com.apisecurity.shared.EndpointIndex;
+import com.apisecurity.shared.EndpointOperation;
 import com.apisecurity.shared.ModuleResult;
+import com.apisecurity.shared.PipelineArtifacts;
+import com.apisecurity.shared.TaskGraph;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.JsonNode; 
@@ -49,6 +53,26 @@ public class ReportMakerModule {
         System.out.println("📁 Reports saved to: ./reports/");
     }
     
+    /**
+     * Регистрирует отчёты отдельными этапами конвейера. Отчёты по спецификации
+     * зависят только от неё и строятся параллельно с модулями анализа; остальные
+     * ждут результатов модулей, перечисленных в moduleResults.
+     */
+    public void addStages(TaskGraph graph, ContainerApi container, Collection<String> moduleResults) {
+        List<String> specInputs = List.of(PipelineArtifacts.SPECIFICATION, PipelineArtifacts.REPORTS_DIRECTORY);
+        List<String> resultInputs = new ArrayList<>(moduleResults);
+        resultInputs.add(PipelineArtifacts.REPORTS_DIRECTORY);
+        
+        graph.addStage("reportmaker:directory", List.of(), List.of(PipelineArtifacts.REPORTS_DIRECTORY),
+            this::createReportsDirectory);
+        graph.addStage("reportmaker:specification", specInputs, List.of(),
+            () -> generateSpecificationReport(container));
+        graph.addStage("reportmaker:html", resultInputs, List.of(), () -> generateHTMLReport(container));
+        graph.addStage("reportmaker:json", resultInputs, List.of(), () -> generateJSONReport(container));
+        graph.addStage("reportmaker:csv", resultInputs, List.of(), () -> generateCSVReport(container));
+        graph.addStage("reportmaker:summary", resultInputs, List.of(), () -> generateSummaryReport(container));
+    }
+    
     private void createReportsDirectory() {
         try {
             Files.createDirectories(Paths.get("reports"));
@@ -121,15 +145,22 @@ public class ReportMakerModule {
             ObjectMapper objectMapper = new ObjectMapper();
             objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
             
-            // Сохраняем полную спецификацию
-            objectMapper.writeValue(new File("reports/full-specification.json"), fullSpec);
+            // Сохраняем полную спецификацию. Ленивое представление InputProcessor уже
+            // записал из сырого дерева: сериализация здесь развернула бы его целиком
+            boolean lazy = container.getConfiguration() != null
+                && container.getConfiguration().isLazyReferenceResolution();
+            if (!lazy) {
+                objectMapper.writeValue(new File("reports/full-specification.json"), fullSpec);
+            }
             
             // Сохраняем упрощенную версию (только основные поля)
-            Map<String, Object> simplifiedSpec = createSimplifiedSpecification(fullSpec);
+            Map<String, Object> simplifiedSpec = createSimplifiedSpecification(fullSpec, container.getEndpointIndex());
             objectMapper.writeValue(new File("reports/simplified-specification.json"), simplifiedSpec);
             
             System.out.println("  ✅ Specification reports generated:");
-            System.out.println("     - reports/full-specification.json");
+            if (!lazy) {
+                System.out.println("     - reports/full-specification.json");
+            }
             System.out.println("     - reports/simplified-specification.json");
             
         } catch (IOException e) {
@@ -137,7 +168,7 @@ public class ReportMakerModule {
         }
     }
 
-    private Map<String, Object> createSimplifiedSpecification(JsonNode fullSpec) {
+    private Map<String, Object> createSimplifiedSpecification(JsonNode fullSpec, EndpointIndex endpointIndex) {
         Map<String, Object> simplified = new HashMap<>();
         
         // Основная информация
@@ -150,24 +181,20 @@ public class ReportMakerModule {
         
         // Статистика по эндпоинтам
         if (fullSpec.has("paths")) {
-            JsonNode paths = fullSpec.get("paths");
             Map<String, Object> pathsSummary = new HashMap<>();
             
-            paths.fieldNames().forEachRemaining(path -> {
-                JsonNode pathItem = paths.get(path);
+            for (String path : endpointIndex.getPaths()) {
                 List<String> methods = new ArrayList<>();
-                
-                pathItem.fieldNames().forEachRemaining(method -> {
-                    if (isHttpMethod(method)) {
-                        methods.add(method.toUpperCase());
+                for (EndpointOperation endpoint : endpointIndex.getByPath(path)) {
+                    if (isHttpMethod(endpoint.getMethod())) {
+                        methods.add(endpoint.getMethod().toUpperCase());
                     }
-                });
-                
+                }
                 pathsSummary.put(path, methods);
-            });
+            }
             
             simplified.put("paths", pathsSummary);
-            simplified.put("totalEndpoints", countEndpoints(paths));
+            simplified.put("totalEndpoints", countEndpoints(endpointIndex));
         }
         
         // Компоненты (только названия)
@@ -186,16 +213,11 @@ public class ReportMakerModule {
         return simplified;
     }
 
-    private int countEndpoints(JsonNode paths) {
+    private int countEndpoints(EndpointIndex endpointIndex) {
         int count = 0;
-        for (Iterator<String> it = paths.fieldNames(); it.hasNext(); ) {
-            String path = it.next();
-            JsonNode pathItem = paths.get(path);
-            for (Iterator<String> methodIt = pathItem.fieldNames(); methodIt.hasNext(); ) {
-                String method = methodIt.next();
-                if (isHttpMethod(method)) {
-                    count++;
-                }
+        for (EndpointOperation endpoint : endpointIndex.getOperations()) {
+            if (isHttpMethod(endpoint.getMethod())) {
+                count++;
             }
         }
         return count;
@@ -1,5 +1,8 @@
 package com.apisecurity.shared;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class Configuration {
     private boolean validatorEnabled = true;
     private boolean analyzerEnabled = true;
@@ -7,6 +10,27 @@ public class Configuration {
     private boolean testingEnabled = true;
     private boolean reportmakerEnabled = true;
     private OpenAIConfig aiConfig = new OpenAIConfig();
+    // Разрешать $ref лениво, по мере обращения модулей к спецификации. Выключено по умолчанию:
+    // часть модулей обходит спецификацию целиком (spec.toString(), фрагменты для AI), и тогда
+    // ленивое представление разворачивается полностью и держит больше памяти, чем обычное дерево
+    private boolean lazyReferenceResolution = false;
+    // Число потоков для параллельного запуска проверок анализатора
+    private int analyzerThreads = 4;
+    // Число потоков для независимых этапов конвейера (модули и отчёты)
+    private int pipelineThreads = 4;
+    // Сжимать журнал динамических запросов (reports/dynamic-requests.jsonl.gz)
+    private boolean requestJournalCompressed = false;
+    // Запись и воспроизведение динамических запросов: off | record | replay
+    private String cassetteMode = "off";
+    private String cassettePath = "cassettes/sandbox";
+    // Общий кэш ответов на GET/HEAD для анализатора и тестирования
+    private boolean responseCacheEnabled = true;
+    // Сбор реальных значений параметров обходом графа зависимостей: сколько значений
+    // хранить на параметр (0 — обход выключен) и отдельные лимиты для параметров
+    private int crawlMaxValuesPerParameter = 20;
+    private Map<String, Integer> crawlParameterLimits = new HashMap<>();
+    // Дополнительные статические правила проверок (JSON) поверх встроенных
+    private String staticRulesPath;
     
     // Жёстко заданные параметры для analyzer
     private String analyzerBaseUrl = "https://sbank.open.bankingapi.ru";
@@ -31,6 +55,36 @@ public class Configuration {
     public OpenAIConfig getAiConfig() { return aiConfig; }
     public void setAiConfig(OpenAIConfig aiConfig) { this.aiConfig = aiConfig; }
 
+    public boolean isLazyReferenceResolution() { return lazyReferenceResolution; }
+    public void setLazyReferenceResolution(boolean lazyReferenceResolution) { this.lazyReferenceResolution = lazyReferenceResolution; }
+
+    public int getAnalyzerThreads() { return analyzerThreads; }
+    public void setAnalyzerThreads(int analyzerThreads) { this.analyzerThreads = analyzerThreads; }
+
+    public int getPipelineThreads() { return pipelineThreads; }
+    public void setPipelineThreads(int pipelineThreads) { this.pipelineThreads = pipelineThreads; }
+
+    public boolean isRequestJournalCompressed() { return requestJournalCompressed; }
+    public void setRequestJournalCompressed(boolean requestJournalCompressed) { this.requestJournalCompressed = requestJournalCompressed; }
+
+    public String getCassetteMode() { return cassetteMode; }
+    public void setCassetteMode(String cassetteMode) { this.cassetteMode = cassetteMode; }
+
+    public String getCassettePath() { return cassettePath; }
+    public void setCassettePath(String cassettePath) { this.cassettePath = cassettePath; }
+
+    public boolean isResponseCacheEnabled() { return responseCacheEnabled; }
+    public void setResponseCacheEnabled(boolean responseCacheEnabled) { this.responseCacheEnabled = responseCacheEnabled; }
+
+    public int getCrawlMaxValuesPerParameter() { return crawlMaxValuesPerParameter; }
+    public void setCrawlMaxValuesPerParameter(int crawlMaxValuesPerParameter) { this.crawlMaxValuesPerParameter = crawlMaxValuesPerParameter; }
+
+    public Map<String, Integer> getCrawlParameterLimits() { return crawlParameterLimits; }
+    public void setCrawlParameterLimits(Map<String, Integer> crawlParameterLimits) { this.crawlParameterLimits = crawlParameterLimits; }
+
+    public String getStaticRulesPath() { return staticRulesPath; }
+    public void setStaticRulesPath(String staticRulesPath) { this.staticRulesPath = staticRulesPath; }
+
     public String getAnalyzerClientId() { return analyzerClientId; }
     public String getAnalyzerBaseUrl() { return analyzerBaseUrl; }
     public String getAnalyzerClientSecret() { return analyzerClientSecret; }
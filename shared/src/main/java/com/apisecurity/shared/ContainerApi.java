@@ -2,30 +2,76 @@ package com.apisecurity.shared;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Общее состояние анализа. Модули работают параллельно, поэтому все коллекции
+ * потокобезопасны, а строки таблицы анализа индексируются по "METHOD /path".
+ */
 public class ContainerApi {
     private JsonNode fullSpecification;
-    private Map<String, ModuleResult> validatorResults = new HashMap<>();
-    private Map<String, ModuleResult> analyzerResults = new HashMap<>();
-    private Map<String, ModuleResult> aiResults = new HashMap<>();
-    private Map<String, ModuleResult> testingResults = new HashMap<>();
-    private Map<String, List<String>> recommendations = new HashMap<>();
-    private List<EndpointAnalysis> analysisTable = new ArrayList<>();
+    private EndpointIndex endpointIndex;
+    private Map<String, ModuleResult> validatorResults = new ConcurrentHashMap<>();
+    private Map<String, ModuleResult> analyzerResults = new ConcurrentHashMap<>();
+    private Map<String, ModuleResult> aiResults = new ConcurrentHashMap<>();
+    private Map<String, ModuleResult> testingResults = new ConcurrentHashMap<>();
+    private Map<String, List<String>> recommendations = new ConcurrentHashMap<>();
+    private final List<EndpointAnalysis> analysisTable = new CopyOnWriteArrayList<>();
+    private final Map<String, EndpointAnalysis> analysisByEndpoint = new ConcurrentHashMap<>();
     private Configuration configuration;
-    private Map<String, Object> discoveredParameterValues = new HashMap<>(); // <-- НОВОЕ
+    private Map<String, Object> discoveredParameterValues = new ConcurrentHashMap<>(); // <-- НОВОЕ
     private String baseUrl;
+    private volatile String analyzerAccessToken;
     public JsonNode getFullSpecification() { return fullSpecification; }
     public void setFullSpecification(JsonNode fullSpecification) { this.fullSpecification = fullSpecification; }
     
+    // Индекс строится в InputProcessor; если его не задали, строим по спецификации при первом обращении
+    public synchronized EndpointIndex getEndpointIndex() {
+        if (endpointIndex == null) {
+            endpointIndex = EndpointIndex.fromSpec(fullSpecification);
+        }
+        return endpointIndex;
+    }
+    public synchronized void setEndpointIndex(EndpointIndex endpointIndex) { this.endpointIndex = endpointIndex; }
+    
     public Map<String, ModuleResult> getValidatorResults() { return validatorResults; }
     public Map<String, ModuleResult> getAnalyzerResults() { return analyzerResults; }
     public Map<String, ModuleResult> getAiResults() { return aiResults; }
     public Map<String, ModuleResult> getTestingResults() { return testingResults; }
     public Map<String, List<String>> getRecommendations() { return recommendations; }
     
-    public List<EndpointAnalysis> getAnalysisTable() { return analysisTable; }
-    public void addEndpointAnalysis(EndpointAnalysis endpointAnalysis) {
-        this.analysisTable.add(endpointAnalysis);
+    public List<EndpointAnalysis> getAnalysisTable() { return Collections.unmodifiableList(analysisTable); }
+    
+    // Добавляет строку, если эндпоинта ещё нет; возвращает строку, которая хранится в таблице
+    public EndpointAnalysis addEndpointAnalysis(EndpointAnalysis endpointAnalysis) {
+        EndpointAnalysis existing = analysisByEndpoint.get(endpointAnalysis.getEndpointName());
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (analysisTable) {
+            existing = analysisByEndpoint.putIfAbsent(endpointAnalysis.getEndpointName(), endpointAnalysis);
+            if (existing != null) {
+                return existing;
+            }
+            analysisTable.add(endpointAnalysis);
+            return endpointAnalysis;
+        }
+    }
+    
+    // key: "GET /accounts"
+    public EndpointAnalysis findEndpointAnalysis(String endpointName) {
+        return analysisByEndpoint.get(endpointName);
+    }
+    
+    public EndpointAnalysis findOrCreateAnalysis(String endpointName) {
+        EndpointAnalysis existing = analysisByEndpoint.get(endpointName);
+        if (existing != null) {
+            return existing;
+        }
+        EndpointAnalysis created = new EndpointAnalysis();
+        created.setEndpointName(endpointName);
+        return addEndpointAnalysis(created);
     }
     
     public void addValidatorResult(String endpoint, ModuleResult result) {
@@ -45,7 +91,7 @@ public class ContainerApi {
     }
     
     public void addRecommendation(String endpoint, String recommendation) {
-        this.recommendations.computeIfAbsent(endpoint, k -> new ArrayList<>()).add(recommendation);
+        this.recommendations.computeIfAbsent(endpoint, k -> new CopyOnWriteArrayList<>()).add(recommendation);
     }
 
     public Configuration getConfiguration() { return configuration; }
@@ -59,8 +105,12 @@ public class ContainerApi {
     }
 
     public void setDiscoveredParameterValues(Map<String, Object> discoveredParameterValues) {
-        this.discoveredParameterValues = discoveredParameterValues;
+        this.discoveredParameterValues = new ConcurrentHashMap<>(discoveredParameterValues);
     }
+    // Токен основной личности анализатора; null, если анализатор его не получил
+    public String getAnalyzerAccessToken() { return analyzerAccessToken; }
+    public void setAnalyzerAccessToken(String analyzerAccessToken) { this.analyzerAccessToken = analyzerAccessToken; }
+
     // ✅ ДОБАВЛЕНО: методы для baseUrl
     public String getAnalyzerBaseUrl() {
         return this.baseUrl.trim().replaceAll("/+$", "");
@@ -71,4 +121,37 @@ public class ContainerApi {
             this.baseUrl = baseUrl.trim();
         }
     }
+    
+    /**
+     * Рабочая копия для одной проверки анализатора: спецификация, индекс, конфигурация
+     * и результаты остальных модулей общие, а результаты анализатора и столбец analyzer
+     * таблицы пишутся в собственные коллекции. Копии сливаются обратно через
+     * {@link #mergeAnalyzerResults} в порядке объявления проверок, поэтому итог не зависит
+     * от того, какая проверка закончилась первой.
+     */
+    public ContainerApi fork() {
+        ContainerApi fork = new ContainerApi();
+        fork.fullSpecification = fullSpecification;
+        fork.endpointIndex = getEndpointIndex();
+        fork.configuration = configuration;
+        fork.baseUrl = baseUrl;
+        fork.discoveredParameterValues = discoveredParameterValues;
+        fork.validatorResults = validatorResults;
+        fork.aiResults = aiResults;
+        fork.testingResults = testingResults;
+        fork.recommendations = recommendations;
+        fork.analyzerResults = Collections.synchronizedMap(new LinkedHashMap<>());
+        return fork;
+    }
+    
+    public void mergeAnalyzerResults(ContainerApi fork) {
+        synchronized (fork.analyzerResults) {
+            analyzerResults.putAll(fork.analyzerResults);
+        }
+        for (EndpointAnalysis row : fork.analysisTable) {
+            if (row.getAnalyzer() != null) {
+                findOrCreateAnalysis(row.getEndpointName()).setAnalyzer(row.getAnalyzer());
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,102 @@
+package com.apisecurity.shared;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.*;
+
+/**
+ * Индекс всех операций спецификации, построенный одним обходом "paths".
+ * Строится один раз в InputProcessor и используется всеми модулями вместо
+ * собственного обхода спецификации. Неизменяем, поэтому безопасен для
+ * параллельного чтения.
+ */
+public class EndpointIndex {
+    private static final Set<String> HTTP_METHODS = Set.of(
+        "get", "post", "put", "delete", "patch", "head", "options", "trace"
+    );
+
+    private final List<EndpointOperation> operations;
+    private final Map<String, EndpointOperation> byKey;
+    private final Map<String, List<EndpointOperation>> byPath;
+    private final JsonNode globalSecurity;
+
+    private EndpointIndex(List<EndpointOperation> operations, JsonNode globalSecurity) {
+        this.operations = Collections.unmodifiableList(operations);
+        this.globalSecurity = globalSecurity;
+        Map<String, EndpointOperation> keys = new HashMap<>();
+        Map<String, List<EndpointOperation>> paths = new LinkedHashMap<>();
+        for (EndpointOperation op : operations) {
+            keys.put(op.getKey(), op);
+            paths.computeIfAbsent(op.getPath(), p -> new ArrayList<>()).add(op);
+        }
+        paths.replaceAll((p, ops) -> Collections.unmodifiableList(ops));
+        this.byKey = keys;
+        this.byPath = Collections.unmodifiableMap(paths);
+    }
+
+    public static EndpointIndex fromSpec(JsonNode spec) {
+        List<EndpointOperation> operations = new ArrayList<>();
+        JsonNode paths = spec != null ? spec.get("paths") : null;
+        JsonNode globalSecurity = spec != null ? spec.get("security") : null;
+        if (paths == null || !paths.isObject()) {
+            return new EndpointIndex(operations, globalSecurity);
+        }
+
+        Iterator<Map.Entry<String, JsonNode>> pathIt = paths.fields();
+        while (pathIt.hasNext()) {
+            Map.Entry<String, JsonNode> pathEntry = pathIt.next();
+            String path = pathEntry.getKey();
+            JsonNode pathItem = pathEntry.getValue();
+            if (!pathItem.isObject()) continue;
+
+            Iterator<Map.Entry<String, JsonNode>> methodIt = pathItem.fields();
+            while (methodIt.hasNext()) {
+                Map.Entry<String, JsonNode> methodEntry = methodIt.next();
+                String method = methodEntry.getKey().toLowerCase();
+                if (!isHttpMethod(method) || !methodEntry.getValue().isObject()) continue;
+
+                operations.add(new EndpointOperation(operations.size(), method, path, methodEntry.getValue()));
+            }
+        }
+        return new EndpointIndex(operations, globalSecurity);
+    }
+
+    public static boolean isHttpMethod(String method) {
+        return HTTP_METHODS.contains(method);
+    }
+
+    // Операции в порядке спецификации
+    public List<EndpointOperation> getOperations() {
+        return operations;
+    }
+
+    // key: "GET /accounts"
+    public EndpointOperation get(String key) {
+        return byKey.get(key);
+    }
+
+    public EndpointOperation get(String method, String path) {
+        return byKey.get(method.toUpperCase() + " " + path);
+    }
+
+    public List<EndpointOperation> getByPath(String path) {
+        return byPath.getOrDefault(path, Collections.emptyList());
+    }
+
+    public Set<String> getPaths() {
+        return byPath.keySet();
+    }
+
+    // Корневой "security" спецификации; действует для операций без собственного
+    public JsonNode getGlobalSecurity() {
+        return globalSecurity;
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+}
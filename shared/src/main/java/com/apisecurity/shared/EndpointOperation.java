@@ -0,0 +1,63 @@
+package com.apisecurity.shared;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Одна операция OpenAPI (метод + путь) из {@link EndpointIndex}.
+ * Неизменяема; узлы спецификации отдаются как есть, без копирования.
+ */
+public class EndpointOperation {
+    private final int index;
+    private final String method;        // в нижнем регистре: "get"
+    private final String path;
+    private final String key;           // "GET /accounts"
+    private final JsonNode operation;
+    private final JsonNode parameters;
+    private final JsonNode requestBody;
+    private final JsonNode responses;
+    private final JsonNode security;
+    private final String operationId;
+    private final String summaryLower;
+    private final String descriptionLower;
+    private final String textLower;       // summary + description
+    private final String searchTextLower; // summary + description + operationId
+
+    EndpointOperation(int index, String method, String path, JsonNode operation) {
+        this.index = index;
+        this.method = method;
+        this.path = path;
+        this.key = method.toUpperCase() + " " + path;
+        this.operation = operation;
+        this.parameters = operation.get("parameters");
+        this.requestBody = operation.get("requestBody");
+        this.responses = operation.get("responses");
+        this.security = operation.get("security");
+        this.operationId = operation.has("operationId") ? operation.get("operationId").asText() : null;
+        this.summaryLower = operation.has("summary") ? operation.get("summary").asText().toLowerCase() : "";
+        this.descriptionLower = operation.has("description") ? operation.get("description").asText().toLowerCase() : "";
+        this.textLower = summaryLower + " " + descriptionLower;
+        this.searchTextLower = textLower + " " + (operationId != null ? operationId.toLowerCase() : "");
+    }
+
+    public int getIndex() { return index; }
+    public String getMethod() { return method; }
+    public String getPath() { return path; }
+    public String getKey() { return key; }
+
+    public JsonNode getOperation() { return operation; }
+    public JsonNode getParameters() { return parameters; }
+    public JsonNode getRequestBody() { return requestBody; }
+    public JsonNode getResponses() { return responses; }
+    public JsonNode getSecurity() { return security; }
+    public String getOperationId() { return operationId; }
+
+    public String getSummaryLower() { return summaryLower; }
+    public String getDescriptionLower() { return descriptionLower; }
+    public String getTextLower() { return textLower; }
+    public String getSearchTextLower() { return searchTextLower; }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
@@ -1,7 +1,9 @@
 package com.apisecurity.shared;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class OpenAIConfig {
     private String apiKey;
@@ -11,6 +13,22 @@ public class OpenAIConfig {
         "deepseek/deepseek-r1-0528-qwen3-8b"
     );
     private int timeoutSeconds = 30;
+    // Бюджет одного фрагмента спецификации в токенах; для отдельных моделей — modelTokenBudgets
+    private int chunkTokenBudget = 6000;
+    private Map<String, Integer> modelTokenBudgets = new HashMap<>();
+    private int maxConcurrentRequests = 4;
+    // Потоковый ответ прерывается после стольких токенов (оценка по символам)
+    private int streamTokenBudget = 4000;
+    // Общий лимит времени AI-анализа: незавершённые к этому сроку запросы отменяются
+    private int analysisTimeoutSeconds = 300;
+    // Запрос дублируется на резервную модель, если не ответил к этому перцентилю задержек; 0 — без дублирования
+    private double hedgePercentile = 0.9;
+    // Остановиться после стольких моделей с хорошим ответом; 0 — ждать все
+    private int firstGoodAnswers = 0;
+    // Дисковый кэш ответов моделей по хэшу промпта
+    private boolean responseCacheEnabled = true;
+    private String responseCachePath = "reports/ai_cache";
+    private long responseCacheMaxBytes = 64L * 1024 * 1024;
     
     // Конструкторы
     public OpenAIConfig() {}
@@ -31,6 +49,42 @@ public class OpenAIConfig {
     
     public int getTimeoutSeconds() { return timeoutSeconds; }
     public void setTimeoutSeconds(int timeoutSeconds) { this.timeoutSeconds = timeoutSeconds; }
+
+    public int getChunkTokenBudget() { return chunkTokenBudget; }
+    public void setChunkTokenBudget(int chunkTokenBudget) { this.chunkTokenBudget = chunkTokenBudget; }
+
+    public Map<String, Integer> getModelTokenBudgets() { return modelTokenBudgets; }
+    public void setModelTokenBudgets(Map<String, Integer> modelTokenBudgets) { this.modelTokenBudgets = modelTokenBudgets; }
+
+    public int getMaxConcurrentRequests() { return maxConcurrentRequests; }
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) { this.maxConcurrentRequests = maxConcurrentRequests; }
+
+    public int getStreamTokenBudget() { return streamTokenBudget; }
+    public void setStreamTokenBudget(int streamTokenBudget) { this.streamTokenBudget = streamTokenBudget; }
+
+    public int getAnalysisTimeoutSeconds() { return analysisTimeoutSeconds; }
+    public void setAnalysisTimeoutSeconds(int analysisTimeoutSeconds) { this.analysisTimeoutSeconds = analysisTimeoutSeconds; }
+
+    public double getHedgePercentile() { return hedgePercentile; }
+    public void setHedgePercentile(double hedgePercentile) { this.hedgePercentile = hedgePercentile; }
+
+    public int getFirstGoodAnswers() { return firstGoodAnswers; }
+    public void setFirstGoodAnswers(int firstGoodAnswers) { this.firstGoodAnswers = firstGoodAnswers; }
+
+    public boolean isResponseCacheEnabled() { return responseCacheEnabled; }
+    public void setResponseCacheEnabled(boolean responseCacheEnabled) { this.responseCacheEnabled = responseCacheEnabled; }
+
+    public String getResponseCachePath() { return responseCachePath; }
+    public void setResponseCachePath(String responseCachePath) { this.responseCachePath = responseCachePath; }
+
+    public long getResponseCacheMaxBytes() { return responseCacheMaxBytes; }
+    public void setResponseCacheMaxBytes(long responseCacheMaxBytes) { this.responseCacheMaxBytes = responseCacheMaxBytes; }
+
+    // Бюджет фрагмента для модели: персональный, если задан, иначе общий
+    public int getTokenBudget(String model) {
+        Integer budget = modelTokenBudgets != null ? modelTokenBudgets.get(model) : null;
+        return budget != null && budget > 0 ? budget : chunkTokenBudget;
+    }
     
     @Override
     public String toString() {
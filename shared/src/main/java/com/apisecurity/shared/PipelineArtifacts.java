@@ -0,0 +1,19 @@
+package com.apisecurity.shared;
+
+/**
+ * Имена артефактов, которыми этапы конвейера объявляют свои входы и выходы в {@link TaskGraph}.
+ * Сами данные лежат в {@link ContainerApi}; артефакт лишь означает, что этап их записал.
+ */
+public final class PipelineArtifacts {
+    public static final String SPECIFICATION = "specification";
+    public static final String VALIDATOR_RESULTS = "validator-results";
+    public static final String ANALYZER_RESULTS = "analyzer-results";
+    // Токен анализатора и значения параметров, собранные обходом графа зависимостей
+    public static final String ANALYZER_SESSION = "analyzer-session";
+    public static final String AI_RESULTS = "ai-results";
+    public static final String TESTING_RESULTS = "testing-results";
+    public static final String REPORTS_DIRECTORY = "reports-directory";
+
+    private PipelineArtifacts() {
+    }
+}
@@ -0,0 +1,275 @@
+package com.apisecurity.shared;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Планировщик этапов конвейера с учётом зависимостей.
+ *
+ * Каждый этап объявляет, какие артефакты он читает и какие производит; зависимости
+ * между этапами выводятся из этих объявлений. Независимые этапы выполняются параллельно
+ * на ограниченном пуле, а этап запускается сразу, как только завершились все производители
+ * его входов. Вход, который не производит ни один этап (например, модуль выключен
+ * в конфигурации), считается доступным сразу.
+ *
+ * Упавший этап не останавливает конвейер: ошибка выводится и попадает во временную
+ * шкалу, а зависимые этапы выполняются с тем, что успело попасть в контейнер.
+ * Исключение — {@link Error} (нехватка памяти, переполнение стека на большой
+ * спецификации): состояние после него ненадёжно, поэтому все зависимые этапы
+ * пропускаются и отмечаются во временной шкале как пропущенные.
+ */
+public class TaskGraph {
+
+    private static final class Stage {
+        final String name;
+        final List<String> requires;
+        final List<String> produces;
+        final Runnable action;
+
+        Stage(String name, Collection<String> requires, Collection<String> produces, Runnable action) {
+            this.name = name;
+            this.requires = new ArrayList<>(requires);
+            this.produces = new ArrayList<>(produces);
+            this.action = action;
+        }
+    }
+
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+
+    public TaskGraph addStage(String name, Collection<String> requires, Collection<String> produces,
+                              Runnable action) {
+        if (stages.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate stage: " + name);
+        }
+        stages.put(name, new Stage(name, requires, produces, action));
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return stages.isEmpty();
+    }
+
+    /**
+     * Выполняет все этапы и возвращает временную шкалу. Возвращается после
+     * завершения последнего этапа.
+     */
+    public Timeline run(int parallelism) {
+        Map<String, Set<String>> dependencies = resolveDependencies();
+        Map<String, List<String>> dependents = new HashMap<>();
+        Map<String, Integer> pending = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+            pending.put(entry.getKey(), entry.getValue().size());
+            for (String dependency : entry.getValue()) {
+                dependents.computeIfAbsent(dependency, k -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+        checkAcyclic(pending, dependents);
+
+        long origin = System.nanoTime();
+        Map<String, StageTiming> timings = new ConcurrentHashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(parallelism, stages.size())), pipelineThreads());
+        CompletionService<String> completion = new ExecutorCompletionService<>(pool);
+
+        Set<String> skipped = new HashSet<>();
+        int running = 0;
+        for (Stage stage : stages.values()) {
+            if (pending.get(stage.name) == 0) {
+                completion.submit(() -> execute(stage, origin, timings));
+                running++;
+            }
+        }
+
+        try {
+            while (running > 0) {
+                String finished = completion.take().get();
+                running--;
+                if (timings.get(finished).isFatal()) {
+                    skipDependents(finished, dependents, skipped, origin, timings);
+                }
+                for (String dependent : dependents.getOrDefault(finished, Collections.emptyList())) {
+                    int left = pending.merge(dependent, -1, Integer::sum);
+                    if (left == 0 && !skipped.contains(dependent)) {
+                        Stage stage = stages.get(dependent);
+                        completion.submit(() -> execute(stage, origin, timings));
+                        running++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // execute() перехватывает ошибки этапа, сюда попадаем только при сбое самого пула
+            System.err.println("❌ Pipeline failure: " + e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long totalMs = (System.nanoTime() - origin) / 1_000_000;
+        return new Timeline(timings, dependencies, totalMs);
+    }
+
+    private String execute(Stage stage, long origin, Map<String, StageTiming> timings) {
+        long start = System.nanoTime();
+        String error = null;
+        boolean fatal = false;
+        try {
+            stage.action.run();
+        } catch (Throwable e) {
+            fatal = e instanceof Error;
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            System.err.println("❌ Stage " + stage.name + " failed: " + error);
+            e.printStackTrace();
+        }
+        long end = System.nanoTime();
+        timings.put(stage.name, new StageTiming(stage.name, (start - origin) / 1_000_000,
+            (end - origin) / 1_000_000, Thread.currentThread().getName(), error, fatal, false));
+        return stage.name;
+    }
+
+    // Все этапы, транзитивно зависящие от упавшего с Error, в пул не попадают
+    private void skipDependents(String failed, Map<String, List<String>> dependents, Set<String> skipped,
+                                long origin, Map<String, StageTiming> timings) {
+        long now = (System.nanoTime() - origin) / 1_000_000;
+        Deque<String> queue = new ArrayDeque<>(dependents.getOrDefault(failed, Collections.emptyList()));
+        while (!queue.isEmpty()) {
+            String name = queue.poll();
+            if (!skipped.add(name)) continue;
+            System.err.println("⏭️ Stage " + name + " skipped: " + failed + " failed");
+            timings.put(name, new StageTiming(name, now, now, null, failed + " failed", false, true));
+            queue.addAll(dependents.getOrDefault(name, Collections.emptyList()));
+        }
+    }
+
+    // Этап зависит от всех производителей своих входов
+    private Map<String, Set<String>> resolveDependencies() {
+        Map<String, String> producers = new HashMap<>();
+        for (Stage stage : stages.values()) {
+            for (String artifact : stage.produces) {
+                String previous = producers.putIfAbsent(artifact, stage.name);
+                if (previous != null) {
+                    throw new IllegalStateException("Artifact " + artifact + " is produced by both "
+                        + previous + " and " + stage.name);
+                }
+            }
+        }
+
+        Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+        for (Stage stage : stages.values()) {
+            Set<String> deps = new LinkedHashSet<>();
+            for (String artifact : stage.requires) {
+                String producer = producers.get(artifact);
+                if (producer != null && !producer.equals(stage.name)) {
+                    deps.add(producer);
+                }
+            }
+            dependencies.put(stage.name, deps);
+        }
+        return dependencies;
+    }
+
+    // Алгоритм Кана на копии счётчиков: если обошли не все этапы, в графе есть цикл
+    private void checkAcyclic(Map<String, Integer> pending, Map<String, List<String>> dependents) {
+        Map<String, Integer> left = new HashMap<>(pending);
+        Deque<String> ready = new ArrayDeque<>();
+        left.forEach((name, count) -> { if (count == 0) ready.add(name); });
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            String name = ready.poll();
+            visited++;
+            for (String dependent : dependents.getOrDefault(name, Collections.emptyList())) {
+                if (left.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (visited != stages.size()) {
+            List<String> blocked = new ArrayList<>();
+            left.forEach((name, count) -> { if (count > 0) blocked.add(name); });
+            throw new IllegalStateException("Pipeline stages form a cycle: " + blocked);
+        }
+    }
+
+    private static ThreadFactory pipelineThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> new Thread(task, "pipeline-" + counter.incrementAndGet());
+    }
+
+    /**
+     * Время выполнения одного этапа; смещения в миллисекундах от начала запуска графа.
+     */
+    public static class StageTiming {
+        private final String name;
+        private final long startMs;
+        private final long endMs;
+        private final String thread;
+        private final String error;
+        private final boolean fatal;
+        private final boolean skipped;
+
+        StageTiming(String name, long startMs, long endMs, String thread, String error,
+                    boolean fatal, boolean skipped) {
+            this.name = name;
+            this.startMs = startMs;
+            this.endMs = endMs;
+            this.thread = thread;
+            this.error = error;
+            this.fatal = fatal;
+            this.skipped = skipped;
+        }
+
+        public String getName() { return name; }
+        public long getStartMs() { return startMs; }
+        public long getEndMs() { return endMs; }
+        public long getDurationMs() { return endMs - startMs; }
+        public String getThread() { return thread; }
+        public String getError() { return error; }
+        public boolean isFailed() { return error != null && !skipped; }
+        public boolean isFatal() { return fatal; }
+        public boolean isSkipped() { return skipped; }
+    }
+
+    /**
+     * Временная шкала запуска: этапы в порядке старта и критический путь —
+     * цепочка этапов, каждый из которых ждал самую позднюю из своих зависимостей.
+     */
+    public static class Timeline {
+        private final List<StageTiming> stages;
+        private final List<StageTiming> criticalPath;
+        private final long totalMs;
+
+        Timeline(Map<String, StageTiming> timings, Map<String, Set<String>> dependencies, long totalMs) {
+            List<StageTiming> ordered = new ArrayList<>(timings.values());
+            ordered.sort(Comparator.comparingLong(StageTiming::getStartMs).thenComparing(StageTiming::getName));
+            this.stages = Collections.unmodifiableList(ordered);
+            this.criticalPath = Collections.unmodifiableList(buildCriticalPath(timings, dependencies));
+            this.totalMs = totalMs;
+        }
+
+        private static List<StageTiming> buildCriticalPath(Map<String, StageTiming> timings,
+                                                           Map<String, Set<String>> dependencies) {
+            StageTiming current = timings.values().stream()
+                .filter(timing -> !timing.isSkipped())
+                .max(Comparator.comparingLong(StageTiming::getEndMs))
+                .orElse(null);
+            LinkedList<StageTiming> path = new LinkedList<>();
+            while (current != null) {
+                path.addFirst(current);
+                StageTiming gate = null;
+                for (String dependency : dependencies.getOrDefault(current.getName(), Collections.emptySet())) {
+                    StageTiming candidate = timings.get(dependency);
+                    if (candidate != null && (gate == null || candidate.getEndMs() > gate.getEndMs())) {
+                        gate = candidate;
+                    }
+                }
+                current = gate;
+            }
+            return path;
+        }
+
+        public List<StageTiming> getStages() { return stages; }
+        public List<StageTiming> getCriticalPath() { return criticalPath; }
+        public long getTotalMs() { return totalMs; }
+    }
+}
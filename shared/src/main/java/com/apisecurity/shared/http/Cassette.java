@@ -0,0 +1,271 @@
+package com.apisecurity.shared.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Кассета HTTP-взаимодействий для записи и воспроизведения динамического анализа.
+ *
+ * Ключ записи — нормализованные метод, URL (хост в нижнем регистре, без порта по умолчанию,
+ * параметры query отсортированы, секреты скрыты) и SHA-256 тела. Данные лежат в
+ * interactions.jsonl, а index.tsv хранит смещение и длину каждой записи (как в кэше
+ * ответов AI); оба файла только дописываются, поэтому прерванная запись остаётся
+ * пригодной для воспроизведения. Файлы открываются один раз на кассету: запись
+ * дописывает в открытый файл, воспроизведение читает запись одним seek + readFully.
+ * Повторяющиеся запросы воспроизводятся в записанном порядке, дальше повторяется последний ответ.
+ */
+public class Cassette {
+    public enum Mode { OFF, RECORD, REPLAY }
+
+    private static final Set<String> SECRET_PARAMS = Set.of("client_secret", "password", "access_token");
+    private static final Set<String> RECORDED_HEADERS = Set.of(
+        "content-type", "retry-after", "x-ratelimit-limit", "x-ratelimit-remaining", "x-ratelimit-reset");
+    // Ключ — режим и каталог: запись и воспроизведение одного каталога — разные экземпляры
+    private static final Map<String, Cassette> OPEN = new HashMap<>();
+
+    /** Записанный ответ */
+    public static class Interaction {
+        public final String method;
+        public final String url;
+        public final int status;
+        public final Map<String, String> headers;
+        public final String body;
+
+        Interaction(String method, String url, int status, Map<String, String> headers, String body) {
+            this.method = method;
+            this.url = url;
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+
+    private final Path directory;
+    private final Mode mode;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, List<Entry>> index = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> replayCursors = new ConcurrentHashMap<>();
+    private final Set<String> reportedMisses = ConcurrentHashMap.newKeySet();
+    private final Object writeLock = new Object();
+    // Открыты на всё время жизни кассеты; RandomAccessFile, а не FileChannel: прерывание
+    // потока (отмена пробы) закрыло бы канал для всех
+    private final RandomAccessFile data;
+    private final RandomAccessFile indexFile;
+
+    private static final class Entry {
+        final long offset;
+        final int length;
+
+        Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private Cassette(Path directory, Mode mode) throws IOException {
+        this.directory = directory;
+        this.mode = mode;
+        if (mode == Mode.REPLAY) {
+            loadIndex();
+            this.data = new RandomAccessFile(directory.resolve("interactions.jsonl").toFile(), "r");
+            this.indexFile = null;
+        } else {
+            Files.createDirectories(directory);
+            this.data = new RandomAccessFile(directory.resolve("interactions.jsonl").toFile(), "rw");
+            this.data.seek(this.data.length());
+            this.indexFile = new RandomAccessFile(directory.resolve("index.tsv").toFile(), "rw");
+            this.indexFile.seek(this.indexFile.length());
+        }
+    }
+
+    /**
+     * Кассета для каталога; модули, работающие с одним каталогом в одном режиме, получают
+     * один экземпляр. Кассета для воспроизведения, открытая после записи в том же процессе,
+     * видит всё, что было записано к моменту открытия. Для Mode.OFF возвращает null.
+     */
+    public static Cassette open(Path directory, Mode mode) {
+        if (mode == Mode.OFF) {
+            return null;
+        }
+        Path dir = directory.toAbsolutePath().normalize();
+        synchronized (OPEN) {
+            return OPEN.computeIfAbsent(mode + " " + dir, key -> {
+                try {
+                    Cassette cassette = new Cassette(dir, mode);
+                    System.out.println("📼 Cassette " + mode.name().toLowerCase() + ": " + dir
+                        + (mode == Mode.REPLAY ? " (" + cassette.size() + " requests)" : ""));
+                    return cassette;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to open cassette " + dir, e);
+                }
+            });
+        }
+    }
+
+    public static Mode parseMode(String value) {
+        return value == null || value.isBlank() ? Mode.OFF : Mode.valueOf(value.trim().toUpperCase());
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isReplaying() {
+        return mode == Mode.REPLAY;
+    }
+
+    public int size() {
+        return index.values().stream().mapToInt(List::size).sum();
+    }
+
+    public void record(String method, String url, String requestBody, int status,
+                       Map<String, String> responseHeaders, String responseBody) {
+        String key = key(method, url, requestBody);
+        ObjectNode line = objectMapper.createObjectNode();
+        line.put("key", key);
+        line.put("method", method.toUpperCase());
+        line.put("url", normalizeUrl(url));
+        line.put("status", status);
+        ObjectNode headers = line.putObject("headers");
+        responseHeaders.forEach((name, value) -> {
+            if (value != null && RECORDED_HEADERS.contains(name.toLowerCase())) {
+                headers.put(name, value);
+            }
+        });
+        line.put("body", responseBody);
+
+        try {
+            byte[] bytes = (objectMapper.writeValueAsString(line) + "\n").getBytes(StandardCharsets.UTF_8);
+            synchronized (writeLock) {
+                long offset = data.getFilePointer();
+                data.write(bytes);
+                indexFile.write((key + "\t" + offset + "\t" + bytes.length + "\n").getBytes(StandardCharsets.UTF_8));
+                index.computeIfAbsent(key, k -> new ArrayList<>()).add(new Entry(offset, bytes.length));
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Failed to record interaction " + key + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Записанный ответ на запрос или null, если такого запроса в кассете нет.
+     */
+    public Interaction replay(String method, String url, String requestBody) {
+        String key = key(method, url, requestBody);
+        List<Entry> entries = index.get(key);
+        if (entries == null || entries.isEmpty()) {
+            if (reportedMisses.add(key)) {
+                System.err.println("⚠️ Cassette miss: " + key);
+            }
+            return null;
+        }
+        int position = replayCursors.computeIfAbsent(key, k -> new AtomicInteger()).getAndIncrement();
+        Entry entry = entries.get(Math.min(position, entries.size() - 1));
+        try {
+            byte[] bytes = new byte[entry.length];
+            synchronized (data) {
+                data.seek(entry.offset);
+                data.readFully(bytes);
+            }
+            JsonNode node = objectMapper.readTree(bytes);
+            Map<String, String> headers = new LinkedHashMap<>();
+            node.path("headers").fields().forEachRemaining(h -> headers.put(h.getKey(), h.getValue().asText()));
+            return new Interaction(node.path("method").asText(), node.path("url").asText(),
+                node.path("status").asInt(), headers, node.path("body").isNull() ? null : node.path("body").asText());
+        } catch (IOException e) {
+            System.err.println("❌ Failed to read cassette entry " + key + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        Path indexPath = directory.resolve("index.tsv");
+        Path dataPath = directory.resolve("interactions.jsonl");
+        if (!Files.exists(indexPath) || !Files.exists(dataPath)) {
+            throw new IOException("No index.tsv in " + directory + " — record a cassette first");
+        }
+        long dataSize = Files.size(dataPath);
+        List<String[]> lines = new ArrayList<>();
+        TreeSet<Long> offsets = new TreeSet<>();
+        for (String line : Files.readAllLines(indexPath, StandardCharsets.UTF_8)) {
+            String[] parts = line.split("\t");
+            if (parts.length == 2 || parts.length == 3) {
+                lines.add(parts);
+                offsets.add(Long.parseLong(parts[1]));
+            }
+        }
+        for (String[] parts : lines) {
+            long offset = Long.parseLong(parts[1]);
+            // Индекс старого формата — без длины: запись тянется до следующего смещения
+            Long next = offsets.higher(offset);
+            long length = parts.length == 3 ? Integer.parseInt(parts[2]) : (next != null ? next : dataSize) - offset;
+            // Запись, дописанная не до конца, не воспроизводится
+            if (offset + length <= dataSize) {
+                index.computeIfAbsent(parts[0], k -> new ArrayList<>()).add(new Entry(offset, (int) length));
+            }
+        }
+    }
+
+    public static String key(String method, String url, String body) {
+        return method.toUpperCase() + " " + normalizeUrl(url) + " " + bodyHash(body);
+    }
+
+    static String normalizeUrl(String url) {
+        URI uri = URI.create(url);
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase() : "http";
+        String host = uri.getHost() != null ? uri.getHost().toLowerCase() : "";
+        int port = uri.getPort();
+        boolean defaultPort = port < 0 || ("https".equals(scheme) && port == 443) || ("http".equals(scheme) && port == 80);
+
+        StringBuilder normalized = new StringBuilder(scheme).append("://").append(host);
+        if (!defaultPort) {
+            normalized.append(':').append(port);
+        }
+        normalized.append(uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath());
+
+        String query = uri.getRawQuery();
+        if (query != null && !query.isEmpty()) {
+            List<String> params = new ArrayList<>();
+            for (String param : query.split("&")) {
+                int eq = param.indexOf('=');
+                String name = eq >= 0 ? param.substring(0, eq) : param;
+                String decoded = URLDecoder.decode(name, StandardCharsets.UTF_8);
+                params.add(SECRET_PARAMS.contains(decoded.toLowerCase()) ? name + "=***" : param);
+            }
+            Collections.sort(params);
+            normalized.append('?').append(String.join("&", params));
+        }
+        return normalized.toString();
+    }
+
+    static String bodyHash(String body) {
+        if (body == null || body.isEmpty()) {
+            return "-";
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 12; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.apisecurity.shared.http;
+
+import okhttp3.*;
+import okio.Buffer;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Подключает OkHttp-клиент к {@link Cassette}: при записи сохраняет ответы,
+ * при воспроизведении отвечает из кассеты, не выходя в сеть. Должен стоять
+ * первым, чтобы воспроизведение не проходило через ограничитель частоты.
+ */
+public class CassetteInterceptor implements Interceptor {
+    private final Cassette cassette;
+
+    public CassetteInterceptor(Cassette cassette) {
+        this.cassette = cassette;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String body = bodyText(request);
+
+        if (cassette.isReplaying()) {
+            Cassette.Interaction recorded = cassette.replay(request.method(), request.url().toString(), body);
+            if (recorded == null) {
+                throw new IOException("No recorded response for " + request.method() + " " + request.url());
+            }
+            return storedResponse(request, recorded.status, recorded.headers, recorded.body, "Replayed");
+        }
+
+        Response response = chain.proceed(request);
+        // Тело читается один раз, поэтому дальше отдаётся его копия
+        String responseText = response.body() != null ? response.body().string() : "";
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String name : response.headers().names()) {
+            headers.put(name, response.header(name));
+        }
+        cassette.record(request.method(), request.url().toString(), body, response.code(), headers, responseText);
+        MediaType contentType = response.body() != null ? response.body().contentType() : null;
+        return response.newBuilder()
+            .body(ResponseBody.create(responseText, contentType))
+            .build();
+    }
+
+    // Ответ, собранный из сохранённых статуса, заголовков и тела
+    static Response storedResponse(Request request, int status, Map<String, String> headers, String body,
+                                   String message) {
+        Response.Builder response = new Response.Builder()
+            .request(request)
+            .protocol(Protocol.HTTP_1_1)
+            .code(status)
+            .message(message)
+            .body(ResponseBody.create(body != null ? body : "",
+                MediaType.parse(headers.getOrDefault("Content-Type", "application/json"))));
+        headers.forEach(response::header);
+        return response.build();
+    }
+
+    private static String bodyText(Request request) throws IOException {
+        if (request.body() == null) {
+            return null;
+        }
+        Buffer buffer = new Buffer();
+        request.body().writeTo(buffer);
+        return buffer.readUtf8();
+    }
+}
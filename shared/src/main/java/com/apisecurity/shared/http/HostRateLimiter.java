@@ -0,0 +1,228 @@
+package com.apisecurity.shared.http;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Ограничитель частоты исходящих запросов: отдельное ведро токенов на каждый хост.
+ *
+ * Скорость подстраивается под цель (AIMD): каждый успешный ответ немного её повышает,
+ * 429/503 — уменьшает вдвое. Заголовки Retry-After и X-RateLimit-* приостанавливают
+ * хост до указанного момента или ограничивают скорость оставшейся квотой окна.
+ * Общий экземпляр {@link #shared()} используют все HTTP-клиенты приложения.
+ */
+public class HostRateLimiter {
+    public static final double DEFAULT_INITIAL_RATE = 10.0;  // запросов в секунду
+    public static final double DEFAULT_MIN_RATE = 0.5;
+    public static final double DEFAULT_MAX_RATE = 50.0;
+    public static final double DEFAULT_BURST = 5.0;
+    private static final double ADDITIVE_INCREASE = 0.5;
+    private static final double MULTIPLICATIVE_DECREASE = 0.5;
+    private static final long MAX_PAUSE_MS = TimeUnit.MINUTES.toMillis(2);
+    private static final long THROTTLE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private static final HostRateLimiter SHARED = new HostRateLimiter(
+        DEFAULT_INITIAL_RATE, DEFAULT_MIN_RATE, DEFAULT_MAX_RATE, DEFAULT_BURST);
+
+    private final double initialRate;
+    private final double minRate;
+    private final double maxRate;
+    private final double burst;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public HostRateLimiter(double initialRate, double minRate, double maxRate, double burst) {
+        this.initialRate = initialRate;
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.burst = burst;
+    }
+
+    public static HostRateLimiter shared() {
+        return SHARED;
+    }
+
+    /**
+     * Резервирует токен и возвращает, сколько миллисекунд нужно подождать перед запросом.
+     * Резервы выдаются по очереди, поэтому ожидающие запросы не обгоняют друг друга.
+     */
+    public long reserve(String host) {
+        return bucket(host).reserve(System.nanoTime());
+    }
+
+    public void acquire(String host) throws InterruptedException {
+        long waitMs = reserve(host);
+        if (waitMs > 0) {
+            Thread.sleep(waitMs);
+        }
+    }
+
+    // Неблокирующий вариант: future завершается, когда запрос можно отправлять
+    public CompletableFuture<Void> acquireAsync(String host) {
+        long waitMs = reserve(host);
+        if (waitMs <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> { },
+            CompletableFuture.delayedExecutor(waitMs, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Обратная связь от ответа. header — поиск заголовка по имени (null, если его нет),
+     * чтобы ограничитель не зависел от конкретного HTTP-клиента.
+     */
+    public void onResponse(String host, int statusCode, Function<String, String> header) {
+        Bucket bucket = bucket(host);
+        long now = System.nanoTime();
+
+        if (statusCode == 429 || statusCode == 503) {
+            long pauseMs = parseRetryAfter(header.apply("Retry-After"));
+            bucket.throttle(now, pauseMs);
+            return;
+        }
+
+        Long remaining = parseLong(header.apply("X-RateLimit-Remaining"));
+        long resetMs = parseReset(header.apply("X-RateLimit-Reset"));
+        if (remaining != null && resetMs > 0) {
+            if (remaining <= 0) {
+                bucket.pause(now, resetMs);
+            } else {
+                bucket.capRate(remaining * 1000.0 / resetMs);
+            }
+        }
+        if (statusCode >= 200 && statusCode < 400) {
+            bucket.increase();
+        }
+    }
+
+    // Ключ хоста одинаков для всех клиентов: "host:port" с портом схемы по умолчанию
+    public static String hostKey(String scheme, String host, int port) {
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(scheme) ? 443 : 80;
+        }
+        return host + ":" + port;
+    }
+
+    public double getRate(String host) {
+        return bucket(host).currentRate();
+    }
+
+    private Bucket bucket(String host) {
+        return buckets.computeIfAbsent(host == null ? "" : host, h -> new Bucket(initialRate));
+    }
+
+    // Retry-After: число секунд или HTTP-дата
+    static long parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        Long seconds = parseLong(value);
+        if (seconds != null) {
+            return Math.min(TimeUnit.SECONDS.toMillis(Math.max(seconds, 0)), MAX_PAUSE_MS);
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            long ms = Duration.between(ZonedDateTime.now(at.getZone()), at).toMillis();
+            return Math.min(Math.max(ms, 0), MAX_PAUSE_MS);
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    // X-RateLimit-Reset: секунды до сброса окна или момент сброса в секундах/миллисекундах эпохи
+    static long parseReset(String value) {
+        Long reset = parseLong(value);
+        if (reset == null || reset <= 0) {
+            return 0;
+        }
+        long ms;
+        if (reset > 1_000_000_000_000L) {
+            ms = reset - System.currentTimeMillis();
+        } else if (reset > 1_000_000_000L) {
+            ms = reset * 1000 - System.currentTimeMillis();
+        } else {
+            ms = reset * 1000;
+        }
+        return Math.min(Math.max(ms, 0), MAX_PAUSE_MS);
+    }
+
+    private static Long parseLong(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private final class Bucket {
+        private double rate;
+        private double tokens;
+        private long lastRefillNanos;
+        private long pausedUntilNanos;
+        private long lastThrottleNanos;
+        private boolean throttled;
+
+        Bucket(double rate) {
+            this.rate = rate;
+            this.tokens = burst;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        synchronized long reserve(long now) {
+            refill(now);
+            tokens -= 1;
+            long waitNanos = tokens >= 0 ? 0 : (long) (-tokens / rate * 1_000_000_000L);
+            // Интервал отсчитывается от конца паузы: зарезервированные во время паузы запросы после неё идут по одному
+            long start = Math.max(now, pausedUntilNanos) + waitNanos;
+            return TimeUnit.NANOSECONDS.toMillis(Math.max(start - now, 0));
+        }
+
+        synchronized void throttle(long now, long pauseMs) {
+            // Пачка 429 от одновременных запросов — одно снижение
+            if (!throttled || now - lastThrottleNanos >= THROTTLE_COOLDOWN_NANOS) {
+                rate = Math.max(minRate, rate * MULTIPLICATIVE_DECREASE);
+                lastThrottleNanos = now;
+                throttled = true;
+            }
+            pause(now, pauseMs);
+        }
+
+        synchronized void pause(long now, long pauseMs) {
+            refill(now);
+            if (pauseMs > 0) {
+                pausedUntilNanos = Math.max(pausedUntilNanos, now + TimeUnit.MILLISECONDS.toNanos(pauseMs));
+            }
+            // Зарезервированные, но не отправленные запросы не должны уйти пачкой после паузы
+            tokens = Math.min(tokens, 0);
+        }
+
+        synchronized void capRate(double allowed) {
+            rate = Math.max(minRate, Math.min(rate, allowed));
+        }
+
+        synchronized void increase() {
+            rate = Math.min(maxRate, rate + ADDITIVE_INCREASE);
+        }
+
+        synchronized double currentRate() {
+            return rate;
+        }
+
+        // Время паузы токенов не добавляет
+        private void refill(long now) {
+            long from = Math.max(lastRefillNanos, pausedUntilNanos);
+            if (now > from) {
+                tokens = Math.min(burst, tokens + (now - from) / 1_000_000_000.0 * rate);
+            }
+            lastRefillNanos = Math.max(lastRefillNanos, now);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.apisecurity.shared.http;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Подключает OkHttp-клиент к общему {@link HostRateLimiter}: запрос ждёт токен своего
+ * хоста, ответ корректирует скорость, а 429 повторяется после паузы из Retry-After.
+ */
+public class RateLimitInterceptor implements Interceptor {
+    private final HostRateLimiter limiter;
+    private final int maxRetries;
+
+    public RateLimitInterceptor() {
+        this(HostRateLimiter.shared(), 2);
+    }
+
+    public RateLimitInterceptor(HostRateLimiter limiter, int maxRetries) {
+        this.limiter = limiter;
+        this.maxRetries = maxRetries;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String host = HostRateLimiter.hostKey(request.url().scheme(), request.url().host(), request.url().port());
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                limiter.acquire(host);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for rate limit");
+            }
+
+            Response response = chain.proceed(request);
+            limiter.onResponse(host, response.code(), response::header);
+            if (response.code() != 429 || attempt >= maxRetries) {
+                return response;
+            }
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.apisecurity.shared.http;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кэш ответов на безопасные запросы (GET/HEAD), общий для всех HTTP-клиентов.
+ *
+ * Ключ — метод, нормализованный URL, отпечаток Authorization и заголовки, влияющие на ответ
+ * (Accept и x-*). Записи живут {@code ttl} и вытесняются по LRU при превышении числа
+ * записей или суммарного размера тел. Одинаковые запросы в полёте объединяются: все
+ * вызывающие ждут один обмен, а сам обмен отменяется, только когда отказались все.
+ *
+ * Небезопасный запрос (POST/PUT/PATCH/DELETE) к URL сбрасывает все GET/HEAD этого URL —
+ * и сохранённые ответы, и ещё идущие обмены, — чтобы проба «до/после» не получила
+ * ответ, снятый до изменения. Объединение запросов зависит от времени, поэтому при
+ * записи и воспроизведении кассеты кэш не используется: иначе число записей на ключ
+ * не совпало бы с числом запросов при воспроизведении.
+ */
+public class ResponseCache {
+    public static final long DEFAULT_TTL_MS = TimeUnit.SECONDS.toMillis(60);
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD");
+    private static final ResponseCache SHARED = new ResponseCache(DEFAULT_TTL_MS, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+
+    /** Сохранённый ответ */
+    public static class CachedResponse {
+        public final int status;
+        public final Map<String, String> headers;
+        public final String body;
+        final long storedAt;
+
+        public CachedResponse(int status, Map<String, String> headers, String body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+            this.storedAt = System.currentTimeMillis();
+        }
+
+        long size() {
+            return body != null ? body.length() * 2L : 0;
+        }
+    }
+
+    private static final class InFlight {
+        final CompletableFuture<CachedResponse> exchange = new CompletableFuture<>();
+        final AtomicInteger waiters = new AtomicInteger();
+        // Ответ начат до изменения ресурса и в кэш не попадёт
+        volatile boolean stale;
+    }
+
+    private final long ttlMs;
+    private final int maxEntries;
+    private final long maxBytes;
+
+    // LinkedHashMap в порядке обращений — LRU; доступ только под this
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ResponseCache(long ttlMs, int maxEntries, long maxBytes) {
+        this.ttlMs = ttlMs;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    public static ResponseCache shared() {
+        return SHARED;
+    }
+
+    public static boolean isCacheable(String method) {
+        return SAFE_METHODS.contains(method.toUpperCase());
+    }
+
+    public static String key(String method, String url, Map<String, String> requestHeaders) {
+        StringBuilder key = new StringBuilder(method.toUpperCase()).append(' ').append(Cassette.normalizeUrl(url));
+        TreeMap<String, String> relevant = new TreeMap<>();
+        String authorization = null;
+        for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+            String name = header.getKey().toLowerCase();
+            if ("authorization".equals(name)) {
+                authorization = header.getValue();
+            } else if ("accept".equals(name) || name.startsWith("x-")) {
+                relevant.put(name, header.getValue());
+            }
+        }
+        key.append(" auth=").append(fingerprint(authorization));
+        relevant.forEach((name, value) -> key.append(' ').append(name).append('=').append(value));
+        return key.toString();
+    }
+
+    /**
+     * Ответ из кэша, ответ уже идущего такого же запроса или новый обмен через fetch.
+     * Отмена возвращённого future не затрагивает других ожидающих.
+     */
+    public CompletableFuture<CachedResponse> getOrFetch(String key, Supplier<CompletableFuture<CachedResponse>> fetch) {
+        CachedResponse cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        InFlight created = new InFlight();
+        InFlight shared = inFlight.putIfAbsent(key, created);
+        if (shared != null) {
+            coalesced.incrementAndGet();
+            return attach(key, shared);
+        }
+
+        misses.incrementAndGet();
+        CompletableFuture<CachedResponse> result = attach(key, created);
+        created.exchange.whenComplete((response, error) -> {
+            inFlight.remove(key, created);
+            if (response != null && !created.stale && isStorable(response.status)) {
+                store(key, response);
+            }
+        });
+        CompletableFuture<CachedResponse> network;
+        try {
+            network = fetch.get();
+        } catch (RuntimeException e) {
+            network = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<CachedResponse> source = network;
+        source.whenComplete((response, error) -> {
+            if (error != null) {
+                created.exchange.completeExceptionally(error);
+            } else {
+                created.exchange.complete(response);
+            }
+        });
+        created.exchange.whenComplete((response, error) -> {
+            if (created.exchange.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Сбрасывает GET/HEAD-ответы для URL при любых заголовках и query. Вызывается при
+     * отправке небезопасного запроса и ещё раз по его ответу — для чтений, попавших между ними.
+     */
+    public void invalidate(String url) {
+        String normalized = Cassette.normalizeUrl(url);
+        int query = normalized.indexOf('?');
+        String resource = query >= 0 ? normalized.substring(0, query) : normalized;
+        List<String> prefixes = new ArrayList<>();
+        for (String method : SAFE_METHODS) {
+            prefixes.add(method + " " + resource + " ");
+            prefixes.add(method + " " + resource + "?");
+        }
+        inFlight.forEach((key, pending) -> {
+            if (startsWithAny(key, prefixes)) {
+                pending.stale = true;
+                inFlight.remove(key, pending);
+            }
+        });
+        synchronized (this) {
+            Iterator<Map.Entry<String, CachedResponse>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, CachedResponse> entry = it.next();
+                if (startsWithAny(entry.getKey(), prefixes)) {
+                    totalBytes -= entry.getValue().size();
+                    it.remove();
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static boolean startsWithAny(String key, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private CompletableFuture<CachedResponse> attach(String key, InFlight shared) {
+        shared.waiters.incrementAndGet();
+        CompletableFuture<CachedResponse> copy = shared.exchange.copy();
+        copy.whenComplete((response, error) -> {
+            if (copy.isCancelled() && shared.waiters.decrementAndGet() == 0) {
+                inFlight.remove(key, shared);
+                shared.exchange.cancel(true);
+            }
+        });
+        return copy;
+    }
+
+    // Ответы, которые не зависят от нагрузки на сервер; 429 и 5xx не кэшируются
+    private static boolean isStorable(int status) {
+        return status >= 200 && status < 500 && status != 408 && status != 429;
+    }
+
+    private synchronized CachedResponse lookup(String key) {
+        CachedResponse cached = entries.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - cached.storedAt > ttlMs) {
+            entries.remove(key);
+            totalBytes -= cached.size();
+            return null;
+        }
+        return cached;
+    }
+
+    private synchronized void store(String key, CachedResponse response) {
+        if (response.size() > maxBytes) {
+            return;
+        }
+        CachedResponse previous = entries.put(key, response);
+        if (previous != null) {
+            totalBytes -= previous.size();
+        }
+        totalBytes += response.size();
+
+        Iterator<Map.Entry<String, CachedResponse>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalBytes > maxBytes) && eldest.hasNext()) {
+            CachedResponse evicted = eldest.next().getValue();
+            eldest.remove();
+            totalBytes -= evicted.size();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getCoalesced() { return coalesced.get(); }
+    public long getEvictions() { return evictions.get(); }
+    public long getInvalidations() { return invalidations.get(); }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Счётчики для отчётов
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", getHits());
+        stats.put("misses", getMisses());
+        stats.put("coalesced", getCoalesced());
+        stats.put("evictions", getEvictions());
+        stats.put("invalidations", getInvalidations());
+        stats.put("entries", size());
+        long lookups = getHits() + getMisses() + getCoalesced();
+        stats.put("hit_ratio", lookups == 0 ? 0.0 : (double) (getHits() + getCoalesced()) / lookups);
+        return stats;
+    }
+
+    private static String fingerprint(String value) {
+        if (value == null) {
+            return "-";
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
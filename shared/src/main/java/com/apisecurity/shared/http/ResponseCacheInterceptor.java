@@ -0,0 +1,74 @@
+package com.apisecurity.shared.http;
+
+import okhttp3.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Подключает OkHttp-клиент к {@link ResponseCache}: GET и HEAD отвечаются из кэша,
+ * а одинаковые запросы из разных потоков ждут один сетевой обмен; небезопасные запросы
+ * сбрасывают кэш своего URL. Должен стоять первым,
+ * чтобы попадания в кэш не проходили через кассету и ограничитель частоты.
+ */
+public class ResponseCacheInterceptor implements Interceptor {
+    private final ResponseCache cache;
+
+    public ResponseCacheInterceptor(ResponseCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!ResponseCache.isCacheable(request.method())) {
+            // Изменение ресурса: сброшенные до и после обмена чтения не вернут старый ответ
+            cache.invalidate(request.url().toString());
+            try {
+                return chain.proceed(request);
+            } finally {
+                cache.invalidate(request.url().toString());
+            }
+        }
+
+        Map<String, String> requestHeaders = new LinkedHashMap<>();
+        for (String name : request.headers().names()) {
+            requestHeaders.put(name, request.header(name));
+        }
+        String key = ResponseCache.key(request.method(), request.url().toString(), requestHeaders);
+        CompletableFuture<ResponseCache.CachedResponse> pending = cache.getOrFetch(key, () -> {
+            try {
+                return CompletableFuture.completedFuture(fetch(chain, request));
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+
+        ResponseCache.CachedResponse cached;
+        try {
+            cached = pending.get();
+        } catch (InterruptedException e) {
+            pending.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + request.url());
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        return CassetteInterceptor.storedResponse(request, cached.status, cached.headers, cached.body, "Cached");
+    }
+
+    private static ResponseCache.CachedResponse fetch(Chain chain, Request request) throws IOException {
+        try (Response response = chain.proceed(request)) {
+            String body = response.body() != null ? response.body().string() : "";
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (String name : response.headers().names()) {
+                headers.put(name, response.header(name));
+            }
+            return new ResponseCache.CachedResponse(response.code(), headers, body);
+        }
+    }
+}
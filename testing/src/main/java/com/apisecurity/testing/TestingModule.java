@@ -1,45 +1,90 @@
 package com.apisecurity.testing;
 
 import com.apisecurity.shared.*;
+import com.apisecurity.shared.http.Cassette;
+import com.apisecurity.shared.http.CassetteInterceptor;
+import com.apisecurity.shared.http.RateLimitInterceptor;
+import com.apisecurity.shared.http.ResponseCache;
+import com.apisecurity.shared.http.ResponseCacheInterceptor;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.*;
 
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class TestingModule {
-    private final OkHttpClient httpClient;
+    private static final Pattern PATH_PARAMETER = Pattern.compile("\\{([^}]+)\\}");
+    
+    private OkHttpClient httpClient;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
+    private ResponseCache responseCache = ResponseCache.shared();
+    // Сессия анализатора: токен и собранные значения параметров пути (пусто, если анализатор выключен)
+    private String accessToken;
+    private Map<String, Object> parameterValues = Collections.emptyMap();
+    
     public TestingModule() {
-        this.httpClient = new OkHttpClient.Builder()
+        this.httpClient = createHttpClient(null);
+    }
+    
+    // Порядок: кэш ответов, кассета, ограничитель частоты — попадания в кэш и воспроизведение идут без пауз
+    private OkHttpClient createHttpClient(Cassette cassette) {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
             .connectTimeout(10, TimeUnit.SECONDS)
             .readTimeout(30, TimeUnit.SECONDS)
-            .writeTimeout(10, TimeUnit.SECONDS)
-            .build();
+            .writeTimeout(10, TimeUnit.SECONDS);
+        if (responseCache != null) {
+            builder.addInterceptor(new ResponseCacheInterceptor(responseCache));
+        }
+        if (cassette != null) {
+            builder.addInterceptor(new CassetteInterceptor(cassette));
+        }
+        return builder.addInterceptor(new RateLimitInterceptor()).build();
     }
     
     public void process(ContainerApi container) {
         long startTime = System.currentTimeMillis();
         System.out.println("🧪 Starting security testing...");
         
+        Configuration config = container.getConfiguration();
+        if (config != null) {
+            Cassette cassette = Cassette.open(Paths.get(config.getCassettePath()),
+                Cassette.parseMode(config.getCassetteMode()));
+            // С кассетой кэш не используется: каждый запрос — ровно одна её запись
+            responseCache = config.isResponseCacheEnabled() && cassette == null ? ResponseCache.shared() : null;
+            httpClient = createHttpClient(cassette);
+        }
+        
+        accessToken = container.getAnalyzerAccessToken();
+        parameterValues = container.getDiscoveredParameterValues();
+        if (accessToken != null || !parameterValues.isEmpty()) {
+            System.out.println("  🔑 Reusing analyzer session: " + (accessToken != null ? "token" : "no token")
+                + ", " + parameterValues.size() + " discovered parameters");
+        }
+        
         JsonNode spec = container.getFullSpecification();
         
         // Генерация и выполнение тестов
         generateAndExecuteTests(spec, container);
         
         // Фаззинг тесты
-        executeFuzzingTests(spec, container);
+        executeFuzzingTests(container.getEndpointIndex(), container);
         
         long endTime = System.currentTimeMillis();
         System.out.println("✅ Security testing completed in " + (endTime - startTime) + "ms");
+        if (responseCache != null) {
+            System.out.println("  🗄️ Response cache: " + responseCache.getStats());
+        }
     }
     
     private void generateAndExecuteTests(JsonNode spec, ContainerApi container) {
         System.out.println("  🔍 Generating security test cases...");
         
-        List<SecurityTest> tests = generateSecurityTests(spec);
+        List<SecurityTest> tests = generateSecurityTests(spec, container.getEndpointIndex());
         ExecutorService executor = Executors.newFixedThreadPool(5);
         List<Future<TestResult>> futures = new ArrayList<>();
         
@@ -51,20 +96,13 @@ public class TestingModule {
         processTestResults(futures, container, executor);
     }
     
-    private List<SecurityTest> generateSecurityTests(JsonNode spec) {
+    private List<SecurityTest> generateSecurityTests(JsonNode spec, EndpointIndex endpointIndex) {
         List<SecurityTest> tests = new ArrayList<>();
-        JsonNode paths = spec.get("paths");
         
         // Генерация тестов для каждого эндпоинта
-        for (Iterator<String> it = paths.fieldNames(); it.hasNext(); ) {
-            String path = it.next();
-            JsonNode pathItem = paths.get(path);
-            
-            for (Iterator<String> methodIt = pathItem.fieldNames(); methodIt.hasNext(); ) {
-                String method = methodIt.next();
-                if (isHttpMethod(method)) {
-                    tests.addAll(generateTestsForEndpoint(method, path, pathItem.get(method), spec));
-                }
+        for (EndpointOperation endpoint : endpointIndex.getOperations()) {
+            if (isHttpMethod(endpoint.getMethod())) {
+                tests.addAll(generateTestsForEndpoint(endpoint.getMethod(), endpoint.getPath(), endpoint.getOperation(), spec));
             }
         }
         
@@ -76,23 +114,58 @@ public class TestingModule {
         String baseUrl = extractBaseUrl(spec);
         
         // Базовые тесты безопасности
-        tests.add(createUnauthorizedAccessTest(method, path, baseUrl));
-        tests.add(createSQLInjectionTest(method, path, baseUrl, endpoint));
-        tests.add(createXSSInjectionTest(method, path, baseUrl, endpoint));
+        tests.add(withPathValues(createUnauthorizedAccessTest(method, path, baseUrl), path));
+        tests.add(withSession(createSQLInjectionTest(method, path, baseUrl, endpoint), path));
+        tests.add(withSession(createXSSInjectionTest(method, path, baseUrl, endpoint), path));
         
-        // Тесты на IDOR если есть параметры в пути
+        // Тесты на IDOR если есть параметры в пути; ID заведомо чужой, поэтому токен анализатора
         if (path.contains("{")) {
-            tests.add(createIDORTest(method, path, baseUrl));
+            tests.add(withSession(createIDORTest(method, path, baseUrl), null));
         }
         
         // Тесты на массовое присвоение для POST/PUT
         if (method.equals("post") || method.equals("put")) {
-            tests.add(createMassAssignmentTest(method, path, baseUrl, endpoint));
+            tests.add(withSession(createMassAssignmentTest(method, path, baseUrl, endpoint), path));
         }
         
         return tests;
     }
     
+    /**
+     * Тест от имени анализатора: его токен в Authorization, а параметры пути
+     * (если path не null) — реальные значения, собранные анализатором.
+     */
+    private SecurityTest withSession(SecurityTest test, String path) {
+        if (accessToken != null) {
+            test.setHeaders(Collections.singletonMap("Authorization", "Bearer " + accessToken));
+        }
+        return path != null ? withPathValues(test, path) : test;
+    }
+    
+    // Параметры пути в URL теста заменяются первыми значениями, собранными анализатором
+    private SecurityTest withPathValues(SecurityTest test, String path) {
+        if (path.contains("{")) {
+            String resolved = path;
+            Matcher matcher = PATH_PARAMETER.matcher(path);
+            while (matcher.find()) {
+                String value = firstValue(parameterValues.get(matcher.group(1)));
+                if (value != null) {
+                    resolved = resolved.replace(matcher.group(), value);
+                }
+            }
+            test.setUrl(test.getUrl().replace(path, resolved));
+        }
+        return test;
+    }
+    
+    private static String firstValue(Object values) {
+        if (values instanceof Collection) {
+            Iterator<?> it = ((Collection<?>) values).iterator();
+            return it.hasNext() ? String.valueOf(it.next()) : null;
+        }
+        return values != null ? values.toString() : null;
+    }
+    
     private SecurityTest createUnauthorizedAccessTest(String method, String path, String baseUrl) {
         SecurityTest test = new SecurityTest();
         test.setName("Unauthorized Access Test - " + method.toUpperCase() + " " + path);
@@ -306,23 +379,21 @@ public class TestingModule {
             container.addTestingResult(endpoint, moduleResult);
             
             // Обновление таблицы анализа
-            for (EndpointAnalysis analysis : container.getAnalysisTable()) {
-                if (analysis.getEndpointName().equals(endpoint)) {
-                    long failedTests = entry.getValue().stream().filter(r -> !r.isSuccess()).count();
-                    analysis.setTesting(failedTests + " failed tests out of " + entry.getValue().size());
-                    break;
-                }
+            EndpointAnalysis analysis = container.findEndpointAnalysis(endpoint);
+            if (analysis != null) {
+                long failedTests = entry.getValue().stream().filter(r -> !r.isSuccess()).count();
+                analysis.setTesting(failedTests + " failed tests out of " + entry.getValue().size());
             }
         }
         
         System.out.println("  ✅ Executed " + futures.size() + " security tests");
     }
     
-    private void executeFuzzingTests(JsonNode spec, ContainerApi container) {
+    private void executeFuzzingTests(EndpointIndex endpointIndex, ContainerApi container) {
         System.out.println("  🎯 Starting fuzzing tests...");
         
         ModuleResult fuzzingResult = new ModuleResult("COMPLETED");
-        List<FuzzingTest> fuzzingTests = generateFuzzingTests(spec);
+        List<FuzzingTest> fuzzingTests = generateFuzzingTests(endpointIndex);
         
         for (FuzzingTest test : fuzzingTests) {
             TestResult result = executeFuzzingTest(test);
@@ -336,7 +407,7 @@ public class TestingModule {
         System.out.println("  ✅ Completed " + fuzzingTests.size() + " fuzzing tests");
     }
     
-    private List<FuzzingTest> generateFuzzingTests(JsonNode spec) {
+    private List<FuzzingTest> generateFuzzingTests(EndpointIndex endpointIndex) {
         List<FuzzingTest> tests = new ArrayList<>();
         String[] fuzzingPayloads = {
             "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA",
@@ -354,9 +425,8 @@ public class TestingModule {
         };
         
         // Генерация фаззинг тестов для нескольких эндпоинтов
-        JsonNode paths = spec.get("paths");
         int count = 0;
-        for (Iterator<String> it = paths.fieldNames(); it.hasNext() && count < 10; count++) {
+        for (Iterator<String> it = endpointIndex.getPaths().iterator(); it.hasNext() && count < 10; count++) {
             String path = it.next();
             for (String payload : fuzzingPayloads) {
                 FuzzingTest test = new FuzzingTest();
@@ -17,13 +17,13 @@ public class ValidatorModule {
         validateOpenAPIStructure(spec, container);
         
         // Валидация эндпоинтов
-        validateEndpoints(spec, container);
+        validateEndpoints(container);
         
         // Валидация схем данных
         validateSchemas(spec, container);
         
         // Валидация параметров
-        validateParameters(spec, container);
+        validateParameters(container);
         
         long endTime = System.currentTimeMillis();
         System.out.println("✅ Validation completed in " + (endTime - startTime) + "ms");
@@ -58,8 +58,8 @@ public class ValidatorModule {
         container.addValidatorResult("openapi_structure", result);
     }
     
-    private void validateEndpoints(JsonNode spec, ContainerApi container) {
-        JsonNode paths = spec.get("paths");
+    private void validateEndpoints(ContainerApi container) {
+        EndpointIndex endpointIndex = container.getEndpointIndex();
         
         for (EndpointAnalysis analysis : container.getAnalysisTable()) {
             ModuleResult result = new ModuleResult("COMPLETED");
@@ -71,14 +71,11 @@ public class ValidatorModule {
                 String method = parts[0].toLowerCase();
                 String path = parts[1];
                 
-                JsonNode pathNode = paths.get(path);
-                if (pathNode != null) {
-                    JsonNode methodNode = pathNode.get(method);
-                    if (methodNode != null) {
-                        validateEndpointStructure(methodNode, result, endpointName);
-                    } else {
-                        result.addFinding("Method " + method + " not found for path " + path);
-                    }
+                EndpointOperation endpoint = endpointIndex.get(method, path);
+                if (endpoint != null) {
+                    validateEndpointStructure(endpoint.getOperation(), result, endpointName);
+                } else if (!endpointIndex.getByPath(path).isEmpty()) {
+                    result.addFinding("Method " + method + " not found for path " + path);
                 } else {
                     result.addFinding("Path " + path + " not found in specification");
                 }
@@ -140,21 +137,15 @@ public class ValidatorModule {
         }
     }
     
-    private void validateParameters(JsonNode spec, ContainerApi container) {
+    private void validateParameters(ContainerApi container) {
         ModuleResult result = new ModuleResult("COMPLETED");
-        JsonNode paths = spec.get("paths");
-        
-        paths.fieldNames().forEachRemaining(path -> {
-            JsonNode pathItem = paths.get(path);
-            pathItem.fieldNames().forEachRemaining(method -> {
-                if (isHttpMethod(method)) {
-                    JsonNode endpoint = pathItem.get(method);
-                    if (endpoint.has("parameters")) {
-                        validateParameterDefinitions(endpoint.get("parameters"), path + " " + method, result);
-                    }
-                }
-            });
-        });
+        
+        for (EndpointOperation endpoint : container.getEndpointIndex().getOperations()) {
+            if (endpoint.getParameters() != null) {
+                validateParameterDefinitions(endpoint.getParameters(),
+                    endpoint.getPath() + " " + endpoint.getMethod(), result);
+            }
+        }
         
         container.addValidatorResult("parameters", result);
     }
@@ -172,11 +163,4 @@ public class ValidatorModule {
             }
         }
     }
-    
-    private boolean isHttpMethod(String method) {
-        return method.equals("get") || method.equals("post") || 
-               method.equals("put") || method.equals("delete") || 
-               method.equals("patch") || method.equals("head") || 
-               method.equals("options") || method.equals("trace");
-    }
 }
\ No newline at end of file